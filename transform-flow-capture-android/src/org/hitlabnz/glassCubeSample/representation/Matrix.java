@@ -1,5 +1,7 @@
 package org.hitlabnz.glassCubeSample.representation;
 
+import org.hitlabnz.motionrecorder.math.Mat4;
+
 /**
  * Matrix math utilities. These methods operate on OpenGL ES format
  * matrices and vectors stored in float arrays.
@@ -23,11 +25,22 @@ package org.hitlabnz.glassCubeSample.representation;
  * v[offset + 3]
  * </pre>
  * 
+ * All methods can be called from multiple threads at once. Operations that need temporary matrix data use a
+ * workspace of the calling thread, or the scratch array that is passed to them.
+ * 
  */
 public class Matrix {
 
-	/** Temporary memory for operations that need temporary matrix data. */
-	private final static float[] sTemp = new float[32];
+	/** Number of floats the scratch array of rotateM needs from its offset on. */
+	public static final int ROTATE_SCRATCH_SIZE = 32;
+
+	/** Temporary memory of each thread for operations that need temporary matrix data. */
+	private static final ThreadLocal<float[]> sTemp = new ThreadLocal<float[]>() {
+		@Override
+		protected float[] initialValue() {
+			return new float[ROTATE_SCRATCH_SIZE];
+		}
+	};
 
 	/**
 	 * Multiply two 4x4 matrices together and store the result in a third 4x4
@@ -61,73 +74,11 @@ public class Matrix {
 
 	public static void multiplyMM(float[] output, int outputOffset, float[] lhs, int lhsOffset, float[] rhs,
 			int rhsOffset) {
-		//for(int i = 0; i < 4; i++){
-		//	for(int j = 0; j < 4; j++){
-
-		//		int k = i * 4;
-		//		output[outputOffset + 0 + j] += lhs[lhsOffset + k + j] * rhs[rhsOffset + 0 * 4 + i];
-		//		output[outputOffset + 1 * 4 + j] += lhs[lhsOffset +k + j] * rhs[rhsOffset + 1 * 4 + i];
-		//		output[outputOffset + 2 * 4 + j] += lhs[lhsOffset +k + j] * rhs[rhsOffset + 2 * 4 + i];
-		//	    output[outputOffset + 3 * 4 + j] += lhs[lhsOffset +k + j] * rhs[rhsOffset + 3 * 4 + i];
-		//	}
-		//}
-		output[outputOffset + 0] = lhs[lhsOffset + 0] * rhs[rhsOffset + 0] + lhs[lhsOffset + 4] * rhs[rhsOffset + 1]
-				+ lhs[lhsOffset + 8] * rhs[rhsOffset + 2] + lhs[lhsOffset + 12] * rhs[rhsOffset + 3];
-		output[outputOffset + 1] = lhs[lhsOffset + 1] * rhs[rhsOffset + 0] + lhs[lhsOffset + 5] * rhs[rhsOffset + 1]
-				+ lhs[lhsOffset + 9] * rhs[rhsOffset + 2] + lhs[lhsOffset + 13] * rhs[rhsOffset + 3];
-		output[outputOffset + 2] = lhs[lhsOffset + 2] * rhs[rhsOffset + 0] + lhs[lhsOffset + 6] * rhs[rhsOffset + 1]
-				+ lhs[lhsOffset + 10] * rhs[rhsOffset + 2] + lhs[lhsOffset + 14] * rhs[rhsOffset + 3];
-		output[outputOffset + 3] = lhs[lhsOffset + 3] * rhs[rhsOffset + 0] + lhs[lhsOffset + 7] * rhs[rhsOffset + 1]
-				+ lhs[lhsOffset + 11] * rhs[rhsOffset + 2] + lhs[lhsOffset + 15] * rhs[rhsOffset + 3];
-
-		output[outputOffset + 4] = lhs[lhsOffset + 0] * rhs[rhsOffset + 4] + lhs[lhsOffset + 4] * rhs[rhsOffset + 5]
-				+ lhs[lhsOffset + 8] * rhs[rhsOffset + 6] + lhs[lhsOffset + 12] * rhs[rhsOffset + 7];
-		output[outputOffset + 5] = lhs[lhsOffset + 1] * rhs[rhsOffset + 4] + lhs[lhsOffset + 5] * rhs[rhsOffset + 5]
-				+ lhs[lhsOffset + 9] * rhs[rhsOffset + 6] + lhs[lhsOffset + 13] * rhs[rhsOffset + 7];
-		output[outputOffset + 6] = lhs[lhsOffset + 2] * rhs[rhsOffset + 4] + lhs[lhsOffset + 6] * rhs[rhsOffset + 5]
-				+ lhs[lhsOffset + 10] * rhs[rhsOffset + 6] + lhs[lhsOffset + 14] * rhs[rhsOffset + 7];
-		output[outputOffset + 7] = lhs[lhsOffset + 3] * rhs[rhsOffset + 4] + lhs[lhsOffset + 7] * rhs[rhsOffset + 5]
-				+ lhs[lhsOffset + 11] * rhs[rhsOffset + 6] + lhs[lhsOffset + 15] * rhs[rhsOffset + 7];
-
-		output[outputOffset + 8] = lhs[lhsOffset + 0] * rhs[rhsOffset + 8] + lhs[lhsOffset + 4] * rhs[rhsOffset + 9]
-				+ lhs[lhsOffset + 8] * rhs[rhsOffset + 10] + lhs[lhsOffset + 12] * rhs[rhsOffset + 11];
-		output[outputOffset + 9] = lhs[lhsOffset + 1] * rhs[rhsOffset + 8] + lhs[lhsOffset + 5] * rhs[rhsOffset + 9]
-				+ lhs[lhsOffset + 9] * rhs[rhsOffset + 10] + lhs[lhsOffset + 13] * rhs[rhsOffset + 11];
-		output[outputOffset + 10] = lhs[lhsOffset + 2] * rhs[rhsOffset + 8] + lhs[lhsOffset + 6] * rhs[rhsOffset + 9]
-				+ lhs[lhsOffset + 10] * rhs[rhsOffset + 10] + lhs[lhsOffset + 14] * rhs[rhsOffset + 11];
-		output[outputOffset + 11] = lhs[lhsOffset + 3] * rhs[rhsOffset + 8] + lhs[lhsOffset + 7] * rhs[rhsOffset + 9]
-				+ lhs[lhsOffset + 11] * rhs[rhsOffset + 10] + lhs[lhsOffset + 15] * rhs[rhsOffset + 11];
-
-		output[outputOffset + 12] = lhs[lhsOffset + 0] * rhs[rhsOffset + 12] + lhs[lhsOffset + 4] * rhs[rhsOffset + 13]
-				+ lhs[lhsOffset + 8] * rhs[rhsOffset + 14] + lhs[lhsOffset + 12] * rhs[rhsOffset + 15];
-		output[outputOffset + 13] = lhs[lhsOffset + 1] * rhs[rhsOffset + 12] + lhs[lhsOffset + 5] * rhs[rhsOffset + 13]
-				+ lhs[lhsOffset + 9] * rhs[rhsOffset + 14] + lhs[lhsOffset + 13] * rhs[rhsOffset + 15];
-		output[outputOffset + 14] = lhs[lhsOffset + 2] * rhs[rhsOffset + 12] + lhs[lhsOffset + 6] * rhs[rhsOffset + 13]
-				+ lhs[lhsOffset + 10] * rhs[rhsOffset + 14] + lhs[lhsOffset + 14] * rhs[rhsOffset + 15];
-		output[outputOffset + 15] = lhs[lhsOffset + 3] * rhs[rhsOffset + 12] + lhs[lhsOffset + 7] * rhs[rhsOffset + 13]
-				+ lhs[lhsOffset + 11] * rhs[rhsOffset + 14] + lhs[lhsOffset + 15] * rhs[rhsOffset + 15];
+		Mat4.multiplyMM(output, outputOffset, lhs, lhsOffset, rhs, rhsOffset);
 	}
 
 	public static void multiplyMM(float[] output, float[] lhs, float[] rhs) {
-		output[0] = lhs[0] * rhs[0] + lhs[4] * rhs[1] + lhs[8] * rhs[2] + lhs[12] * rhs[3];
-		output[1] = lhs[1] * rhs[0] + lhs[5] * rhs[1] + lhs[9] * rhs[2] + lhs[13] * rhs[3];
-		output[2] = lhs[2] * rhs[0] + lhs[6] * rhs[1] + lhs[10] * rhs[2] + lhs[14] * rhs[3];
-		output[3] = lhs[3] * rhs[0] + lhs[7] * rhs[1] + lhs[11] * rhs[2] + lhs[15] * rhs[3];
-
-		output[4] = lhs[0] * rhs[4] + lhs[4] * rhs[5] + lhs[8] * rhs[6] + lhs[12] * rhs[7];
-		output[5] = lhs[1] * rhs[4] + lhs[5] * rhs[5] + lhs[9] * rhs[6] + lhs[13] * rhs[7];
-		output[6] = lhs[2] * rhs[4] + lhs[6] * rhs[5] + lhs[10] * rhs[6] + lhs[14] * rhs[7];
-		output[7] = lhs[3] * rhs[4] + lhs[7] * rhs[5] + lhs[11] * rhs[6] + lhs[15] * rhs[7];
-
-		output[8] = lhs[0] * rhs[8] + lhs[4] * rhs[9] + lhs[8] * rhs[10] + lhs[12] * rhs[11];
-		output[9] = lhs[1] * rhs[8] + lhs[5] * rhs[9] + lhs[9] * rhs[10] + lhs[13] * rhs[11];
-		output[10] = lhs[2] * rhs[8] + lhs[6] * rhs[9] + lhs[10] * rhs[10] + lhs[14] * rhs[11];
-		output[11] = lhs[3] * rhs[8] + lhs[7] * rhs[9] + lhs[11] * rhs[10] + lhs[15] * rhs[11];
-
-		output[12] = lhs[0] * rhs[12] + lhs[4] * rhs[13] + lhs[8] * rhs[14] + lhs[12] * rhs[15];
-		output[13] = lhs[1] * rhs[12] + lhs[5] * rhs[13] + lhs[9] * rhs[14] + lhs[13] * rhs[15];
-		output[14] = lhs[2] * rhs[12] + lhs[6] * rhs[13] + lhs[10] * rhs[14] + lhs[14] * rhs[15];
-		output[15] = lhs[3] * rhs[12] + lhs[7] * rhs[13] + lhs[11] * rhs[14] + lhs[15] * rhs[15];
+		Mat4.multiplyMM(output, 0, lhs, 0, rhs, 0);
 	}
 
 	/**
@@ -159,32 +110,11 @@ public class Matrix {
 	 * } */
 	public static void multiplyMV(float[] output, int outputOffset, float[] lhs, int lhsOffset, float[] rhs,
 			int rhsOffset) {
-		/* wrong implementation (this is for row major matrices)
-		 * output[outputOffset +0] = lhs[lhsOffset + 0] * rhs[rhsOffset + 0] + lhs[lhsOffset + 1] * rhs[rhsOffset + 1]
-		 * + lhs[lhsOffset + 2] * rhs[rhsOffset + 2] + lhs[lhsOffset + 3] * rhs[rhsOffset + 3];
-		 * output[outputOffset +1] = lhs[lhsOffset + 4] * rhs[rhsOffset + 0] + lhs[lhsOffset + 5] * rhs[rhsOffset + 1] +
-		 * lhs[lhsOffset + 6] * rhs[rhsOffset + 2] + lhs[lhsOffset + 7] * rhs[rhsOffset + 3];
-		 * output[outputOffset +2] = lhs[lhsOffset + 8] * rhs[rhsOffset + 0] + lhs[lhsOffset + 9] * rhs[rhsOffset + 1] +
-		 * lhs[lhsOffset + 10] * rhs[rhsOffset + 2] + lhs[lhsOffset + 11] * rhs[rhsOffset + 3];
-		 * output[outputOffset +3] = lhs[lhsOffset + 12] * rhs[rhsOffset + 0] + lhs[lhsOffset + 13] * rhs[rhsOffset + 1]
-		 * + lhs[lhsOffset + 14] * rhs[rhsOffset + 2] + lhs[lhsOffset + 15] * rhs[rhsOffset + 3]; */
-		// correct implementation for column major matrices (which is for OpenGL)
-		output[outputOffset + 0] = lhs[lhsOffset + 0] * rhs[rhsOffset + 0] + lhs[lhsOffset + 4] * rhs[rhsOffset + 1]
-				+ lhs[lhsOffset + 8] * rhs[rhsOffset + 2] + lhs[lhsOffset + 12] * rhs[rhsOffset + 3];
-		output[outputOffset + 1] = lhs[lhsOffset + 1] * rhs[rhsOffset + 0] + lhs[lhsOffset + 5] * rhs[rhsOffset + 1]
-				+ lhs[lhsOffset + 9] * rhs[rhsOffset + 2] + lhs[lhsOffset + 13] * rhs[rhsOffset + 3];
-		output[outputOffset + 2] = lhs[lhsOffset + 2] * rhs[rhsOffset + 0] + lhs[lhsOffset + 6] * rhs[rhsOffset + 1]
-				+ lhs[lhsOffset + 10] * rhs[rhsOffset + 2] + lhs[lhsOffset + 14] * rhs[rhsOffset + 3];
-		output[outputOffset + 3] = lhs[lhsOffset + 3] * rhs[rhsOffset + 0] + lhs[lhsOffset + 7] * rhs[rhsOffset + 1]
-				+ lhs[lhsOffset + 11] * rhs[rhsOffset + 2] + lhs[lhsOffset + 15] * rhs[rhsOffset + 3];
-
+		Mat4.multiplyMV(output, outputOffset, lhs, lhsOffset, rhs, rhsOffset);
 	}
 
 	public static void multiplyMV(float[] outputV, float[] inputM, float[] inputV) {
-		outputV[0] = inputM[0] * inputV[0] + inputM[4] * inputV[1] + inputM[8] * inputV[2] + inputM[12] * inputV[3];
-		outputV[1] = inputM[1] * inputV[0] + inputM[5] * inputV[1] + inputM[9] * inputV[2] + inputM[13] * inputV[3];
-		outputV[2] = inputM[2] * inputV[0] + inputM[6] * inputV[1] + inputM[10] * inputV[2] + inputM[14] * inputV[3];
-		outputV[3] = inputM[3] * inputV[0] + inputM[7] * inputV[1] + inputM[11] * inputV[2] + inputM[15] * inputV[3];
+		Mat4.multiplyMV(outputV, 0, inputM, 0, inputV, 0);
 	}
 
 	public static void multiplyMV3(float[] outputV, float[] inputM, float[] inputV, float w) {
@@ -203,13 +133,7 @@ public class Matrix {
 	 * @param mOffset an offset into m where the matrix is stored.
 	 */
 	public static void transposeM(float[] mTrans, int mTransOffset, float[] m, int mOffset) {
-		for (int i = 0; i < 4; i++) {
-			int mBase = i * 4 + mOffset;
-			mTrans[i + mTransOffset] = m[mBase];
-			mTrans[i + 4 + mTransOffset] = m[mBase + 1];
-			mTrans[i + 8 + mTransOffset] = m[mBase + 2];
-			mTrans[i + 12 + mTransOffset] = m[mBase + 3];
-		}
+		Mat4.transpose(mTrans, mTransOffset, m, mOffset);
 	}
 
 	/**
@@ -504,12 +428,7 @@ public class Matrix {
 	 * @param smOffset index into sm where the result matrix starts
 	 */
 	public static void setIdentityM(float[] sm, int smOffset) {
-		for (int i = 0; i < 16; i++) {
-			sm[smOffset + i] = 0;
-		}
-		for (int i = 0; i < 16; i += 5) {
-			sm[smOffset + i] = 1.0f;
-		}
+		Mat4.setIdentity(sm, smOffset);
 	}
 
 	/**
@@ -603,10 +522,28 @@ public class Matrix {
 	 * @param z scale factor z
 	 */
 	public static void rotateM(float[] rm, int rmOffset, float[] m, int mOffset, float a, float x, float y, float z) {
-		synchronized (sTemp) {
-			setRotateM(sTemp, 0, a, x, y, z);
-			multiplyMM(rm, rmOffset, m, mOffset, sTemp, 0);
-		}
+		rotateM(rm, rmOffset, m, mOffset, a, x, y, z, sTemp.get(), 0);
+	}
+
+	/**
+	 * Rotates matrix m by angle a (in degrees) around the axis (x, y, z), using the given scratch array instead of the
+	 * workspace of the calling thread.
+	 * 
+	 * @param rm returns the result
+	 * @param rmOffset index into rm where the result matrix starts
+	 * @param m source matrix
+	 * @param mOffset index into m where the source matrix starts
+	 * @param a angle to rotate in degrees
+	 * @param x scale factor x
+	 * @param y scale factor y
+	 * @param z scale factor z
+	 * @param scratch temporary memory of at least {@link #ROTATE_SCRATCH_SIZE} floats, that no other thread uses
+	 * @param scratchOffset index into scratch where the temporary memory starts
+	 */
+	public static void rotateM(float[] rm, int rmOffset, float[] m, int mOffset, float a, float x, float y, float z,
+			float[] scratch, int scratchOffset) {
+		setRotateM(scratch, scratchOffset, a, x, y, z);
+		multiplyMM(rm, rmOffset, m, mOffset, scratch, scratchOffset);
 	}
 
 	/**
@@ -621,11 +558,27 @@ public class Matrix {
 	 * @param z scale factor z
 	 */
 	public static void rotateM(float[] m, int mOffset, float a, float x, float y, float z) {
-		synchronized (sTemp) {
-			setRotateM(sTemp, 0, a, x, y, z);
-			multiplyMM(sTemp, 16, m, mOffset, sTemp, 0);
-			System.arraycopy(sTemp, 16, m, mOffset, 16);
-		}
+		rotateM(m, mOffset, a, x, y, z, sTemp.get(), 0);
+	}
+
+	/**
+	 * Rotates matrix m in place by angle a (in degrees) around the axis (x, y, z), using the given scratch array
+	 * instead of the workspace of the calling thread.
+	 * 
+	 * @param m source matrix
+	 * @param mOffset index into m where the matrix starts
+	 * @param a angle to rotate in degrees
+	 * @param x scale factor x
+	 * @param y scale factor y
+	 * @param z scale factor z
+	 * @param scratch temporary memory of at least {@link #ROTATE_SCRATCH_SIZE} floats, that no other thread uses
+	 * @param scratchOffset index into scratch where the temporary memory starts
+	 */
+	public static void rotateM(float[] m, int mOffset, float a, float x, float y, float z, float[] scratch,
+			int scratchOffset) {
+		setRotateM(scratch, scratchOffset, a, x, y, z);
+		multiplyMM(scratch, scratchOffset + 16, m, mOffset, scratch, scratchOffset);
+		System.arraycopy(scratch, scratchOffset + 16, m, mOffset, 16);
 	}
 
 	/**
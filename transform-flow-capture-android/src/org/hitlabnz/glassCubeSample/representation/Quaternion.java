@@ -1,5 +1,7 @@
 package org.hitlabnz.glassCubeSample.representation;
 
+import org.hitlabnz.motionrecorder.math.Quat;
+
 import android.hardware.SensorManager;
 
 /**
@@ -25,12 +27,16 @@ public class Quaternion extends Vector4f {
 	private Matrixf4x4 matrix;
 
 	/**
-	 * This variable is used to synchronise the matrix with the current quaternion values. If someone has changed the
-	 * quaternion numbers then the matrix will need to be updated.
-	 * To save on processing we only really want to update the matrix when someone wants to fetch it, instead of
-	 * whenever someone sets a quaternion value.
+	 * The bits of the components x, y, z, w that the matrix was calculated from. To save on processing, the matrix is
+	 * only updated when someone fetches it and the components differ from this stamp. Comparing the components instead
+	 * of relying on a flag also notices writes to the public points array, e.g. by Vector4f.lerp().
+	 */
+	private final int[] matrixStamp = new int[4];
+
+	/**
+	 * False until the matrix was calculated, or after it was replaced by setColumnMajor() or setRowMajor()
 	 */
-	private boolean dirty = false;
+	private boolean matrixValid = false;
 
 	/**
 	 * Initialises a new instance of the Quaternion class with the identity quaternion.
@@ -46,11 +52,7 @@ public class Quaternion extends Vector4f {
 	 */
 	public void normalise() {
 		this.dirty = true;
-		float mag = (float) Math.sqrt(getW() * getW() + getX() * getX() + getY() * getY() + getZ() * getZ());
-		setW(getW() / mag);
-		setX(getX() / mag);
-		setY(getY() / mag);
-		setZ(getZ() / mag);
+		Quat.normalize(points, 0, points, 0);
 	}
 
 	@Override
@@ -77,66 +79,19 @@ public class Quaternion extends Vector4f {
 	 * @param input
 	 * @param output
 	 */
-	// Stack variables
-	Vector4f inputCopy = new Vector4f();
-
 	public void multiplyByQuat(Quaternion input, Quaternion output) {
-
-		if (input != output) {
-			output.points[3] = (points[3] * input.points[3] - points[0] * input.points[0] - points[1] * input.points[1] - points[2]
-					* input.points[2]); // w = w1w2 - x1x2 - y1y2 - z1z2
-			output.points[0] = (points[3] * input.points[0] + points[0] * input.points[3] + points[1] * input.points[2] - points[2]
-					* input.points[1]); // x = w1x2 + x1w2 + y1z2 - z1y2
-			output.points[1] = (points[3] * input.points[1] + points[1] * input.points[3] + points[2] * input.points[0] - points[0]
-					* input.points[2]); // y = w1y2 + y1w2 + z1x2 - x1z2
-			output.points[2] = (points[3] * input.points[2] + points[2] * input.points[3] + points[0] * input.points[1] - points[1]
-					* input.points[0]); // z = w1z2 + z1w2 + x1y2 - y1x2
-		} else {
-			inputCopy.points[0] = (input.points[0]);
-			inputCopy.points[1] = (input.points[1]);
-			inputCopy.points[2] = (input.points[2]);
-			inputCopy.points[3] = (input.points[3]);
-
-			output.points[3] = (points[3] * inputCopy.points[3] - points[0] * inputCopy.points[0] - points[1]
-					* inputCopy.points[1] - points[2] * inputCopy.points[2]); // w = w1w2 - x1x2 - y1y2 - z1z2
-			output.points[0] = (points[3] * inputCopy.points[0] + points[0] * inputCopy.points[3] + points[1]
-					* inputCopy.points[2] - points[2] * inputCopy.points[1]); // x = w1x2 + x1w2 + y1z2 - z1y2
-			output.points[1] = (points[3] * inputCopy.points[1] + points[1] * inputCopy.points[3] + points[2]
-					* inputCopy.points[0] - points[0] * inputCopy.points[2]); // y = w1y2 + y1w2 + z1x2 - x1z2
-			output.points[2] = (points[3] * inputCopy.points[2] + points[2] * inputCopy.points[3] + points[0]
-					* inputCopy.points[1] - points[1] * inputCopy.points[0]); // z = w1z2 + z1w2 + x1y2 - y1x2
-		}
-
+		Quat.multiply(output.points, 0, points, 0, input.points, 0);
 		output.dirty = true;
 	}
 
 	/**
-	 * Multiply this quaternion by the input quaternion and store the result in the out quaternion
+	 * Multiply this quaternion by the input quaternion and store the result in this quaternion
 	 * 
 	 * @param input
-	 * @param output
 	 */
-	Quaternion bufferQuaternion;
-
 	public void multiplyByQuat(Quaternion input) {
-		if (bufferQuaternion == null)
-			bufferQuaternion = new Quaternion();
+		Quat.multiply(points, 0, points, 0, input.points, 0);
 		this.dirty = true;
-		bufferQuaternion.copyVec4(this);
-		multiplyByQuat(input, bufferQuaternion);
-		this.copyVec4(bufferQuaternion);
-		// float W = (getW() * input.getW() - getX() * input.getX() - getY() * input.getY() - getZ() * input.getZ());
-		// //w = w1w2 - x1x2 - y1y2 - z1z2
-		// float X = (getW() * input.getX() + getX() * input.getW() + getY() * input.getZ() - getZ() * input.getY());
-		// //x = w1x2 + x1w2 + y1z2 - z1y2
-		// float Y = (getW() * input.getY() + getY() * input.getW() + getZ() * input.getX() - getX() * input.getZ());
-		// //y = w1y2 + y1w2 + z1x2 - x1z2
-		// float Z = (getW() * input.getZ() + getZ() * input.getW() + getX() * input.getY() - getY() * input.getX());
-		// //z = w1z2 + z1w2 + x1y2 - y1x2
-		// setW(W);
-		// setX(X);
-		// setY(Y);
-		// setZ(Z);
 	}
 
 	public void multiplyByScalar(float scalar) {
@@ -223,31 +178,8 @@ public class Quaternion extends Vector4f {
 	 * @return float[16] matrix
 	 */
 	private float[] toMatrixColMajor() {
-
-		float x = points[0];
-		float y = points[1];
-		float z = points[2];
-		float w = points[3];
-
 		float[] mat = matrix.getMatrix();
-
-		mat[0] = 1 - 2 * (y * y) - 2 * (z * z); // 1 - 2y2 - 2z2
-		mat[1] = 2 * (x * y) + 2 * (w * z); // 2xy - 2wz
-		mat[2] = 2 * (x * z) - 2 * (w * y); // 2xz + 2wy
-		mat[3] = 0;
-		mat[4] = 2 * (x * y) - 2 * (w * z); // 2xy + 2wz
-		mat[5] = 1 - 2 * (x * x) - 2 * (z * z); // 1 - 2x2 - 2z2
-		mat[6] = 2 * (y * z) + 2 * (w * x); // 2yz + 2wx
-		mat[7] = 0;
-		mat[8] = 2 * (x * z) + 2 * (w * y); // 2xz + 2wy
-		mat[9] = 2 * (y * z) - 2 * (w * x); // 2yz - 2wx
-		mat[10] = 1 - 2 * (x * x) - 2 * (y * y); // 1 - 2x2 - 2y2
-		mat[11] = 0;
-		mat[12] = 0;
-		mat[13] = 0;
-		mat[14] = 0;
-		mat[15] = 1;
-
+		Quat.toRotationMatrix(mat, 0, points, 0);
 		return mat;
 	}
 
@@ -434,6 +366,7 @@ public class Quaternion extends Vector4f {
 
 		this.matrix.setMatrix(matrix);
 		this.matrix.setColumnMajor(true);
+		matrixValid = false;
 
 		generateQuaternionFromMatrix();
 	}
@@ -448,6 +381,7 @@ public class Quaternion extends Vector4f {
 
 		this.matrix.setMatrix(matrix);
 		this.matrix.setColumnMajor(false);
+		matrixValid = false;
 
 		generateQuaternionFromMatrix();
 	}
@@ -497,15 +431,32 @@ public class Quaternion extends Vector4f {
 		dirty = true;
 	}
 
+	/**
+	 * Returns the rotation matrix of this quaternion. It is cached and only recalculated, if the quaternion changed
+	 * since the last call.
+	 */
 	public Matrixf4x4 getMatrix4x4() {
-		// toMatrixColMajor();
-		if (dirty) {
-			convertQuatToMatrix();
-			dirty = false;
+		if (!isMatrixCurrent()) {
+			if (matrix.size() == 16 && matrix.isColumnMajor()) {
+				Quat.toRotationMatrix(matrix.getMatrix(), 0, points, 0);
+			} else {
+				convertQuatToMatrix();
+			}
+			for (int i = 0; i < 4; i++) {
+				matrixStamp[i] = Float.floatToRawIntBits(points[i]);
+			}
+			matrixValid = true;
 		}
 		return this.matrix;
 	}
 
+	private boolean isMatrixCurrent() {
+		return matrixValid && matrixStamp[0] == Float.floatToRawIntBits(points[0])
+				&& matrixStamp[1] == Float.floatToRawIntBits(points[1])
+				&& matrixStamp[2] == Float.floatToRawIntBits(points[2])
+				&& matrixStamp[3] == Float.floatToRawIntBits(points[3]);
+	}
+
 	/**
 	 * Get a linear interpolation between this quaternion and the input quaternion, storing the result in the output
 	 * quaternion.
@@ -516,61 +467,7 @@ public class Quaternion extends Vector4f {
 	 *            closer to the input quaternion.
 	 */
 	public void slerp(Quaternion input, Quaternion output, float t) {
-		// Calculate angle between them.
-		// double cosHalftheta = this.dotProduct(input);
-		Quaternion bufferQuat = null;
-		float cosHalftheta = this.dotProduct(input);
-
-		if (cosHalftheta < 0) {
-			bufferQuat = new Quaternion();
-			cosHalftheta = -cosHalftheta;
-			bufferQuat.points[0] = (-input.points[0]);
-			bufferQuat.points[1] = (-input.points[1]);
-			bufferQuat.points[2] = (-input.points[2]);
-			bufferQuat.points[3] = (-input.points[3]);
-		} else {
-			bufferQuat = input;
-		}
-		/**
-		 * if(dot < 0.95f){ double angle = Math.acos(dot); double ratioA = Math.sin((1 - t) * angle); double ratioB =
-		 * Math.sin(t * angle); double divisor = Math.sin(angle);
-		 * 
-		 * //Calculate Quaternion output.setW((float)((this.getW() * ratioA + input.getW() * ratioB)/divisor));
-		 * output.setX((float)((this.getX() * ratioA + input.getX() * ratioB)/divisor));
-		 * output.setY((float)((this.getY() * ratioA + input.getY() * ratioB)/divisor));
-		 * output.setZ((float)((this.getZ() * ratioA + input.getZ() * ratioB)/divisor)); } else{ lerp(input, output, t);
-		 * }
-		 */
-		// if qa=qb or qa=-qb then theta = 0 and we can return qa
-		if (Math.abs(cosHalftheta) >= 1.0) {
-			output.points[0] = (this.points[0]);
-			output.points[1] = (this.points[1]);
-			output.points[2] = (this.points[2]);
-			output.points[3] = (this.points[3]);
-		} else {
-			double sinHalfTheta = Math.sqrt(1.0 - cosHalftheta * cosHalftheta);
-			// if theta = 180 degrees then result is not fully defined
-			// we could rotate around any axis normal to qa or qb
-			// if(Math.abs(sinHalfTheta) < 0.001){
-			// output.setW(this.getW() * 0.5f + input.getW() * 0.5f);
-			// output.setX(this.getX() * 0.5f + input.getX() * 0.5f);
-			// output.setY(this.getY() * 0.5f + input.getY() * 0.5f);
-			// output.setZ(this.getZ() * 0.5f + input.getZ() * 0.5f);
-			// lerp(bufferQuat, output, t);
-			// }
-			// else{
-			double halfTheta = Math.acos(cosHalftheta);
-
-			double ratioA = Math.sin((1 - t) * halfTheta) / sinHalfTheta;
-			double ratioB = Math.sin(t * halfTheta) / sinHalfTheta;
-
-			// Calculate Quaternion
-			output.points[3] = ((float) (points[3] * ratioA + bufferQuat.points[3] * ratioB));
-			output.points[0] = ((float) (this.points[0] * ratioA + bufferQuat.points[0] * ratioB));
-			output.points[1] = ((float) (this.points[1] * ratioA + bufferQuat.points[1] * ratioB));
-			output.points[2] = ((float) (this.points[2] * ratioA + bufferQuat.points[2] * ratioB));
-		}
-
+		Quat.slerp(output.points, 0, points, 0, input.points, 0, t);
 		output.dirty = true;
 	}
 
@@ -639,7 +536,7 @@ public class Quaternion extends Vector4f {
 
 	}
 
-	// Override methods from the super-class in order to set the rotationMatrix dirty whenever a value in this quaternion is changed
+	// Override methods from the super-class in order to set the renderable dirty whenever a value in this quaternion is changed
 
 	/* (non-Javadoc)
 	 * @see
@@ -1,5 +1,7 @@
 package org.hitlabnz.glassCubeSample.representation;
 
+import org.hitlabnz.motionrecorder.math.Vec3;
+
 // TODO: Auto-generated Javadoc
 /**
  * The Class Vector3f.
@@ -78,9 +80,7 @@ public class Vector3f extends Renderable {
 	 * @param vector the vector
 	 */
 	public void add(Vector3f vector) {
-		this.points[0] += vector.points[0];
-		this.points[1] += vector.points[1];
-		this.points[2] += vector.points[2];
+		Vec3.add(points, 0, points, 0, vector.points, 0);
 	}
 
 	public void add(float addition) {
@@ -90,9 +90,7 @@ public class Vector3f extends Renderable {
 	}
 
 	public void subtract(Vector3f vector) {
-		this.points[0] -= vector.points[0];
-		this.points[1] -= vector.points[1];
-		this.points[2] -= vector.points[2];
+		Vec3.subtract(points, 0, points, 0, vector.points, 0);
 	}
 
 	/**
@@ -101,21 +99,14 @@ public class Vector3f extends Renderable {
 	 * @param scalar the scalar
 	 */
 	public void multiplyByScalar(float scalar) {
-		this.points[0] *= scalar;
-		this.points[1] *= scalar;
-		this.points[2] *= scalar;
+		Vec3.scale(points, 0, points, 0, scalar);
 	}
 
 	/**
 	 * Normalize.
 	 */
 	public void normalize() {
-
-		double a = Math.sqrt(points[0] * points[0] + points[1] * points[1] + points[2] * points[2]);
-		this.points[0] = (float) (this.points[0] / a);
-		this.points[1] = (float) (this.points[1] / a);
-		this.points[2] = (float) (this.points[2] / a);
-
+		Vec3.normalize(points, 0, points, 0);
 	}
 
 	/**
@@ -213,8 +204,7 @@ public class Vector3f extends Renderable {
 	 * @return Float value representing the scalar of the dot product operation
 	 */
 	public float dotProduct(Vector3f inputVec) {
-		return points[0] * inputVec.points[0] + points[1] * inputVec.points[1] + points[2] * inputVec.points[2];
-
+		return Vec3.dot(points, 0, inputVec.points, 0);
 	}
 
 	/**
@@ -224,9 +214,7 @@ public class Vector3f extends Renderable {
 	 * @param outputVec The vector to store the result in.
 	 */
 	public void crossProduct(Vector3f inputVec, Vector3f outputVec) {
-		outputVec.setX(points[1] * inputVec.points[2] - points[2] * inputVec.points[1]);
-		outputVec.setY(points[2] * inputVec.points[0] - points[0] * inputVec.points[2]);
-		outputVec.setZ(points[0] * inputVec.points[1] - points[1] * inputVec.points[0]);
+		Vec3.cross(outputVec.points, 0, points, 0, inputVec.points, 0);
 	}
 
 	public Vector3f crossProduct(Vector3f in) {
@@ -241,7 +229,7 @@ public class Vector3f extends Renderable {
 	 * @return The length of the vector
 	 */
 	public float getLength() {
-		return (float) Math.sqrt(points[0] * points[0] + points[1] * points[1] + points[2] * points[2]);
+		return Vec3.length(points, 0);
 	}
 
 	@Override
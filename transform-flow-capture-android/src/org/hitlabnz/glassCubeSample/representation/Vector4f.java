@@ -2,6 +2,8 @@ package org.hitlabnz.glassCubeSample.representation;
 
 import java.io.Serializable;
 
+import org.hitlabnz.motionrecorder.math.Vec4;
+
 // TODO: Auto-generated Javadoc
 /**
  * The Class Vector4f.
@@ -69,10 +71,7 @@ public class Vector4f extends Renderable implements Serializable {
 	 * @param vector the vector
 	 */
 	public void add(Vector4f vector) {
-		this.points[0] += vector.points[0];
-		this.points[1] += vector.points[1];
-		this.points[2] += vector.points[2];
-		this.points[3] += vector.points[3];
+		Vec4.add(points, 0, points, 0, vector.points, 0);
 	}
 
 	public void add(Vector3f vector, float w) {
@@ -83,10 +82,7 @@ public class Vector4f extends Renderable implements Serializable {
 	}
 
 	public void subtract(Vector4f vector) {
-		this.points[0] -= vector.points[0];
-		this.points[1] -= vector.points[1];
-		this.points[2] -= vector.points[2];
-		this.points[3] -= vector.points[3];
+		Vec4.subtract(points, 0, points, 0, vector.points, 0);
 	}
 
 	public void subtract(Vector4f vector, Vector4f output) {
@@ -107,15 +103,11 @@ public class Vector4f extends Renderable implements Serializable {
 	 * @param scalar the scalar
 	 */
 	public void multiplyByScalar(float scalar) {
-		this.points[0] *= scalar;
-		this.points[1] *= scalar;
-		this.points[2] *= scalar;
-		this.points[3] *= scalar;
+		Vec4.scale(points, 0, points, 0, scalar);
 	}
 
 	public float dotProduct(Vector4f input) {
-		return this.points[0] * input.points[0] + this.points[1] * input.points[1] + this.points[2] * input.points[2]
-				+ this.points[3] * input.points[3];
+		return Vec4.dot(points, 0, input.points, 0);
 	}
 
 	/**
@@ -5,10 +5,12 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
 
-import org.hitlabnz.glassCubeSample.representation.Quaternion;
+import org.hitlabnz.motionrecorder.camera.FeatureExtractor;
+import org.hitlabnz.motionrecorder.camera.FeatureType;
+import org.hitlabnz.motionrecorder.camera.ImageFormat;
+import org.hitlabnz.motionrecorder.camera.VideoTrack;
 import org.hitlabnz.motionrecorder.events.FusionEvent;
 import org.hitlabnz.motionrecorder.events.GpsEvent;
 import org.hitlabnz.motionrecorder.events.ImuEvent;
@@ -16,6 +18,7 @@ import org.hitlabnz.motionrecorder.events.MotionEvent;
 import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
 import org.hitlabnz.motionrecorder.events.MotionEventListener;
 import org.hitlabnz.motionrecorder.events.PictureEvent;
+import org.hitlabnz.motionrecorder.math.Quat4f;
 import org.hitlabnz.motionrecorder.recorders.AccelerometerRecorder;
 import org.hitlabnz.motionrecorder.recorders.CompassRecorder;
 import org.hitlabnz.motionrecorder.recorders.GPSRecorder;
@@ -24,10 +27,16 @@ import org.hitlabnz.motionrecorder.recorders.GyroscopeRecorder;
 import org.hitlabnz.motionrecorder.recorders.LinearAccelerometerRecorder;
 import org.hitlabnz.motionrecorder.recorders.OrientationRecorder;
 import org.hitlabnz.motionrecorder.recorders.PictureRecorder;
+import org.hitlabnz.motionrecorder.recorders.RecorderThread;
 import org.hitlabnz.motionrecorder.recorders.RotationVectorRecorder;
 import org.hitlabnz.motionrecorder.recorders.SensorFusion1Recorder;
 import org.hitlabnz.motionrecorder.recorders.SensorFusion2Recorder;
+import org.hitlabnz.motionrecorder.recorders.SensorFusionRecorder;
+import org.hitlabnz.motionrecorder.recorders.SensorRateProfile;
 import org.hitlabnz.motionrecorder.recorders.SensorRecorder;
+import org.hitlabnz.motionrecorder.recorders.SessionClock;
+import org.hitlabnz.motionrecorder.session.SessionFormat;
+import org.hitlabnz.motionrecorder.session.SessionWriter;
 import org.opencv.android.BaseLoaderCallback;
 import org.opencv.android.LoaderCallbackInterface;
 import org.opencv.android.OpenCVLoader;
@@ -37,6 +46,7 @@ import android.content.Context;
 import android.location.Location;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Process;
 import android.text.format.DateFormat;
 import android.util.Log;
 import android.view.Menu;
@@ -54,7 +64,111 @@ import com.google.android.gms.location.LocationRequest;
 public class MainActivity extends Activity implements MotionEventListener {
 
 	public static final int DRAW_RESULT_BITMAP = 10;
+
+	/**
+	 * Flag indicating, whether all recorders should write into one binary session file (see {@link SessionFormat})
+	 * instead of a separate text file per sensor. Binary sessions can be converted into the text files with the
+	 * SessionTextConverter.
+	 */
+	private static final boolean RECORD_BINARY_SESSION = true;
+
+	/**
+	 * Maximum time in microseconds that the sensor hub may batch IMU events before delivering them while recording to
+	 * file. Batching does not lower the sampling rate, but lets the application processor sleep between batches.
+	 */
+	private static final int SENSOR_MAX_REPORT_LATENCY_US = 1000000;
+
+	/**
+	 * Flag indicating, whether gyroscope and accelerometer should be recorded at the fastest rate of the device (see
+	 * {@link SensorRateProfile#maxRate()}) for visual-inertial processing.
+	 */
+	private static final boolean MAX_RATE_CAPTURE = false;
+
+	/**
+	 * The format of the recorded pictures, e.g. PNG for lossless pictures or RAW for the highest frame rate (see
+	 * {@link ImageFormat})
+	 */
+	private static final ImageFormat IMAGE_FORMAT = ImageFormat.JPEG;
+
+	/**
+	 * The quality of the recorded pictures from 0 to 100, see {@link ImageFormat}
+	 */
+	private static final int IMAGE_QUALITY = PictureRecorder.DEFAULT_IMAGE_QUALITY;
+
+	/**
+	 * Flag indicating, whether the camera frames should be encoded into one video instead of pictures (see
+	 * {@link PictureRecorder#setVideoMode(boolean, int)})
+	 */
+	private static final boolean VIDEO_MODE = false;
+
+	/**
+	 * Time in seconds between two key frames of the video in video mode
+	 */
+	private static final int KEY_FRAME_INTERVAL_SECONDS = VideoTrack.DEFAULT_KEY_FRAME_INTERVAL_SECONDS;
+
+	/**
+	 * Flag indicating, whether only the luminance of the camera frames should be recorded (see
+	 * {@link PictureRecorder#setGrayscale(boolean)}), e.g. for feature tracking
+	 */
+	private static final boolean GRAYSCALE_CAPTURE = false;
+
+	/**
+	 * The keypoints and descriptors that are extracted from the camera frames while recording to file (see
+	 * {@link FeatureType}), or null to extract no features
+	 */
+	private static final FeatureType FEATURE_TYPE = null;
+
+	/**
+	 * Maximum number of keypoints per frame if features are extracted
+	 */
+	private static final int MAX_KEYPOINTS = FeatureExtractor.DEFAULT_MAX_KEYPOINTS;
+
+	/**
+	 * Flag indicating, whether the pictures should be stored as well if features are extracted. Without them, a
+	 * session only needs a fraction of the storage.
+	 */
+	private static final boolean STORE_PICTURES = true;
+
+	/**
+	 * Priority of the thread that receives and writes the IMU events. It is high, so that 400+ Hz streams are not
+	 * delayed by the UI thread drawing the camera preview.
+	 */
+	private static final int IMU_THREAD_PRIORITY = Process.THREAD_PRIORITY_URGENT_DISPLAY;
+
+	/**
+	 * Priority of the thread that runs the sensor fusion
+	 */
+	private static final int FUSION_THREAD_PRIORITY = Process.THREAD_PRIORITY_DISPLAY;
+
+	/**
+	 * Priority of the thread that receives and writes the locations
+	 */
+	private static final int GPS_THREAD_PRIORITY = Process.THREAD_PRIORITY_BACKGROUND;
+
+	/**
+	 * Maximum time in milliseconds to wait for a recorder thread to process its remaining events when the recording
+	 * is stopped
+	 */
+	private static final long RECORDER_THREAD_JOIN_TIMEOUT_MS = 1000;
+
+	/**
+	 * Time in milliseconds after which a warning is logged, if the picture recorder is still writing the pictures of
+	 * a stopped recording
+	 */
+	private static final long PICTURE_RECORDER_STOP_TIMEOUT_MS = 5000;
+
 	private List<SensorRecorder> recorders;
+
+	/**
+	 * The writer of the binary session file that is shared by all recorders while recording
+	 */
+	private SessionWriter sessionWriter;
+
+	/**
+	 * The threads on which the recorders receive and process their events while recording. The picture recorder runs
+	 * on the thread of the camera.
+	 */
+	private RecorderThread imuThread, fusionThread, gpsThread;
 	SurfaceHolder holder;
 	SensorFusion1Recorder sensorFusion1Recorder;
 	SensorFusion2Recorder sensorFusion2Recorder;
@@ -185,14 +299,26 @@ public class MainActivity extends Activity implements MotionEventListener {
 		findViewById(R.id.buttonStopRecording).setEnabled(true);
 		findViewById(R.id.buttonStartRecording).setEnabled(false);
 
-		Date startDate = new Date();
+		SessionClock clock = new SessionClock();
 		// Create a new folder that represents the date and time when we started to record
 		File directory = new File(Environment.getExternalStorageDirectory() + File.separator + "MotionRecordings"
-				+ File.separator + DateFormat.format("kkmmss", startDate));
+				+ File.separator + DateFormat.format("kkmmss", clock.getStartTimeMillis()));
 		directory.mkdirs();
 
+		if (RECORD_BINARY_SESSION) {
+			try {
+				sessionWriter = new SessionWriter(new File(directory, SessionFormat.FILE_NAME), clock.getStartTimeMillis(),
+						clock.getStartRealtimeNanos());
+			} catch (IOException e) {
+				Log.e(TAG, "Could not create session file, falling back to text files", e);
+				sessionWriter = null;
+			}
+		}
+
+		configureRecorders(SENSOR_MAX_REPORT_LATENCY_US);
 		for (SensorRecorder recorder : recorders) {
-			recorder.startRecording(startDate, directory);
+			recorder.setSessionWriter(sessionWriter);
+			recorder.startRecording(clock, directory);
 		}
 	}
 
@@ -203,24 +329,126 @@ public class MainActivity extends Activity implements MotionEventListener {
 		findViewById(R.id.buttonStopRecording).setEnabled(true);
 		findViewById(R.id.buttonStartRecording).setEnabled(false);
 
-		Date startDate = new Date();
+		SessionClock clock = new SessionClock();
 		// Create a new folder that represents the date and time when we started to record
 		File directory = new File(Environment.getExternalStorageDirectory() + File.separator + "MotionRecordings"
-				+ File.separator + DateFormat.format("kkmmss", startDate));
+				+ File.separator + DateFormat.format("kkmmss", clock.getStartTimeMillis()));
 		directory.mkdirs();
 
+		// Listeners expect the events immediately
+		configureRecorders(0);
 		for (SensorRecorder recorder : recorders) {
-			//recorder.startRecording(startDate, directory);
-			recorder.startRecording(startDate, this);
+			//recorder.startRecording(clock, directory);
+			recorder.startRecording(clock, this);
+		}
+	}
+
+	/**
+	 * Sets the sampling rates of all recorders and starts the threads that the recorders run on
+	 * 
+	 * @param maxReportLatencyUs The maximum time in microseconds that the sensor hub may batch events
+	 */
+	private void configureRecorders(int maxReportLatencyUs) {
+		SensorRateProfile rateProfile = MAX_RATE_CAPTURE ? SensorRateProfile.maxRate() : SensorRateProfile.standard();
+		imuThread = new RecorderThread("ImuRecorder", IMU_THREAD_PRIORITY);
+		fusionThread = new RecorderThread("FusionRecorder", FUSION_THREAD_PRIORITY);
+		gpsThread = new RecorderThread("GpsRecorder", GPS_THREAD_PRIORITY);
+
+		for (SensorRecorder recorder : recorders) {
+			recorder.setRateProfile(rateProfile);
+			recorder.setMaxReportLatency(maxReportLatencyUs);
+			if (recorder instanceof GPSRecorder) {
+				recorder.setHandler(gpsThread.getHandler());
+			} else if (recorder instanceof SensorFusionRecorder) {
+				recorder.setHandler(fusionThread.getHandler());
+			} else if (recorder instanceof PictureRecorder) {
+				PictureRecorder pictureRecorder = (PictureRecorder) recorder;
+				pictureRecorder.setImageFormat(IMAGE_FORMAT, IMAGE_QUALITY);
+				pictureRecorder.setVideoMode(VIDEO_MODE, KEY_FRAME_INTERVAL_SECONDS);
+				pictureRecorder.setGrayscale(GRAYSCALE_CAPTURE);
+				pictureRecorder.setFeatureExtraction(FEATURE_TYPE, MAX_KEYPOINTS, STORE_PICTURES);
+				recorder.setHandler(null);
+			} else {
+				recorder.setHandler(imuThread.getHandler());
+			}
 		}
 	}
 
 	public void onStopRecordingButtonClick(View view) {
 		findViewById(R.id.buttonStopRecording).setEnabled(false);
-		findViewById(R.id.buttonStartRecording).setEnabled(true);
+
+		// Request the events that are still batched in the sensor FIFOs and stop once they were delivered
+		int flushTimeUs = 0;
+		for (SensorRecorder recorder : recorders) {
+			flushTimeUs = Math.max(flushTimeUs, recorder.flushSensors());
+		}
+		if (flushTimeUs > 0) {
+			view.postDelayed(new Runnable() {
+				@Override
+				public void run() {
+					stopRecording();
+				}
+			}, flushTimeUs / 1000);
+		} else {
+			stopRecording();
+		}
+	}
+
+	/**
+	 * Stops all recorders and closes the session file. The picture recorder writes the pictures that are still queued
+	 * in the background, so the session file is closed and a new recording can be started only after it is done.
+	 */
+	private void stopRecording() {
 		for (SensorRecorder recorder : recorders) {
 			recorder.stopRecording();
 		}
+		stopRecorderThreads();
+
+		final SessionWriter stoppedSessionWriter = sessionWriter;
+		sessionWriter = null;
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				for (SensorRecorder recorder : recorders) {
+					if (recorder instanceof PictureRecorder) {
+						while (!((PictureRecorder) recorder).awaitStop(PICTURE_RECORDER_STOP_TIMEOUT_MS)) {
+							Log.w(TAG, "Pictures are still being written");
+						}
+					}
+				}
+				if (stoppedSessionWriter != null) {
+					try {
+						stoppedSessionWriter.close();
+					} catch (IOException e) {
+						Log.e(TAG, "Could not close session file", e);
+					}
+					Log.i(TAG, "Session closed: " + stoppedSessionWriter.getRecordCount() + " records written, "
+							+ stoppedSessionWriter.getDroppedCount() + " records dropped");
+				}
+				runOnUiThread(new Runnable() {
+					@Override
+					public void run() {
+						findViewById(R.id.buttonStartRecording).setEnabled(true);
+					}
+				});
+			}
+		}, "SessionClose").start();
+	}
+
+	/**
+	 * Stops the recorder threads after they processed the events that are still queued, so nothing is written into
+	 * the session file after it was closed. The IMU thread is stopped first, because it hands events to the fusion.
+	 */
+	private void stopRecorderThreads() {
+		if (imuThread == null)
+			return;
+
+		imuThread.quit(RECORDER_THREAD_JOIN_TIMEOUT_MS);
+		fusionThread.quit(RECORDER_THREAD_JOIN_TIMEOUT_MS);
+		gpsThread.quit(RECORDER_THREAD_JOIN_TIMEOUT_MS);
+		imuThread = null;
+		fusionThread = null;
+		gpsThread = null;
 	}
 
 	public void onStoredGpsTagClick(View view) {
@@ -322,15 +550,15 @@ public class MainActivity extends Activity implements MotionEventListener {
 				// Example: 35, Accelerometer, 349398.6271, -0.011820, 0.005234, -0.016350
 				ImuEvent accEvent = (ImuEvent) event;
 				Log.i(TAG, String.format("%d, Accelerometer, %.3f, %f, %f, %f", eventIndex, event.elapsedTime / 1000f,
-						accEvent.originalEvent.values[0], accEvent.originalEvent.values[1],
-						accEvent.originalEvent.values[2]));
+						accEvent.values[0], accEvent.values[1],
+						accEvent.values[2]));
 				break;
 			case Compass:
 				// Example: 41, Magnetometer, 349398.6899, -0.007628, -0.999808, -0.018054
 				ImuEvent compassEvent = (ImuEvent) event;
 				Log.i(TAG, String.format("%d, Magnetometer, %.3f, %f, %f, %f", eventIndex, event.elapsedTime / 1000f,
-						compassEvent.originalEvent.values[0], compassEvent.originalEvent.values[1],
-						compassEvent.originalEvent.values[2]));
+						compassEvent.values[0], compassEvent.values[1],
+						compassEvent.values[2]));
 				break;
 			case FusedRotationVector1:
 				break;
@@ -347,21 +575,21 @@ public class MainActivity extends Activity implements MotionEventListener {
 				// Example: 41, Gravity, 349398.6899, -0.007628, -0.999808, -0.018054
 				ImuEvent gravityEvent = (ImuEvent) event;
 				Log.i(TAG, String.format("%d, Gravity, %.3f, %f, %f, %f", eventIndex, event.elapsedTime / 1000f,
-						gravityEvent.originalEvent.values[0], gravityEvent.originalEvent.values[1],
-						gravityEvent.originalEvent.values[2]));
+						gravityEvent.values[0], gravityEvent.values[1],
+						gravityEvent.values[2]));
 				break;
 			case Gyroscope:
 				// Example: 34, Gyroscope, 349398.6271, -0.010987, -0.070469, 0.000922
 				ImuEvent gyroEvent = (ImuEvent) event;
 				Log.i(TAG, String.format("%d, Gravity, %.3f, %f, %f, %f", eventIndex, event.elapsedTime / 1000f,
-						gyroEvent.originalEvent.values[0], gyroEvent.originalEvent.values[1],
-						gyroEvent.originalEvent.values[2]));
+						gyroEvent.values[0], gyroEvent.values[1],
+						gyroEvent.values[2]));
 				break;
 			case LinearAccelerometer:
 				ImuEvent linAccEvent = (ImuEvent) event;
 				Log.i(TAG, String.format("%d, LinearAccelerometer, %.3f, %f, %f, %f", eventIndex,
-						event.elapsedTime / 1000f, linAccEvent.originalEvent.values[0],
-						linAccEvent.originalEvent.values[1], linAccEvent.originalEvent.values[2]));
+						event.elapsedTime / 1000f, linAccEvent.values[0],
+						linAccEvent.values[1], linAccEvent.values[2]));
 				break;
 			case Orientation:
 				// Not used, since deprecated
@@ -385,11 +613,11 @@ public class MainActivity extends Activity implements MotionEventListener {
 
 		if (event.eventType == EventType.FusedRotationVector1) {
 
-			Quaternion q = ((FusionEvent) event).fusedQuaternion;
+			Quat4f q = ((FusionEvent) event).fusedQuaternion;
 
 			//            Log.i("MotionEvent",
-			//                    String.format("Time:%.3f;Quaternion:%.3f, %.3f, %.3f, %.3f", event.elapsedTime / 1000f, q.x(),
-			//                            q.y(), q.z(), q.w()));
+			//                    String.format("Time:%.3f;Quaternion:%.3f, %.3f, %.3f, %.3f", event.elapsedTime / 1000f, q.x,
+			//                            q.y, q.z, q.w));
 
 			//			float[] eulerAngles = q.getOrientationValues();
 			//			Log.i("MotionEvent", String.format("New FusionEvent; az: %.2f, pi: %.2f, roll: %.2f", eulerAngles[0],
@@ -4,15 +4,22 @@ import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 
-import org.opencv.android.Utils;
+import org.hitlabnz.motionrecorder.camera.CaptureSchedule;
+import org.hitlabnz.motionrecorder.camera.Frame;
+import org.hitlabnz.motionrecorder.camera.FramePool;
+import org.hitlabnz.motionrecorder.camera.FrameTransform;
+import org.hitlabnz.motionrecorder.camera.ResolutionPolicy;
+import org.hitlabnz.motionrecorder.recorders.SessionClock;
 import org.opencv.core.Mat;
 import org.opencv.core.Size;
 import org.opencv.highgui.Highgui;
 import org.opencv.highgui.VideoCapture;
 
-import android.graphics.Bitmap;
+import android.util.Log;
 
 public class OpenCVWorker implements Runnable {
     public static final String TAG = "OpenCVWorker";
@@ -20,32 +27,126 @@ public class OpenCVWorker implements Runnable {
     public static final int FIRST_CAMERA = 0;
     public static final int SECOND_CAMERA = 1;
 
-    public static final int RESULT_MATRIX_BUFFER_SIZE = 3;
     /**
-     * Boolean to indicate whether this thread should keep on running or terminate
+     * Default number of frames that can be in use by the callbacks at the same time, before frames are dropped
      */
-    private boolean doProcess;
+    public static final int FRAME_POOL_SIZE = 3;
+
+    /**
+     * Number of captured frames after which the capacity of an adaptive frame pool is checked
+     */
+    private static final int ADAPT_INTERVAL_FRAMES = 30;
+
+    /**
+     * Minimum capacity of an adaptive frame pool
+     */
+    private static final int MIN_ADAPTIVE_POOL_SIZE = 2;
+
+    /**
+     * Weight of a new sample in the moving average of the frame interval
+     */
+    private static final float FRAME_INTERVAL_SMOOTHING = 0.1f;
+
+    /**
+     * Time in nanoseconds that the thread waits after the first failed grab, doubled with each further failure
+     */
+    private static final long GRAB_RETRY_MIN_NANOS = 5000000L;
+
+    /**
+     * Maximum time in nanoseconds that the thread waits between two failed grabs
+     */
+    private static final long GRAB_RETRY_MAX_NANOS = 200000000L;
+
+    /**
+     * Number of failed grabs in a row after which the camera is given up, about three seconds
+     */
+    private static final int MAX_GRAB_FAILURES = 20;
+    /**
+     * Boolean to indicate whether this thread should keep on running or terminate. It is set before the thread starts,
+     * so a stop that comes before the thread runs is not lost.
+     */
+    private volatile boolean doProcess = true;
+
+    /**
+     * The thread that runs this worker, to wake it up when it is stopped while sleeping
+     */
+    private volatile Thread mThread;
+
+    /**
+     * Counted down when the thread has released the camera and the frames
+     */
+    private final CountDownLatch mStopped = new CountDownLatch(1);
+
+    /**
+     * Decides which frames are grabbed and retrieved
+     */
+    private CaptureSchedule mCaptureSchedule = CaptureSchedule.everyFrame();
+
+    /**
+     * Selects the resolution of the camera
+     */
+    private ResolutionPolicy mResolutionPolicy = ResolutionPolicy.DEFAULT;
+
+    /**
+     * Crops and downscales the camera image before it is written into a frame, or null to retrieve into the frames
+     * directly
+     */
+    private FrameTransform mFrameTransform;
+
+    /**
+     * The image that the camera retrieves into, if there is a frame transform
+     */
+    private Mat mCameraImage;
+
+    /**
+     * Whether only the luminance of the frames is retrieved
+     */
+    private boolean mGrayscale;
     private int mCameraId = SECOND_CAMERA;
+    private final int mFramePoolSize;
     private Size mPreviewSize;
     private VideoCapture mCamera;
-    private ConcurrentLinkedQueue<Bitmap> mResultBitmaps = new ConcurrentLinkedQueue<Bitmap>();
     private Set<ResultCallback> mResultCallbacks = Collections.synchronizedSet(new HashSet<ResultCallback>());
 
     /**
-     * Matrices used to hold the actual image data for each processing step
+     * Frames that the camera retrieves its images into
+     */
+    private FramePool mFramePool;
+
+    /**
+     * Maximum memory in bytes that the frame pool may use if it adapts its capacity, or 0 for a fixed capacity
      */
-    private Mat mCurrentFrame;
+    private long mPoolMemoryBudget;
+
+    /**
+     * Moving average of the time in nanoseconds between two captured frames
+     */
+    private long mAverageFrameIntervalNanos;
+
+    /**
+     * Counters of the frames, only written by the thread of this worker
+     */
+    private volatile long mGrabbedCount;
+    private volatile long mDeliveredCount;
+    private volatile long mDroppedCount;
+    private volatile long mSkippedCount;
 
     public OpenCVWorker(int cameraId) {
+        this(cameraId, FRAME_POOL_SIZE);
+    }
+
+    /**
+     * @param cameraId The camera to capture from
+     * @param framePoolSize Number of frames that can be in use by the callbacks at the same time, e.g. because they
+     *            are queued for encoding, before frames are dropped
+     */
+    public OpenCVWorker(int cameraId, int framePoolSize) {
         mCameraId = cameraId;
+        mFramePoolSize = framePoolSize;
         // Default preview size
         mPreviewSize = new Size(480, 320);
     }
 
-    public void releaseResultBitmap(Bitmap bitmap) {
-        mResultBitmaps.offer(bitmap);
-    }
-
     public void addResultCallback(ResultCallback resultCallback) {
         mResultCallbacks.add(resultCallback);
     }
@@ -54,12 +155,110 @@ public class OpenCVWorker implements Runnable {
         mResultCallbacks.remove(resultCallback);
     }
 
+    /**
+     * Lets the frame pool grow or shrink with the latency of the callbacks: the pool gets as many frames as are captured
+     * while a callback holds a frame, plus one, within the given memory budget. Must be called before the worker is
+     * started.
+     * 
+     * @param memoryBudgetBytes Maximum memory in bytes for the images of the pool, or 0 for a fixed capacity
+     */
+    public void setAdaptivePool(long memoryBudgetBytes) {
+        mPoolMemoryBudget = memoryBudgetBytes;
+    }
+
+    /**
+     * Sets which frames are captured. Must be called before the worker is started.
+     */
+    public void setCaptureSchedule(CaptureSchedule captureSchedule) {
+        mCaptureSchedule = captureSchedule;
+    }
+
+    /**
+     * Sets how the resolution of the camera is selected. Must be called before the worker is started.
+     */
+    public void setResolutionPolicy(ResolutionPolicy resolutionPolicy) {
+        mResolutionPolicy = resolutionPolicy;
+    }
+
+    /**
+     * Sets a transform that crops and downscales the camera image before it is passed to the callbacks, or null to
+     * pass the whole image. The worker releases the transform when it terminates. Must be called before the worker is
+     * started.
+     */
+    public void setFrameTransform(FrameTransform frameTransform) {
+        mFrameTransform = frameTransform != null && !frameTransform.isIdentity() ? frameTransform : null;
+    }
+
+    /**
+     * Selects whether the frames are retrieved as 8 bit grayscale instead of BGR. The camera delivers the luminance
+     * plane as it is, so this skips the colour conversion and a third of the memory traffic per frame. Must be called
+     * before the worker is started.
+     */
+    public void setGrayscale(boolean grayscale) {
+        mGrayscale = grayscale;
+    }
+
+    /**
+     * Returns the number of frames that were grabbed from the camera
+     */
+    public long getGrabbedCount() {
+        return mGrabbedCount;
+    }
+
+    /**
+     * Returns the number of frames that were passed to the callbacks
+     */
+    public long getDeliveredCount() {
+        return mDeliveredCount;
+    }
+
+    /**
+     * Returns the number of frames that were dropped, because the callbacks still held all frames of the pool
+     */
+    public long getDroppedCount() {
+        return mDroppedCount;
+    }
+
+    /**
+     * Returns the number of frames that were grabbed but not retrieved, because the capture schedule did not want them
+     */
+    public long getSkippedCount() {
+        return mSkippedCount;
+    }
+
+    /**
+     * Asks the thread to terminate after the current frame. Use {@link #awaitStop(long)} to wait until it released the
+     * camera.
+     */
     public void stopProcessing() {
         doProcess = false;
+        Thread thread = mThread;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+        }
     }
 
-    // Setup the camera
-    private void setupCamera() {
+    /**
+     * Waits until the thread has terminated after {@link #stopProcessing()}, so no callback is called anymore.
+     * 
+     * @param timeoutMillis Maximum time to wait in milliseconds
+     * @return Whether the thread has terminated
+     */
+    public boolean awaitStop(long timeoutMillis) {
+        try {
+            return mStopped.await(timeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Opens the camera and selects its resolution
+     * 
+     * @return Whether the camera could be opened
+     */
+    private boolean setupCamera() {
         if (mCamera != null) {
             VideoCapture camera = mCamera;
             mCamera = null; // Make it null before releasing...
@@ -67,40 +266,38 @@ public class OpenCVWorker implements Runnable {
         }
 
         mCamera = new VideoCapture(mCameraId);
+        if (!mCamera.isOpened()) {
+            Log.e(TAG, "Could not open camera " + mCameraId);
+            mCamera.release();
+            mCamera = null;
+            return false;
+        }
 
         // Figure out the most appropriate preview size that this camera
         // supports.
         // We always need to do this as each device support different preview
         // sizes for their cameras
         List<Size> previewSizes = mCamera.getSupportedPreviewSizes();
-        double largestPreviewSize = 1280 * 720; // We should be smaller than
-                                                // this...
-        double smallestWidth = 480; // Let's not get a smaller width than
-                                    // this...
-        for (Size previewSize : previewSizes) {
-            if (previewSize.area() < largestPreviewSize && previewSize.width >= smallestWidth) {
-                mPreviewSize = previewSize;
-            }
+        Size previewSize = mResolutionPolicy.select(previewSizes);
+        if (previewSize != null) {
+            mPreviewSize = previewSize;
         }
+        Log.i(TAG, "Camera resolution " + (int) mPreviewSize.width + "x" + (int) mPreviewSize.height + " ("
+                + mResolutionPolicy + ")");
 
         mCamera.set(Highgui.CV_CAP_PROP_FRAME_WIDTH, mPreviewSize.width);
         mCamera.set(Highgui.CV_CAP_PROP_FRAME_HEIGHT, mPreviewSize.height);
+        return true;
     }
 
     /**
-     * Initialize the matrices and the bitmaps we will use to draw the result
+     * Initialize the frames that are passed to the callbacks. Consumers may keep frames on other threads, so a pool is
+     * used instead of a single matrix.
      */
-    private void initMatrices() {
-        mCurrentFrame = new Mat();
-
-        // Since drawing to screen occurs on a different thread than the
-        // processing,
-        // we use a queue to handle the bitmaps we will draw to screen
-        mResultBitmaps.clear();
-        for (int i = 0; i < RESULT_MATRIX_BUFFER_SIZE; i++) {
-            Bitmap resultBitmap = Bitmap.createBitmap((int) mPreviewSize.width, (int) mPreviewSize.height,
-                    Bitmap.Config.ARGB_8888);
-            mResultBitmaps.offer(resultBitmap);
+    private void initFrames() {
+        mFramePool = new FramePool(mFramePoolSize);
+        if (mFrameTransform != null) {
+            mCameraImage = new Mat();
         }
     }
 
@@ -109,35 +306,139 @@ public class OpenCVWorker implements Runnable {
      */
     @Override
     public void run() {
-        doProcess = true;
-
-        setupCamera();
-
-        initMatrices();
+        mThread = Thread.currentThread();
+        try {
+            if (doProcess && setupCamera()) {
+                initFrames();
+                processFrames();
+            }
+        } finally {
+            if (mCamera != null) {
+                mCamera.release();
+                mCamera = null;
+            }
+            if (mFramePool != null) {
+                mFramePool.close();
+            }
+            if (mFrameTransform != null) {
+                mFrameTransform.release();
+            }
+            if (mCameraImage != null) {
+                mCameraImage.release();
+            }
+            mThread = null;
+            mStopped.countDown();
+        }
+    }
 
+    /**
+     * Grabs the frames that the capture schedule wants and passes them to the callbacks until the worker is stopped.
+     * Between the grabs, the thread sleeps instead of grabbing frames that would be skipped anyway. If grabbing fails,
+     * e.g. because another app took the camera, the thread backs off and gives up after {@link #MAX_GRAB_FAILURES}
+     * failures in a row.
+     */
+    private void processFrames() {
+        long lastTimestampNanos = 0;
+        int grabFailures = 0;
+        int retrieveFlag = mGrayscale ? Highgui.CV_CAP_ANDROID_GREY_FRAME : Highgui.CV_CAP_ANDROID_COLOR_FRAME_BGR;
         while (doProcess && mCamera != null) {
+            long waitNanos = mCaptureSchedule.nanosUntilNextGrab(SessionClock.elapsedRealtimeNanos());
+            if (waitNanos > 0) {
+                // Woken up early by stopProcessing()
+                LockSupport.parkNanos(this, waitNanos);
+                continue;
+            }
+
             boolean grabbed = mCamera.grab();
+            // Take the timestamp right after grabbing, because retrieving and converting the frame takes a while
+            long timestampNanos = SessionClock.elapsedRealtimeNanos();
 
             if (grabbed) {
-                // Retrieve the next frame from the camera in RGB format
-                mCamera.retrieve(mCurrentFrame, Highgui.CV_CAP_ANDROID_COLOR_FRAME_RGB);
-                notifyResultCallback(mCurrentFrame);
+                grabFailures = 0;
+                mGrabbedCount++;
+                if (!mCaptureSchedule.shouldCapture(timestampNanos)) {
+                    // Not retrieving the frame saves the conversion, this is not a drop
+                    mSkippedCount++;
+                    continue;
+                }
+
+                // The pool is adapted to the interval of the captured frames, skipped frames need no frame
+                long capturedCount = mGrabbedCount - mSkippedCount;
+                if (lastTimestampNanos != 0) {
+                    long interval = timestampNanos - lastTimestampNanos;
+                    mAverageFrameIntervalNanos = mAverageFrameIntervalNanos == 0 ? interval
+                            : mAverageFrameIntervalNanos
+                                    + (long) ((interval - mAverageFrameIntervalNanos) * FRAME_INTERVAL_SMOOTHING);
+                }
+                lastTimestampNanos = timestampNanos;
+                if (mPoolMemoryBudget > 0 && capturedCount % ADAPT_INTERVAL_FRAMES == 0) {
+                    adaptPool();
+                }
+
+                Frame frame = mFramePool.obtain(timestampNanos);
+                if (frame != null) {
+                    // Retrieve the next frame from the camera in BGR or grayscale, which OpenCV can encode directly
+                    if (mFrameTransform == null) {
+                        mCamera.retrieve(frame.image, retrieveFlag);
+                    } else {
+                        mCamera.retrieve(mCameraImage, retrieveFlag);
+                        mFrameTransform.apply(mCameraImage, frame.image);
+                    }
+                    mDeliveredCount++;
+                    notifyResultCallback(frame);
+                    frame.release();
+                } else {
+                    // The callbacks still hold all frames
+                    mDroppedCount++;
+                    notifyFrameDropped(timestampNanos);
+                }
+            } else {
+                grabFailures++;
+                if (grabFailures >= MAX_GRAB_FAILURES) {
+                    Log.e(TAG, "Grabbing from camera " + mCameraId + " failed " + grabFailures
+                            + " times in a row, giving up");
+                    return;
+                }
+                // Woken up early by stopProcessing()
+                LockSupport.parkNanos(this,
+                        Math.min(GRAB_RETRY_MIN_NANOS << (grabFailures - 1), GRAB_RETRY_MAX_NANOS));
             }
         }
+    }
 
-        if (mCamera != null) {
-            mCamera.release();
-            mCamera = null;
+    /**
+     * Sets the capacity of the frame pool to the number of frames that are captured while a callback holds a frame,
+     * plus one, within the memory budget
+     */
+    private void adaptPool() {
+        long holdNanos = mFramePool.getAverageHoldNanos();
+        if (holdNanos == 0 || mAverageFrameIntervalNanos == 0) {
+            return;
         }
+        Size frameSize = getFrameSize();
+        long frameBytes = (long) (frameSize.width * frameSize.height * (mGrayscale ? 1 : 3));
+        int maxCapacity = (int) Math.max(mPoolMemoryBudget / frameBytes, MIN_ADAPTIVE_POOL_SIZE);
+        int needed = (int) ((holdNanos + mAverageFrameIntervalNanos - 1) / mAverageFrameIntervalNanos) + 1;
+        int capacity = Math.min(Math.max(needed, MIN_ADAPTIVE_POOL_SIZE), maxCapacity);
+        if (capacity != mFramePool.getCapacity()) {
+            Log.i(TAG, "Frame pool capacity " + mFramePool.getCapacity() + " -> " + capacity + ", frames are held for "
+                    + holdNanos / 1000000 + " ms");
+            mFramePool.setCapacity(capacity);
+        }
+    }
 
+    private void notifyFrameDropped(long timestampNanos) {
+        synchronized (mResultCallbacks) {
+            for (ResultCallback resultCallback : mResultCallbacks) {
+                resultCallback.onFrameDropped(timestampNanos);
+            }
+        }
     }
 
-    private void notifyResultCallback(Mat result) {
-        Bitmap resultBitmap = mResultBitmaps.poll();
-        if (resultBitmap != null) {
-            Utils.matToBitmap(result, resultBitmap, true);
+    private void notifyResultCallback(Frame frame) {
+        synchronized (mResultCallbacks) {
             for (ResultCallback resultCallback : mResultCallbacks) {
-                resultCallback.onResultMatrixReady(resultBitmap);
+                resultCallback.onFrameReady(frame);
             }
         }
     }
@@ -146,7 +447,27 @@ public class OpenCVWorker implements Runnable {
         return mPreviewSize;
     }
 
+    /**
+     * Returns the size of the frames that are passed to the callbacks, which is smaller than the preview size if there
+     * is a frame transform
+     */
+    public Size getFrameSize() {
+        return mFrameTransform != null ? mFrameTransform.getOutputSize(mPreviewSize) : mPreviewSize;
+    }
+
     public interface ResultCallback {
-        void onResultMatrixReady(Bitmap mat);
+        /**
+         * @param frame The frame that was grabbed. It is released after all callbacks returned, so a callback that keeps
+         *            it has to {@link Frame#retain()} it.
+         */
+        void onFrameReady(Frame frame);
+
+        /**
+         * Called instead of {@link #onFrameReady(Frame)} for a frame that was grabbed but dropped, because the
+         * callbacks still held all frames of the pool
+         * 
+         * @param timestampNanos Elapsed realtime in nanoseconds when the frame was grabbed
+         */
+        void onFrameDropped(long timestampNanos);
     }
 }
@@ -0,0 +1,164 @@
+package org.hitlabnz.motionrecorder.camera;
+
+/**
+ * Decides which camera frames are captured. The camera thread asks the schedule how long it can sleep before the
+ * next grab ({@link #nanosUntilNextGrab(long)}) and whether a grabbed frame is wanted ({@link #shouldCapture(long)});
+ * only wanted frames are retrieved and passed on. Frames that are not wanted are skipped on purpose and are not
+ * counted as dropped.
+ *
+ * Instances are used by a single camera thread.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class CaptureSchedule {
+
+	/**
+	 * The ways of selecting frames
+	 */
+	public enum Mode {
+		/**
+		 * Every frame of the camera is captured
+		 */
+		EVERY_FRAME,
+		/**
+		 * Frames are captured at a target frame rate below the one of the camera
+		 */
+		FRAME_RATE,
+		/**
+		 * Every n-th frame of the camera is captured
+		 */
+		EVERY_NTH_FRAME,
+		/**
+		 * Frames are captured while a {@link MotionTrigger} reports motion
+		 */
+		MOTION
+	}
+
+	/**
+	 * Time in nanoseconds that the camera thread sleeps while waiting for motion
+	 */
+	private static final long MOTION_POLL_NANOS = 10000000L;
+
+	private final Mode mode;
+
+	/**
+	 * Time in nanoseconds between two frames in {@link Mode#FRAME_RATE}
+	 */
+	private final long intervalNanos;
+
+	/**
+	 * n in {@link Mode#EVERY_NTH_FRAME}
+	 */
+	private final int n;
+
+	private final MotionTrigger trigger;
+
+	/**
+	 * Elapsed realtime in nanoseconds when the next frame is due in {@link Mode#FRAME_RATE}
+	 */
+	private long dueNanos;
+
+	/**
+	 * Number of frames that were grabbed
+	 */
+	private long grabCount;
+
+	private CaptureSchedule(Mode mode, long intervalNanos, int n, MotionTrigger trigger) {
+		this.mode = mode;
+		this.intervalNanos = intervalNanos;
+		this.n = Math.max(n, 1);
+		this.trigger = trigger;
+	}
+
+	/**
+	 * Captures every frame of the camera
+	 */
+	public static CaptureSchedule everyFrame() {
+		return new CaptureSchedule(Mode.EVERY_FRAME, 0, 1, null);
+	}
+
+	/**
+	 * Captures frames at the given rate. The camera thread sleeps between the frames, so frames above the rate are not
+	 * even grabbed.
+	 *
+	 * @param framesPerSecond The target frame rate
+	 * @throws IllegalArgumentException If the frame rate is not a finite number greater than 0
+	 */
+	public static CaptureSchedule frameRate(float framesPerSecond) {
+		if (!(framesPerSecond > 0) || Float.isInfinite(framesPerSecond)) {
+			throw new IllegalArgumentException("Invalid frame rate: " + framesPerSecond);
+		}
+		return new CaptureSchedule(Mode.FRAME_RATE, (long) (1000000000L / framesPerSecond), 1, null);
+	}
+
+	/**
+	 * Captures every n-th frame of the camera. The other frames are grabbed, but not retrieved.
+	 */
+	public static CaptureSchedule everyNthFrame(int n) {
+		return new CaptureSchedule(Mode.EVERY_NTH_FRAME, 0, n, null);
+	}
+
+	/**
+	 * Captures every frame while the trigger reports motion. Without motion, the camera thread sleeps.
+	 */
+	public static CaptureSchedule onMotion(MotionTrigger trigger) {
+		return new CaptureSchedule(Mode.MOTION, 0, 1, trigger);
+	}
+
+	/**
+	 * Returns a schedule with the same settings that starts over
+	 */
+	public CaptureSchedule copy() {
+		return new CaptureSchedule(mode, intervalNanos, n, trigger);
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Returns how long the camera thread can sleep before it has to grab the next frame.
+	 *
+	 * @param nowNanos Current elapsed realtime in nanoseconds
+	 * @return The time in nanoseconds, 0 or less if a frame should be grabbed now
+	 */
+	public long nanosUntilNextGrab(long nowNanos) {
+		switch (mode) {
+		case FRAME_RATE:
+			return dueNanos - nowNanos;
+		case MOTION:
+			return trigger.isMoving(nowNanos) ? 0 : MOTION_POLL_NANOS;
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns whether a grabbed frame is wanted. Must be called once for each grabbed frame.
+	 *
+	 * @param timestampNanos Elapsed realtime in nanoseconds when the frame was grabbed
+	 */
+	public boolean shouldCapture(long timestampNanos) {
+		grabCount++;
+		switch (mode) {
+		case FRAME_RATE:
+			if (timestampNanos < dueNanos) {
+				return false;
+			}
+			// Keep the average rate, unless the first frame or the camera is late by more than an interval
+			if (timestampNanos - dueNanos > intervalNanos) {
+				dueNanos = timestampNanos + intervalNanos;
+			} else {
+				dueNanos += intervalNanos;
+			}
+			return true;
+		case EVERY_NTH_FRAME:
+			return (grabCount - 1) % n == 0;
+		case MOTION:
+			return trigger.isMoving(timestampNanos);
+		default:
+			return true;
+		}
+	}
+}
@@ -0,0 +1,382 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hitlabnz.motionrecorder.camera.FrameEncoder.BackpressurePolicy;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfKeyPoint;
+import org.opencv.features2d.DescriptorExtractor;
+import org.opencv.features2d.FeatureDetector;
+import org.opencv.imgproc.Imgproc;
+
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Detects keypoints and computes their descriptors on a pool of worker threads and appends them to the feature file
+ * (see {@link FeatureFormat}), so a session can be stored without the pixels of its frames. It is used next to or
+ * instead of the {@link FrameEncoder} and works the same way: frames are retained while they are queued, and the
+ * {@link BackpressurePolicy} decides what happens if the workers can not keep up.
+ *
+ * The detectors of OpenCV are not thread-safe, so each worker creates its own.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class FeatureExtractor {
+	/**
+	 * Tag for logging
+	 */
+	private static final String TAG = FeatureExtractor.class.getName();
+
+	/**
+	 * Default maximum number of keypoints per frame
+	 */
+	public static final int DEFAULT_MAX_KEYPOINTS = 500;
+
+	/**
+	 * Number of floats per keypoint in a MatOfKeyPoint: x, y, size, angle, response, octave, class id
+	 */
+	private static final int KEYPOINT_FLOATS = 7;
+
+	/**
+	 * Index of the response in the floats of a keypoint
+	 */
+	private static final int RESPONSE = 4;
+
+	/**
+	 * Queued task that tells a worker to quit
+	 */
+	private static final Task QUIT = new Task(null, 0, 0);
+
+	private final FeatureType type;
+
+	private final int maxKeypoints;
+
+	private final BackpressurePolicy policy;
+
+	private final BlockingQueue<Task> queue;
+
+	private final Thread[] workers;
+
+	private final FrameContainerWriter writer;
+
+	private final AtomicLong extractedCount = new AtomicLong();
+
+	private final AtomicLong keypointCount = new AtomicLong();
+
+	/**
+	 * Sum of the time in nanoseconds that the workers spent on extracting and writing the features
+	 */
+	private final AtomicLong extractNanos = new AtomicLong();
+
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates the feature file and starts the workers.
+	 *
+	 * @param folder The folder the feature file is written to
+	 * @param type The detector and descriptor
+	 * @param maxKeypoints Maximum number of keypoints per frame, the ones with the strongest response are kept
+	 * @param threadCount Number of worker threads
+	 * @param queueCapacity Maximum number of frames that wait for a worker
+	 * @param policy What to do with frames if the queue is full
+	 * @throws IOException If the feature file could not be created
+	 */
+	public FeatureExtractor(File folder, FeatureType type, int maxKeypoints, int threadCount, int queueCapacity,
+			BackpressurePolicy policy) throws IOException {
+		this.type = type;
+		this.maxKeypoints = Math.max(maxKeypoints, 1);
+		this.policy = policy;
+		queue = new ArrayBlockingQueue<Task>(Math.max(queueCapacity, 1));
+		writer = new FrameContainerWriter(new File(folder, FeatureFormat.FILE_NAME
+				+ FrameContainerFormat.CONTAINER_EXTENSION), FeatureFormat.EXTENSION);
+		workers = new Thread[Math.max(threadCount, 1)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(new Worker(), "FeatureExtractor-" + i);
+			workers[i].start();
+		}
+	}
+
+	/**
+	 * Queues the frame for feature extraction. The frame is retained until its features were written.
+	 *
+	 * @param frame The frame
+	 * @param pictureNumber The number of the picture that the features belong to
+	 * @param timestampNanos Timestamp in nanoseconds since the recording was started
+	 * @return true, if the frame was queued, false if it was dropped or the extractor is closed
+	 */
+	public boolean submit(Frame frame, int pictureNumber, long timestampNanos) {
+		if (closed) {
+			return false;
+		}
+		frame.retain();
+		Task task = new Task(frame, pictureNumber, timestampNanos);
+		boolean queued;
+		if (policy == BackpressurePolicy.BLOCK) {
+			try {
+				queue.put(task);
+				queued = true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				queued = false;
+			}
+		} else {
+			queued = queue.offer(task);
+		}
+		if (!queued) {
+			frame.release();
+			droppedCount.incrementAndGet();
+		}
+		return queued;
+	}
+
+	/**
+	 * Returns the number of frames that were dropped, because the queue was full
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Returns a line that summarises the features of the recording
+	 */
+	public String getSummary() {
+		long count = extractedCount.get();
+		return String.format("%d frames with features (%s) written, %.2f ms, %d keypoints and %d bytes per frame, "
+				+ "%d dropped", count, type, count > 0 ? extractNanos.get() / count / 1000000f : 0,
+				count > 0 ? keypointCount.get() / count : 0, count > 0 ? bytesWritten.get() / count : 0,
+				droppedCount.get());
+	}
+
+	/**
+	 * Extracts the features of the frames that are already queued and stops the workers. No frames are accepted
+	 * afterwards.
+	 */
+	public void close() {
+		closed = true;
+		for (int i = 0; i < workers.length; i++) {
+			try {
+				queue.put(QUIT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		// Release the frames of a submit that raced with closing
+		Task task;
+		while ((task = queue.poll()) != null) {
+			if (task != QUIT) {
+				task.frame.release();
+				droppedCount.incrementAndGet();
+			}
+		}
+		try {
+			writer.close();
+		} catch (IOException e) {
+			Log.e(TAG, "Could not close feature file", e);
+		}
+	}
+
+	private static class Task {
+		final Frame frame;
+		final int pictureNumber;
+		final long timestampNanos;
+
+		Task(Frame frame, int pictureNumber, long timestampNanos) {
+			this.frame = frame;
+			this.pictureNumber = pictureNumber;
+			this.timestampNanos = timestampNanos;
+		}
+	}
+
+	private class Worker implements Runnable {
+
+		private FeatureDetector detector;
+
+		/**
+		 * null if the type has no descriptors
+		 */
+		private DescriptorExtractor extractor;
+
+		/**
+		 * The frame in grayscale, if it was captured in colour
+		 */
+		private final Mat gray = new Mat();
+
+		private final MatOfKeyPoint keypoints = new MatOfKeyPoint();
+
+		private final Mat descriptors = new Mat();
+
+		/**
+		 * The keypoints as floats, grown to the largest number of keypoints
+		 */
+		private float[] keypointData = new float[0];
+
+		/**
+		 * Responses of the keypoints, for selecting the strongest ones
+		 */
+		private float[] responses = new float[0];
+
+		/**
+		 * The descriptors as bytes, grown to the largest number of keypoints
+		 */
+		private byte[] descriptorData = new byte[0];
+
+		/**
+		 * The encoded record, grown to the largest record
+		 */
+		private byte[] record = new byte[0];
+
+		@Override
+		public void run() {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			detector = FeatureDetector.create(type.detectorType);
+			extractor = type.hasDescriptors() ? DescriptorExtractor.create(type.extractorType) : null;
+			try {
+				while (true) {
+					Task task;
+					try {
+						task = queue.take();
+					} catch (InterruptedException e) {
+						return;
+					}
+					if (task == QUIT) {
+						return;
+					}
+					extract(task);
+				}
+			} finally {
+				gray.release();
+				keypoints.release();
+				descriptors.release();
+			}
+		}
+
+		private void extract(Task task) {
+			long start = System.nanoTime();
+			try {
+				Mat image = task.frame.image;
+				if (!task.frame.isGrayscale()) {
+					// Both the detector and the descriptor work on the luminance, convert only once
+					Imgproc.cvtColor(image, gray, Imgproc.COLOR_BGR2GRAY);
+					image = gray;
+				}
+				detector.detect(image, keypoints);
+				keepStrongest();
+				if (extractor != null) {
+					// Removes keypoints for which no descriptor can be computed, e.g. close to the border
+					extractor.compute(image, keypoints, descriptors);
+				}
+			} finally {
+				task.frame.release();
+			}
+			int length = encodeRecord();
+			try {
+				writer.append(task.pictureNumber, task.timestampNanos, record, length);
+			} catch (IOException e) {
+				Log.e(TAG, "Error when writing the features of picture " + task.pictureNumber, e);
+				return;
+			}
+			extractNanos.addAndGet(System.nanoTime() - start);
+			bytesWritten.addAndGet(length);
+			extractedCount.incrementAndGet();
+		}
+
+		/**
+		 * Reads the keypoints into keypointData and reduces them to the maximum number with the strongest response
+		 */
+		private void keepStrongest() {
+			int count = (int) keypoints.total();
+			if (keypointData.length < count * KEYPOINT_FLOATS) {
+				keypointData = new float[count * KEYPOINT_FLOATS];
+			}
+			if (count > 0) {
+				keypoints.get(0, 0, keypointData);
+			}
+			if (count <= maxKeypoints) {
+				return;
+			}
+
+			if (responses.length < count) {
+				responses = new float[count];
+			}
+			for (int i = 0; i < count; i++) {
+				responses[i] = keypointData[i * KEYPOINT_FLOATS + RESPONSE];
+			}
+			Arrays.sort(responses, 0, count);
+			float threshold = responses[count - maxKeypoints];
+			int kept = 0;
+			for (int i = 0; i < count && kept < maxKeypoints; i++) {
+				if (keypointData[i * KEYPOINT_FLOATS + RESPONSE] >= threshold) {
+					System.arraycopy(keypointData, i * KEYPOINT_FLOATS, keypointData, kept * KEYPOINT_FLOATS,
+							KEYPOINT_FLOATS);
+					kept++;
+				}
+			}
+			keypoints.create(kept, 1, keypoints.type());
+			keypoints.put(0, 0, Arrays.copyOf(keypointData, kept * KEYPOINT_FLOATS));
+		}
+
+		/**
+		 * Encodes the keypoints and descriptors into the record
+		 *
+		 * @return The length of the record in bytes
+		 */
+		private int encodeRecord() {
+			int count = (int) keypoints.total();
+			if (extractor != null && count > 0) {
+				// The descriptor may have removed keypoints
+				keypoints.get(0, 0, keypointData);
+			}
+			int descriptorSize = extractor != null && count > 0 ? (int) (descriptors.cols() * descriptors.elemSize())
+					: 0;
+			int length = FeatureFormat.HEADER_SIZE + count * (FeatureFormat.KEYPOINT_SIZE + descriptorSize);
+			if (record.length < length) {
+				record = new byte[length];
+			}
+			ByteBuffer output = ByteBuffer.wrap(record).order(ByteOrder.LITTLE_ENDIAN);
+			output.putInt(count);
+			output.putShort((short) descriptorSize);
+			output.putShort((short) 0);
+			for (int i = 0; i < count; i++) {
+				int offset = i * KEYPOINT_FLOATS;
+				output.putFloat(keypointData[offset]);
+				output.putFloat(keypointData[offset + 1]);
+				output.putFloat(keypointData[offset + 2]);
+				output.putFloat(keypointData[offset + 3]);
+				output.putFloat(keypointData[offset + 4]);
+				output.putInt((int) keypointData[offset + 5]);
+			}
+			if (descriptorSize > 0) {
+				// The descriptor rows are continuous, so they can be copied at once
+				if (descriptorData.length < count * descriptorSize) {
+					descriptorData = new byte[count * descriptorSize];
+				}
+				descriptors.get(0, 0, descriptorData);
+				output.put(descriptorData, 0, count * descriptorSize);
+			}
+			keypointCount.addAndGet(count);
+			return length;
+		}
+	}
+}
@@ -0,0 +1,82 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+/**
+ * The keypoints and descriptors of one frame, as read from a record of the feature file (see {@link FeatureFormat}).
+ * Does not depend on OpenCV, so feature files can be read on a desktop machine.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class FeatureRecord {
+
+	/**
+	 * Number of keypoints
+	 */
+	public final int count;
+
+	public final float[] x;
+
+	public final float[] y;
+
+	public final float[] size;
+
+	public final float[] angle;
+
+	public final float[] response;
+
+	public final int[] octave;
+
+	/**
+	 * Size of a descriptor in bytes, 0 if there are no descriptors
+	 */
+	public final int descriptorSize;
+
+	/**
+	 * The descriptors of all keypoints back to back, the one of keypoint i starts at i * descriptorSize
+	 */
+	public final byte[] descriptors;
+
+	private FeatureRecord(int count, int descriptorSize) {
+		this.count = count;
+		this.descriptorSize = descriptorSize;
+		x = new float[count];
+		y = new float[count];
+		size = new float[count];
+		angle = new float[count];
+		response = new float[count];
+		octave = new int[count];
+		descriptors = new byte[count * descriptorSize];
+	}
+
+	/**
+	 * Reads a record from the buffer, starting at its position
+	 *
+	 * @throws IllegalArgumentException If the buffer does not hold a complete record
+	 */
+	public static FeatureRecord read(ByteBuffer buffer) {
+		ByteBuffer input = buffer.slice().order(ByteOrder.LITTLE_ENDIAN);
+		if (input.remaining() < FeatureFormat.HEADER_SIZE) {
+			throw new IllegalArgumentException("Feature record is truncated");
+		}
+		int count = input.getInt();
+		int descriptorSize = input.getShort() & 0xFFFF;
+		input.getShort();
+		if (count < 0 || input.remaining() < (long) count * (FeatureFormat.KEYPOINT_SIZE + descriptorSize)) {
+			throw new IllegalArgumentException("Feature record is truncated");
+		}
+		FeatureRecord record = new FeatureRecord(count, descriptorSize);
+		for (int i = 0; i < count; i++) {
+			record.x[i] = input.getFloat();
+			record.y[i] = input.getFloat();
+			record.size[i] = input.getFloat();
+			record.angle[i] = input.getFloat();
+			record.response[i] = input.getFloat();
+			record.octave[i] = input.getInt();
+		}
+		input.get(record.descriptors);
+		return record;
+	}
+}
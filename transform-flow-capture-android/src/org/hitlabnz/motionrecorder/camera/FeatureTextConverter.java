@@ -0,0 +1,86 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+
+/**
+ * Converts a feature file (see {@link FeatureFormat}) into a text file with one line per keypoint:
+ * <code>picture number,timestamp in ms,x,y,size,angle,response,octave[,descriptor in hex]</code>. The timestamps are
+ * those of the pictures in the session, so the keypoints can be matched with the IMU events.
+ *
+ * Can be used on a desktop machine: <code>java FeatureTextConverter Features.tfc [output file]</code>
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class FeatureTextConverter {
+
+	private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+	private FeatureTextConverter() {
+	}
+
+	/**
+	 * Writes the keypoints of all records in the order of the picture numbers
+	 *
+	 * @param featureFile The feature file
+	 * @param outputFile The text file that is created
+	 * @return The number of keypoints that were converted
+	 * @throws IOException If reading the feature file or writing the text file failed
+	 */
+	public static long convert(File featureFile, File outputFile) throws IOException {
+		FrameContainerReader reader = new FrameContainerReader(featureFile);
+		Writer writer = null;
+		try {
+			if (!FeatureFormat.EXTENSION.equals(reader.getExtension())) {
+				throw new IOException(featureFile + " is not a feature file");
+			}
+			writer = new BufferedWriter(new FileWriter(outputFile));
+			StringBuilder line = new StringBuilder();
+			long keypointCount = 0;
+			for (int i = 0; i < reader.getFrameCount(); i++) {
+				FeatureRecord record = FeatureRecord.read(ByteBuffer.wrap(reader.readFrame(i)));
+				for (int k = 0; k < record.count; k++) {
+					line.setLength(0);
+					line.append(reader.getPictureNumber(i)).append(',')
+							.append(reader.getTimestampNanos(i) / 1000000.0).append(',').append(record.x[k])
+							.append(',').append(record.y[k]).append(',').append(record.size[k]).append(',')
+							.append(record.angle[k]).append(',').append(record.response[k]).append(',')
+							.append(record.octave[k]);
+					if (record.descriptorSize > 0) {
+						line.append(',');
+						for (int b = k * record.descriptorSize; b < (k + 1) * record.descriptorSize; b++) {
+							line.append(HEX_DIGITS[(record.descriptors[b] >> 4) & 0xF]).append(
+									HEX_DIGITS[record.descriptors[b] & 0xF]);
+						}
+					}
+					line.append('\n');
+					writer.write(line.toString());
+				}
+				keypointCount += record.count;
+			}
+			return keypointCount;
+		} finally {
+			if (writer != null) {
+				writer.close();
+			}
+			reader.close();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: FeatureTextConverter <feature file> [output file]");
+			System.exit(1);
+		}
+		File featureFile = new File(args[0]);
+		File outputFile = args.length > 1 ? new File(args[1]) : new File(featureFile.getAbsoluteFile()
+				.getParentFile(), FeatureFormat.FILE_NAME + ".txt");
+		long count = convert(featureFile, outputFile);
+		System.out.println("Converted " + count + " keypoints to " + outputFile.getAbsolutePath());
+	}
+}
@@ -0,0 +1,52 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import org.opencv.features2d.DescriptorExtractor;
+import org.opencv.features2d.FeatureDetector;
+
+/**
+ * The detectors and descriptors that the {@link FeatureExtractor} can compute on the frames
+ *
+ * @author Alexander Pacha
+ *
+ */
+public enum FeatureType {
+	/**
+	 * FAST corners without descriptors, the fastest option for tracking on the desktop
+	 */
+	FAST(FeatureDetector.FAST, FeatureType.NO_DESCRIPTORS),
+	/**
+	 * FAST corners with 32 byte BRIEF descriptors
+	 */
+	FAST_BRIEF(FeatureDetector.FAST, DescriptorExtractor.BRIEF),
+	/**
+	 * ORB keypoints with 32 byte ORB descriptors, which are invariant to rotation
+	 */
+	ORB(FeatureDetector.ORB, DescriptorExtractor.ORB);
+
+	/**
+	 * Value of {@link #extractorType} if no descriptors are computed
+	 */
+	static final int NO_DESCRIPTORS = -1;
+
+	/**
+	 * Type for FeatureDetector.create
+	 */
+	final int detectorType;
+
+	/**
+	 * Type for DescriptorExtractor.create, or {@link #NO_DESCRIPTORS}
+	 */
+	final int extractorType;
+
+	private FeatureType(int detectorType, int extractorType) {
+		this.detectorType = detectorType;
+		this.extractorType = extractorType;
+	}
+
+	/**
+	 * Returns whether descriptors are computed for the keypoints
+	 */
+	public boolean hasDescriptors() {
+		return extractorType != NO_DESCRIPTORS;
+	}
+}
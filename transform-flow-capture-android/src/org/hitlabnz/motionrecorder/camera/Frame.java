@@ -0,0 +1,128 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.opencv.android.Utils;
+import org.opencv.core.Mat;
+import org.opencv.imgproc.Imgproc;
+
+import android.graphics.Bitmap;
+
+/**
+ * A camera frame that stays in native memory. The image is kept as the {@link Mat} that the camera retrieved it into
+ * (BGR with 8 bit per channel, or 8 bit grayscale in grayscale mode) and is handed to all consumers by reference.
+ *
+ * Instances are obtained from a {@link FramePool} and are reused: consumers may read the frame while they are notified
+ * about it; a consumer that wants to keep the frame beyond that call must {@link #retain()} it and {@link #release()}
+ * it when done. Only consumers that display the frame should convert it with {@link #toBitmap(Bitmap)}.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class Frame {
+
+	/**
+	 * The image of the frame in BGR order or grayscale, as expected by the OpenCV functions (e.g. Highgui.imwrite)
+	 */
+	public final Mat image = new Mat();
+
+	/**
+	 * Elapsed realtime in nanoseconds when the frame was grabbed
+	 */
+	public long timestampNanos;
+
+	/**
+	 * System.nanoTime() when the frame was obtained from the pool, to measure how long the consumers hold it
+	 */
+	long obtainedNanos;
+
+	/**
+	 * The pool this frame is returned to, once all references were released
+	 */
+	private final FramePool pool;
+
+	/**
+	 * Number of owners that currently hold this frame
+	 */
+	private final AtomicInteger references = new AtomicInteger();
+
+	/**
+	 * RGBA copy of the image for {@link #toBitmap(Bitmap)}, allocated on first use
+	 */
+	private Mat rgba;
+
+	Frame(FramePool pool) {
+		this.pool = pool;
+	}
+
+	/**
+	 * Sets the timestamp of this frame and makes the caller its only owner.
+	 */
+	void set(long timestampNanos) {
+		this.timestampNanos = timestampNanos;
+		obtainedNanos = System.nanoTime();
+		references.set(1);
+	}
+
+	public int getWidth() {
+		return image.cols();
+	}
+
+	public int getHeight() {
+		return image.rows();
+	}
+
+	/**
+	 * Returns whether the image has only the luminance channel
+	 */
+	public boolean isGrayscale() {
+		return image.channels() == 1;
+	}
+
+	/**
+	 * Converts the image into the given bitmap, which must have the size of the frame and the config ARGB_8888. This
+	 * copies the whole image, so it should only be called by consumers that display the frame.
+	 */
+	public void toBitmap(Bitmap bitmap) {
+		synchronized (this) {
+			if (rgba == null) {
+				rgba = new Mat();
+			}
+			Imgproc.cvtColor(image, rgba, isGrayscale() ? Imgproc.COLOR_GRAY2RGBA : Imgproc.COLOR_BGR2RGBA);
+			Utils.matToBitmap(rgba, bitmap);
+		}
+	}
+
+	/**
+	 * Adds an owner to this frame. Every call must be balanced by a call to {@link #release()}.
+	 */
+	public void retain() {
+		if (references.getAndIncrement() <= 0) {
+			throw new IllegalStateException("Frame was retained after it had been released");
+		}
+	}
+
+	/**
+	 * Releases the ownership of this frame. When the last owner released the frame, it is returned to its pool and
+	 * must not be accessed anymore.
+	 */
+	public void release() {
+		int remaining = references.decrementAndGet();
+		if (remaining == 0) {
+			pool.recycle(this);
+		} else if (remaining < 0) {
+			throw new IllegalStateException("Frame was released more often than it was retained");
+		}
+	}
+
+	/**
+	 * Frees the native memory of this frame
+	 */
+	synchronized void dispose() {
+		image.release();
+		if (rgba != null) {
+			rgba.release();
+			rgba = null;
+		}
+	}
+}
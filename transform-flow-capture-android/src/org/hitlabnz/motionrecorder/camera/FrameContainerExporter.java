@@ -0,0 +1,70 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Exports the pictures of a frame container (see {@link FrameContainerFormat}) into one file per picture ("0.jpg",
+ * "1.jpg", ...), as they were written by the PictureRecorder before the container was introduced, so existing
+ * evaluation tools keep working.
+ *
+ * Can be used on a desktop machine: <code>java FrameContainerExporter Pictures.tfc [outputFolder]</code>
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class FrameContainerExporter {
+
+	private FrameContainerExporter() {
+	}
+
+	/**
+	 * Writes each picture of the container into its own file.
+	 *
+	 * @param containerFile The frame container
+	 * @param outputFolder The folder where the pictures are created
+	 * @return The number of pictures that were exported
+	 * @throws IOException If reading the container or writing the pictures failed
+	 */
+	public static int export(File containerFile, File outputFolder) throws IOException {
+		FrameContainerReader reader = new FrameContainerReader(containerFile);
+		try {
+			ByteBuffer buffer = ByteBuffer.allocate(0);
+			for (int i = 0; i < reader.getFrameCount(); i++) {
+				if (buffer.capacity() < reader.getLength(i)) {
+					buffer = ByteBuffer.allocate(reader.getLength(i));
+				}
+				buffer.clear();
+				reader.readFrame(i, buffer);
+				buffer.flip();
+				FileChannel output = new FileOutputStream(new File(outputFolder, reader.getPictureNumber(i)
+						+ reader.getExtension())).getChannel();
+				try {
+					while (buffer.hasRemaining()) {
+						output.write(buffer);
+					}
+				} finally {
+					output.close();
+				}
+			}
+			return reader.getFrameCount();
+		} finally {
+			reader.close();
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: FrameContainerExporter <frame container> [output folder]");
+			System.exit(1);
+		}
+		File containerFile = new File(args[0]);
+		File outputFolder = args.length > 1 ? new File(args[1]) : containerFile.getAbsoluteFile().getParentFile();
+		outputFolder.mkdirs();
+		int count = export(containerFile, outputFolder);
+		System.out.println("Exported " + count + " pictures to " + outputFolder.getAbsolutePath());
+	}
+}
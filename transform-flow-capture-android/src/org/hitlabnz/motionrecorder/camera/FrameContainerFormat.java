@@ -0,0 +1,89 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.nio.ByteOrder;
+
+/**
+ * Describes the frame container, a single append-only file that holds all encoded pictures of a session instead of
+ * one file per picture. Creating thousands of small files is slow on the FAT file systems of SD-cards, and so is
+ * copying them off the device.
+ *
+ * The encoded pictures are stored back to back after the header. Their index is appended as a footer when the
+ * container is closed, and additionally written entry by entry to a sidecar file ({@link #SIDECAR_EXTENSION}) while
+ * recording, so the pictures can still be found if the recording was interrupted. All values are stored in
+ * little-endian byte order.
+ *
+ * <pre>
+ * Header (of the container and of the sidecar):
+ *   0  int    magic number ("TFCC")
+ *   4  short  format version
+ *   6  short  index entry size in bytes
+ *   8  ...    file extension of the pictures, e.g. ".jpg", in ASCII padded with zeros
+ *
+ * Index entry:
+ *   0  int    picture number
+ *   4  int    length of the picture in bytes
+ *   8  long   offset of the picture in the container
+ *  16  long   timestamp in nanoseconds since the recording was started
+ *
+ * Trailer (last bytes of a closed container, after the index entries):
+ *   0  long   offset of the first index entry
+ *   8  int    number of index entries
+ *  12  int    magic number ("TFCC")
+ * </pre>
+ *
+ * The entries are in the order in which the pictures were written, which may differ from the order of the picture
+ * numbers if several threads encode.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public final class FrameContainerFormat {
+
+	/**
+	 * Magic number of the header and the trailer ("TFCC" read as little-endian int)
+	 */
+	public static final int MAGIC = 0x43434654;
+
+	/**
+	 * The current version of the format
+	 */
+	public static final short VERSION = 1;
+
+	/**
+	 * Byte order of all values
+	 */
+	public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/**
+	 * Size of the header in bytes
+	 */
+	public static final int HEADER_SIZE = 16;
+
+	/**
+	 * Maximum length of the file extension in the header
+	 */
+	public static final int MAX_EXTENSION_LENGTH = HEADER_SIZE - 8;
+
+	/**
+	 * Size of an index entry in bytes
+	 */
+	public static final int ENTRY_SIZE = 24;
+
+	/**
+	 * Size of the trailer in bytes
+	 */
+	public static final int TRAILER_SIZE = 16;
+
+	/**
+	 * Extension of the container
+	 */
+	public static final String CONTAINER_EXTENSION = ".tfc";
+
+	/**
+	 * Extension of the sidecar index, appended to the name of the container
+	 */
+	public static final String SIDECAR_EXTENSION = ".idx";
+
+	private FrameContainerFormat() {
+	}
+}
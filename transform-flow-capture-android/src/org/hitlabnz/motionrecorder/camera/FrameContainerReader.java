@@ -0,0 +1,268 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the pictures of a frame container (see {@link FrameContainerFormat}) in any order, by their index, picture
+ * number or time. The index is read from the footer, or from the sidecar if the container was not closed properly.
+ * The pictures are sorted by their picture number, which is also the order of their timestamps.
+ *
+ * This class does not depend on Android, so containers can also be processed on a desktop machine.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class FrameContainerReader implements Closeable {
+
+	private final FileChannel channel;
+
+	private final String extension;
+
+	private final int[] pictureNumbers;
+
+	private final int[] lengths;
+
+	private final long[] offsets;
+
+	private final long[] timestampsNanos;
+
+	/**
+	 * Opens a container and reads its index.
+	 *
+	 * @param file The container
+	 * @throws IOException If the container could not be read, or it has neither a footer nor a sidecar
+	 */
+	public FrameContainerReader(File file) throws IOException {
+		channel = new FileInputStream(file).getChannel();
+		try {
+			ByteBuffer header = read(channel, 0, FrameContainerFormat.HEADER_SIZE);
+			extension = readHeader(header, file);
+
+			ByteBuffer entries = null;
+			long size = channel.size();
+			if (size >= FrameContainerFormat.HEADER_SIZE + FrameContainerFormat.TRAILER_SIZE) {
+				ByteBuffer trailer = read(channel, size - FrameContainerFormat.TRAILER_SIZE,
+						FrameContainerFormat.TRAILER_SIZE);
+				long indexOffset = trailer.getLong();
+				int entryCount = trailer.getInt();
+				if (trailer.getInt() == FrameContainerFormat.MAGIC) {
+					entries = read(channel, indexOffset, entryCount * FrameContainerFormat.ENTRY_SIZE);
+				}
+			}
+			if (entries == null) {
+				entries = readSidecar(new File(file.getPath() + FrameContainerFormat.SIDECAR_EXTENSION));
+			}
+
+			int count = entries.remaining() / FrameContainerFormat.ENTRY_SIZE;
+			pictureNumbers = new int[count];
+			lengths = new int[count];
+			offsets = new long[count];
+			timestampsNanos = new long[count];
+			for (int i = 0; i < count; i++) {
+				pictureNumbers[i] = entries.getInt();
+				lengths[i] = entries.getInt();
+				offsets[i] = entries.getLong();
+				timestampsNanos[i] = entries.getLong();
+			}
+			sortByPictureNumber();
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the file extension of the pictures, including the dot
+	 */
+	public String getExtension() {
+		return extension;
+	}
+
+	/**
+	 * Returns the number of pictures in the container
+	 */
+	public int getFrameCount() {
+		return pictureNumbers.length;
+	}
+
+	/**
+	 * Returns the picture number of the picture at the given index
+	 */
+	public int getPictureNumber(int index) {
+		return pictureNumbers[index];
+	}
+
+	/**
+	 * Returns the timestamp in nanoseconds since the recording was started of the picture at the given index
+	 */
+	public long getTimestampNanos(int index) {
+		return timestampsNanos[index];
+	}
+
+	/**
+	 * Returns the length in bytes of the picture at the given index
+	 */
+	public int getLength(int index) {
+		return lengths[index];
+	}
+
+	/**
+	 * Returns the index of the picture with the given number, or -1 if it is not in the container (e.g. because it
+	 * was dropped)
+	 */
+	public int indexOfPicture(int pictureNumber) {
+		int low = 0;
+		int high = pictureNumbers.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (pictureNumbers[middle] < pictureNumber) {
+				low = middle + 1;
+			} else if (pictureNumbers[middle] > pictureNumber) {
+				high = middle - 1;
+			} else {
+				return middle;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the index of the last picture that was taken at or before the given time, or -1 if there is none
+	 *
+	 * @param timestampNanos Time in nanoseconds since the recording was started
+	 */
+	public int indexAtTime(long timestampNanos) {
+		int low = 0;
+		int high = timestampsNanos.length - 1;
+		while (low <= high) {
+			int middle = (low + high) >>> 1;
+			if (timestampsNanos[middle] <= timestampNanos) {
+				low = middle + 1;
+			} else {
+				high = middle - 1;
+			}
+		}
+		return high;
+	}
+
+	/**
+	 * Reads the encoded picture at the given index.
+	 *
+	 * @param index The index of the picture
+	 * @param buffer Receives the picture, must have at least {@link #getLength(int)} bytes remaining
+	 * @throws IOException If the container could not be read
+	 */
+	public void readFrame(int index, ByteBuffer buffer) throws IOException {
+		int limit = buffer.limit();
+		buffer.limit(buffer.position() + lengths[index]);
+		try {
+			long position = offsets[index];
+			while (buffer.hasRemaining()) {
+				int read = channel.read(buffer, position);
+				if (read < 0) {
+					throw new EOFException("Picture " + pictureNumbers[index] + " is truncated");
+				}
+				position += read;
+			}
+		} finally {
+			buffer.limit(limit);
+		}
+	}
+
+	/**
+	 * Reads the encoded picture at the given index into a new array.
+	 */
+	public byte[] readFrame(int index) throws IOException {
+		byte[] data = new byte[lengths[index]];
+		readFrame(index, ByteBuffer.wrap(data));
+		return data;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	private static String readHeader(ByteBuffer header, File file) throws IOException {
+		if (header.getInt() != FrameContainerFormat.MAGIC) {
+			throw new IOException("Not a frame container: " + file.getAbsolutePath());
+		}
+		short version = header.getShort();
+		if (version > FrameContainerFormat.VERSION) {
+			throw new IOException("Unsupported frame container version " + version);
+		}
+		int entrySize = header.getShort();
+		if (entrySize != FrameContainerFormat.ENTRY_SIZE) {
+			throw new IOException("Unsupported index entry size " + entrySize);
+		}
+		StringBuilder extension = new StringBuilder();
+		while (header.hasRemaining()) {
+			byte c = header.get();
+			if (c == 0) {
+				break;
+			}
+			extension.append((char) c);
+		}
+		return extension.toString();
+	}
+
+	/**
+	 * Reads the entries of the sidecar, without a partially written last entry
+	 */
+	private static ByteBuffer readSidecar(File sidecar) throws IOException {
+		if (!sidecar.exists()) {
+			throw new IOException("Frame container has no index: " + sidecar.getAbsolutePath());
+		}
+		FileChannel sidecarChannel = new FileInputStream(sidecar).getChannel();
+		try {
+			readHeader(read(sidecarChannel, 0, FrameContainerFormat.HEADER_SIZE), sidecar);
+			long size = sidecarChannel.size() - FrameContainerFormat.HEADER_SIZE;
+			int count = (int) (size / FrameContainerFormat.ENTRY_SIZE);
+			return read(sidecarChannel, FrameContainerFormat.HEADER_SIZE, count * FrameContainerFormat.ENTRY_SIZE);
+		} finally {
+			sidecarChannel.close();
+		}
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(FrameContainerFormat.BYTE_ORDER);
+		while (buffer.hasRemaining()) {
+			int read = channel.read(buffer, position + buffer.position());
+			if (read < 0) {
+				throw new EOFException("Frame container is truncated");
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	/**
+	 * Insertion sort, because the workers finish the pictures almost in order
+	 */
+	private void sortByPictureNumber() {
+		for (int i = 1; i < pictureNumbers.length; i++) {
+			int number = pictureNumbers[i];
+			int length = lengths[i];
+			long offset = offsets[i];
+			long timestamp = timestampsNanos[i];
+			int j = i - 1;
+			while (j >= 0 && pictureNumbers[j] > number) {
+				pictureNumbers[j + 1] = pictureNumbers[j];
+				lengths[j + 1] = lengths[j];
+				offsets[j + 1] = offsets[j];
+				timestampsNanos[j + 1] = timestampsNanos[j];
+				j--;
+			}
+			pictureNumbers[j + 1] = number;
+			lengths[j + 1] = length;
+			offsets[j + 1] = offset;
+			timestampsNanos[j + 1] = timestamp;
+		}
+	}
+}
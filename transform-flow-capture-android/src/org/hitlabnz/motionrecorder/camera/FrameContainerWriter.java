@@ -0,0 +1,147 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Appends encoded pictures to a frame container (see {@link FrameContainerFormat}). Can be used from several threads.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class FrameContainerWriter implements Closeable {
+
+	/**
+	 * Number of index entries the footer buffer initially holds
+	 */
+	private static final int INITIAL_ENTRIES = 1024;
+
+	private final FileChannel channel;
+
+	private final FileChannel sidecarChannel;
+
+	/**
+	 * Buffer for the index entry of the current picture
+	 */
+	private final ByteBuffer entry = ByteBuffer.allocate(FrameContainerFormat.ENTRY_SIZE).order(
+			FrameContainerFormat.BYTE_ORDER);
+
+	/**
+	 * All index entries, written as footer on close
+	 */
+	private ByteBuffer index = ByteBuffer.allocate(INITIAL_ENTRIES * FrameContainerFormat.ENTRY_SIZE).order(
+			FrameContainerFormat.BYTE_ORDER);
+
+	private int entryCount;
+
+	/**
+	 * Number of bytes that were written to the container so far
+	 */
+	private long position;
+
+	/**
+	 * Creates the container and its sidecar index and writes their headers.
+	 *
+	 * @param file The container, an existing file will be overwritten. The sidecar is created next to it.
+	 * @param extension The file extension of the pictures, including the dot
+	 * @throws IOException If the files could not be created
+	 */
+	public FrameContainerWriter(File file, String extension) throws IOException {
+		channel = new FileOutputStream(file).getChannel();
+		try {
+			sidecarChannel = new FileOutputStream(file.getPath() + FrameContainerFormat.SIDECAR_EXTENSION)
+					.getChannel();
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+
+		ByteBuffer header = ByteBuffer.allocate(FrameContainerFormat.HEADER_SIZE).order(
+				FrameContainerFormat.BYTE_ORDER);
+		header.putInt(FrameContainerFormat.MAGIC);
+		header.putShort(FrameContainerFormat.VERSION);
+		header.putShort((short) FrameContainerFormat.ENTRY_SIZE);
+		for (int i = 0; i < FrameContainerFormat.MAX_EXTENSION_LENGTH; i++) {
+			header.put(i < extension.length() ? (byte) extension.charAt(i) : 0);
+		}
+		header.flip();
+		writeFully(sidecarChannel, header);
+		header.rewind();
+		position += writeFully(channel, header);
+	}
+
+	/**
+	 * Appends an encoded picture.
+	 *
+	 * @param pictureNumber The number of the picture
+	 * @param timestampNanos Timestamp in nanoseconds since the recording was started
+	 * @param data The encoded picture
+	 * @param length Number of bytes in data
+	 * @throws IOException If writing the files failed
+	 */
+	public synchronized void append(int pictureNumber, long timestampNanos, byte[] data, int length)
+			throws IOException {
+		long offset = position;
+		position += writeFully(channel, ByteBuffer.wrap(data, 0, length));
+
+		entry.clear();
+		entry.putInt(pictureNumber);
+		entry.putInt(length);
+		entry.putLong(offset);
+		entry.putLong(timestampNanos);
+		entry.flip();
+		writeFully(sidecarChannel, entry);
+
+		if (!index.hasRemaining()) {
+			ByteBuffer grown = ByteBuffer.allocate(index.capacity() * 2).order(FrameContainerFormat.BYTE_ORDER);
+			index.flip();
+			grown.put(index);
+			index = grown;
+		}
+		entry.rewind();
+		index.put(entry);
+		entryCount++;
+	}
+
+	/**
+	 * Returns the number of pictures that were appended
+	 */
+	public synchronized int getFrameCount() {
+		return entryCount;
+	}
+
+	/**
+	 * Writes the index and the trailer and closes the container and the sidecar.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			long indexOffset = position;
+			index.flip();
+			position += writeFully(channel, index);
+
+			ByteBuffer trailer = ByteBuffer.allocate(FrameContainerFormat.TRAILER_SIZE).order(
+					FrameContainerFormat.BYTE_ORDER);
+			trailer.putLong(indexOffset);
+			trailer.putInt(entryCount);
+			trailer.putInt(FrameContainerFormat.MAGIC);
+			trailer.flip();
+			position += writeFully(channel, trailer);
+		} finally {
+			channel.close();
+			sidecarChannel.close();
+		}
+	}
+
+	private static int writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+		int written = 0;
+		while (buffer.hasRemaining()) {
+			written += channel.write(buffer);
+		}
+		return written;
+	}
+}
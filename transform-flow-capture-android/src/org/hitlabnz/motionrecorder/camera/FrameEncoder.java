@@ -0,0 +1,527 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.opencv.core.Core;
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.core.Scalar;
+import org.opencv.core.Size;
+import org.opencv.highgui.Highgui;
+import org.opencv.imgproc.Imgproc;
+
+import android.os.Process;
+import android.util.Log;
+
+/**
+ * Encodes frames to image files on a pool of worker threads, so the camera thread only has to queue the frame and can
+ * grab the next one right away. Each frame is retained while it is queued and released after it was written, so it is
+ * returned to the {@link FramePool} of the camera only after encoding. The encoded pictures are either appended to a
+ * single frame container (see {@link FrameContainerFormat}) or written to one file per picture. The raw format always
+ * writes a single file with the pixels of all pictures. In video mode, the frames are passed to a {@link VideoTrack}
+ * by a single worker, because a video encoder needs the frames in order.
+ *
+ * The picture number of a frame is given when it is submitted, so the numbering follows the order in which the frames were
+ * grabbed, even though the workers may finish them in a different order. If the queue is full, the
+ * {@link BackpressurePolicy} decides whether the frame is dropped or the camera thread waits.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class FrameEncoder {
+	/**
+	 * Tag for logging
+	 */
+	private static final String TAG = FrameEncoder.class.getName();
+
+	/**
+	 * What to do with a frame that is submitted while the queue is full
+	 */
+	public enum BackpressurePolicy {
+		/**
+		 * The frame is not encoded and {@link FrameEncoder#submit(Frame, int, long)} returns false right away. The camera
+		 * keeps its frame rate, but pictures are missing.
+		 */
+		DROP,
+		/**
+		 * The submitting thread waits until a worker took a frame from the queue. No picture is lost, but the camera
+		 * is slowed down to the encoding rate.
+		 */
+		BLOCK
+	}
+
+	/**
+	 * Is told on the worker thread whether a frame made it into the video, so its picture record only refers to a
+	 * frame that exists
+	 */
+	public interface VideoFrameListener {
+		/**
+		 * Called after the frame was passed to the video encoder
+		 *
+		 * @param pictureNumber The number of the picture
+		 * @param timestampNanos Timestamp in nanoseconds since the recording was started
+		 * @param presentationTimeUs The presentation timestamp of the frame in the video
+		 */
+		void onVideoFrameWritten(int pictureNumber, long timestampNanos, long presentationTimeUs);
+
+		/**
+		 * Called for a queued frame that is not in the video, because its timestamp did not increase, encoding failed
+		 * or the encoder was closed
+		 *
+		 * @param pictureNumber The number of the picture
+		 * @param timestampNanos Timestamp in nanoseconds since the recording was started
+		 */
+		void onVideoFrameSkipped(int pictureNumber, long timestampNanos);
+	}
+
+	/**
+	 * Queued task that tells a worker to quit
+	 */
+	private static final Task QUIT = new Task(null, 0, 0);
+
+	/**
+	 * Value of the U and V planes of a grayscale frame in a video
+	 */
+	private static final Scalar NEUTRAL_CHROMA = new Scalar(128);
+
+	/**
+	 * Name of the frame container or the raw file, without extension
+	 */
+	public static final String PICTURES_FILE_NAME = "Pictures";
+
+	private final File folder;
+
+	private final BackpressurePolicy policy;
+
+	private final ImageFormat format;
+
+	private final BlockingQueue<Task> queue;
+
+	private final Thread[] workers;
+
+	/**
+	 * Parameters for encoding the frames, null in raw mode. They are only read by the native code, so all workers
+	 * share them.
+	 */
+	private final MatOfInt encodingParameters;
+
+	/**
+	 * The file all frames are appended to in raw mode, null otherwise
+	 */
+	private final RawFrameWriter rawWriter;
+
+	/**
+	 * The container all encoded frames are appended to, null if they are written to one file each
+	 */
+	private final FrameContainerWriter containerWriter;
+
+	/**
+	 * The video the frames are encoded into in video mode, null otherwise
+	 */
+	private final VideoTrack videoTrack;
+
+	/**
+	 * Is told about the frames of the video, null if not in video mode
+	 */
+	private final VideoFrameListener videoFrameListener;
+
+	private final AtomicLong encodedCount = new AtomicLong();
+
+	/**
+	 * Sum of the time in nanoseconds that the workers spent on encoding and writing the frames
+	 */
+	private final AtomicLong encodeNanos = new AtomicLong();
+
+	private final AtomicLong bytesWritten = new AtomicLong();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	private volatile boolean closed;
+
+	/**
+	 * Creates the encoder and starts its workers.
+	 *
+	 * @param folder The folder the pictures are written to
+	 * @param threadCount Number of worker threads
+	 * @param queueCapacity Maximum number of frames that wait for a worker
+	 * @param policy What to do with frames if the queue is full
+	 * @param format The format of the pictures
+	 * @param quality The quality from 0 to 100, see {@link ImageFormat}
+	 * @param container Whether the encoded pictures are appended to a frame container instead of one file each
+	 * @throws IOException If the frame container or the raw file could not be created
+	 */
+	public FrameEncoder(File folder, int threadCount, int queueCapacity, BackpressurePolicy policy,
+			ImageFormat format, int quality, boolean container) throws IOException {
+		this.folder = folder;
+		this.policy = policy;
+		this.format = format;
+		queue = new ArrayBlockingQueue<Task>(Math.max(queueCapacity, 1));
+		encodingParameters = format.createEncodingParameters(quality);
+		rawWriter = format == ImageFormat.RAW ? new RawFrameWriter(new File(folder, PICTURES_FILE_NAME
+				+ RawFrameWriter.FILE_EXTENSION)) : null;
+		containerWriter = container && rawWriter == null ? new FrameContainerWriter(new File(folder,
+				PICTURES_FILE_NAME + FrameContainerFormat.CONTAINER_EXTENSION), format.extension) : null;
+		videoTrack = null;
+		videoFrameListener = null;
+		workers = startWorkers(threadCount);
+	}
+
+	/**
+	 * Creates an encoder in video mode and starts its worker.
+	 *
+	 * @param queueCapacity Maximum number of frames that wait for the worker
+	 * @param policy What to do with frames if the queue is full
+	 * @param videoTrack The video the frames are encoded into
+	 * @param videoFrameListener Is told whether each queued frame made it into the video
+	 */
+	public FrameEncoder(int queueCapacity, BackpressurePolicy policy, VideoTrack videoTrack,
+			VideoFrameListener videoFrameListener) {
+		this.folder = null;
+		this.policy = policy;
+		this.format = null;
+		this.videoTrack = videoTrack;
+		this.videoFrameListener = videoFrameListener;
+		queue = new ArrayBlockingQueue<Task>(Math.max(queueCapacity, 1));
+		encodingParameters = null;
+		rawWriter = null;
+		containerWriter = null;
+		workers = startWorkers(1);
+	}
+
+	private Thread[] startWorkers(int threadCount) {
+		Thread[] workers = new Thread[Math.max(threadCount, 1)];
+		for (int i = 0; i < workers.length; i++) {
+			workers[i] = new Thread(new Worker(), "FrameEncoder-" + i);
+			workers[i].start();
+		}
+		return workers;
+	}
+
+	/**
+	 * Returns the number of worker threads for the cores of this device: one core is left to the camera thread.
+	 */
+	public static int defaultThreadCount() {
+		return Math.max(Runtime.getRuntime().availableProcessors() - 1, 1);
+	}
+
+	/**
+	 * Queues the frame for encoding. The frame is retained until it was written.
+	 *
+	 * @param frame The frame to encode
+	 * @param pictureNumber The number of the picture, which names its file
+	 * @param timestampNanos Timestamp in nanoseconds since the recording was started
+	 * @return true, if the frame was queued, false if it was dropped or the encoder is closed
+	 */
+	public boolean submit(Frame frame, int pictureNumber, long timestampNanos) {
+		if (closed) {
+			return false;
+		}
+		frame.retain();
+		Task task = new Task(frame, pictureNumber, timestampNanos);
+		boolean queued;
+		if (policy == BackpressurePolicy.BLOCK) {
+			try {
+				queue.put(task);
+				queued = true;
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				queued = false;
+			}
+		} else {
+			queued = queue.offer(task);
+		}
+		if (!queued) {
+			frame.release();
+			droppedCount.incrementAndGet();
+		}
+		return queued;
+	}
+
+	/**
+	 * Returns the number of frames that were written
+	 */
+	public long getEncodedCount() {
+		return encodedCount.get();
+	}
+
+	/**
+	 * Returns the number of frames that were dropped, because the queue was full
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Returns the number of bytes of all written pictures
+	 */
+	public long getBytesWritten() {
+		return bytesWritten.get();
+	}
+
+	/**
+	 * Returns the average time in nanoseconds that a worker spent on encoding and writing one picture
+	 */
+	public long getAverageEncodeNanos() {
+		long count = encodedCount.get();
+		return count > 0 ? encodeNanos.get() / count : 0;
+	}
+
+	/**
+	 * Returns a line that summarises the pictures of the recording
+	 */
+	public String getSummary() {
+		long count = encodedCount.get();
+		return String.format("%d pictures (%s) written, %.2f ms and %d bytes per picture, %d dropped", count,
+				videoTrack != null ? "video" : format, getAverageEncodeNanos() / 1000000f,
+				count > 0 ? bytesWritten.get() / count : 0, droppedCount.get());
+	}
+
+	/**
+	 * Encodes the frames that are already queued and stops the workers. No frames are accepted afterwards.
+	 */
+	public void close() {
+		closed = true;
+		for (int i = 0; i < workers.length; i++) {
+			try {
+				queue.put(QUIT);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		for (Thread worker : workers) {
+			try {
+				worker.join();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				break;
+			}
+		}
+		// Release the frames of a submit that raced with closing
+		Task task;
+		while ((task = queue.poll()) != null) {
+			if (task != QUIT) {
+				task.frame.release();
+				droppedCount.incrementAndGet();
+				if (videoFrameListener != null) {
+					videoFrameListener.onVideoFrameSkipped(task.pictureNumber, task.timestampNanos);
+				}
+			}
+		}
+		try {
+			if (rawWriter != null) {
+				rawWriter.close();
+			}
+			if (containerWriter != null) {
+				containerWriter.close();
+			}
+			if (videoTrack != null) {
+				bytesWritten.addAndGet(videoTrack.close());
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "Could not close picture file", e);
+		}
+		if (encodingParameters != null) {
+			encodingParameters.release();
+		}
+	}
+
+	private static class Task {
+		final Frame frame;
+		final int pictureNumber;
+		final long timestampNanos;
+
+		Task(Frame frame, int pictureNumber, long timestampNanos) {
+			this.frame = frame;
+			this.pictureNumber = pictureNumber;
+			this.timestampNanos = timestampNanos;
+		}
+	}
+
+	private class Worker implements Runnable {
+
+		/**
+		 * The picture encoded by OpenCV, allocated on first use in container mode
+		 */
+		private MatOfByte encoded;
+
+		/**
+		 * The picture in I420 layout, allocated on first use in video mode
+		 */
+		private Mat i420;
+
+		/**
+		 * The colour frame in YUV at full and half resolution, and one of its chroma planes, allocated on first use in
+		 * video mode. OpenCV 2.4 can not convert BGR to I420 directly, so the chroma planes are subsampled here.
+		 */
+		private Mat yuv;
+
+		private Mat halfYuv;
+
+		private Mat chroma;
+
+		/**
+		 * Copy of the encoded picture for writing it to the container, or of the I420 picture for the video track,
+		 * grown to the largest picture
+		 */
+		private byte[] data = new byte[0];
+
+		@Override
+		public void run() {
+			Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+			try {
+				while (true) {
+					Task task;
+					try {
+						task = queue.take();
+					} catch (InterruptedException e) {
+						return;
+					}
+					if (task == QUIT) {
+						return;
+					}
+					encode(task);
+				}
+			} finally {
+				if (encoded != null) {
+					encoded.release();
+				}
+				if (i420 != null) {
+					i420.release();
+					yuv.release();
+					halfYuv.release();
+					chroma.release();
+				}
+			}
+		}
+
+		private void encode(Task task) {
+			long start = System.nanoTime();
+			long bytes = -1;
+			try {
+				if (rawWriter != null) {
+					bytes = rawWriter.write(task.frame, task.pictureNumber, task.timestampNanos);
+				} else if (videoTrack != null) {
+					bytes = encodeToVideo(task);
+				} else if (containerWriter != null) {
+					bytes = encodeToContainer(task);
+				} else {
+					File file = new File(folder, task.pictureNumber + format.extension);
+					if (Highgui.imwrite(file.getAbsolutePath(), task.frame.image, encodingParameters)) {
+						bytes = file.length();
+					} else {
+						Log.e(TAG, "Error when writing image to sd-card: " + file);
+					}
+				}
+			} catch (IOException e) {
+				Log.e(TAG, "Error when writing picture " + task.pictureNumber, e);
+			} finally {
+				task.frame.release();
+			}
+			if (bytes >= 0) {
+				encodeNanos.addAndGet(System.nanoTime() - start);
+				bytesWritten.addAndGet(bytes);
+				encodedCount.incrementAndGet();
+			}
+			if (videoFrameListener != null) {
+				if (bytes >= 0) {
+					videoFrameListener.onVideoFrameWritten(task.pictureNumber, task.timestampNanos,
+							VideoTrack.presentationTimeUs(task.timestampNanos));
+				} else {
+					videoFrameListener.onVideoFrameSkipped(task.pictureNumber, task.timestampNanos);
+				}
+			}
+		}
+
+		/**
+		 * @return The number of bytes written, or -1 if the frame was skipped
+		 */
+		private long encodeToVideo(Task task) throws IOException {
+			if (i420 == null) {
+				i420 = new Mat();
+				yuv = new Mat();
+				halfYuv = new Mat();
+				chroma = new Mat();
+			}
+			// I420 needs an even width and height, which a cropped or downscaled frame may not have
+			Mat image = task.frame.image;
+			int width = image.cols() & ~1;
+			int height = image.rows() & ~1;
+			Mat even = width == image.cols() && height == image.rows() ? image : image.submat(0, height, 0, width);
+			if (task.frame.isGrayscale()) {
+				// The luminance is the Y plane, the chroma planes are neutral
+				i420.create(height * 3 / 2, width, CvType.CV_8UC1);
+				Mat plane = i420.submat(0, height, 0, width);
+				even.copyTo(plane);
+				plane.release();
+				plane = i420.submat(height, height * 3 / 2, 0, width);
+				plane.setTo(NEUTRAL_CHROMA);
+				plane.release();
+			} else {
+				convertToI420(even, width, height);
+			}
+			if (even != image) {
+				even.release();
+			}
+			int length = (int) (i420.total() * i420.elemSize());
+			if (data.length < length) {
+				data = new byte[length];
+			}
+			i420.get(0, 0, data);
+			return videoTrack.write(data, length, width, height, task.timestampNanos);
+		}
+
+		/**
+		 * Converts a BGR image with even width and height into i420: the Y plane at full resolution, followed by the U
+		 * and V planes, each averaged over blocks of 2x2 pixels
+		 */
+		private void convertToI420(Mat image, int width, int height) {
+			Imgproc.cvtColor(image, yuv, Imgproc.COLOR_BGR2YUV);
+			i420.create(height * 3 / 2, width, CvType.CV_8UC1);
+			Mat plane = i420.submat(0, height, 0, width);
+			Core.extractChannel(yuv, plane, 0);
+			plane.release();
+
+			Imgproc.resize(yuv, halfYuv, new Size(width / 2, height / 2), 0, 0, Imgproc.INTER_AREA);
+			// The chroma planes are continuous in i420, but not as wide as its rows, so they are copied as one row
+			Mat i420Row = i420.reshape(1, 1);
+			int chromaSize = width * height / 4;
+			for (int channel = 1; channel <= 2; channel++) {
+				Core.extractChannel(halfYuv, chroma, channel);
+				Mat chromaRow = chroma.reshape(1, 1);
+				int offset = width * height + (channel - 1) * chromaSize;
+				plane = i420Row.colRange(offset, offset + chromaSize);
+				chromaRow.copyTo(plane);
+				plane.release();
+				chromaRow.release();
+			}
+			i420Row.release();
+		}
+
+		/**
+		 * @return The number of bytes written, or -1 if the picture could not be encoded
+		 */
+		private long encodeToContainer(Task task) throws IOException {
+			if (encoded == null) {
+				encoded = new MatOfByte();
+			}
+			if (!Highgui.imencode(format.extension, task.frame.image, encoded, encodingParameters)) {
+				Log.e(TAG, "Could not encode picture " + task.pictureNumber);
+				return -1;
+			}
+			int length = (int) encoded.total();
+			if (data.length < length) {
+				data = new byte[length];
+			}
+			encoded.get(0, 0, data);
+			containerWriter.append(task.pictureNumber, task.timestampNanos, data, length);
+			return length;
+		}
+	}
+}
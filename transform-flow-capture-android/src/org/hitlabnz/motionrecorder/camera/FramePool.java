@@ -0,0 +1,146 @@
+package org.hitlabnz.motionrecorder.camera;
+
+/**
+ * A limited number of {@link Frame}s that the camera retrieves its images into. The native buffers of the frames are
+ * allocated by OpenCV on the first retrieve and reused for all following frames of the same size.
+ *
+ * Unlike the ImuEventPool, this pool does not grow on demand: a frame holds a whole image, so if all frames are still
+ * in use by slow consumers, {@link #obtain(long)} returns null and the camera drops the frame instead of allocating.
+ * The capacity can be changed with {@link #setCapacity(int)}; frames are created when they are needed and frames above
+ * the capacity are freed when they are released. The pool measures how long the consumers hold the frames, so the
+ * capacity can be adapted to their latency.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class FramePool {
+
+	/**
+	 * Weight of a new sample in the moving average of the hold time
+	 */
+	private static final float HOLD_TIME_SMOOTHING = 0.1f;
+
+	/**
+	 * Stack of frames that are currently not in use
+	 */
+	private Frame[] freeFrames;
+
+	/**
+	 * Number of entries in freeFrames
+	 */
+	private int freeCount;
+
+	/**
+	 * Number of frames that exist, in use or free
+	 */
+	private int frameCount;
+
+	/**
+	 * Maximum number of frames
+	 */
+	private int capacity;
+
+	/**
+	 * Moving average of the time in nanoseconds from obtaining a frame until its last owner released it
+	 */
+	private long averageHoldNanos;
+
+	/**
+	 * Whether the pool was closed, so frames that are returned must be disposed
+	 */
+	private boolean closed;
+
+	/**
+	 * Creates a new pool with the given number of frames.
+	 */
+	public FramePool(int capacity) {
+		this.capacity = capacity;
+		freeFrames = new Frame[Math.max(capacity, 1)];
+		for (int i = 0; i < capacity; i++) {
+			freeFrames[freeCount++] = new Frame(this);
+		}
+		frameCount = capacity;
+	}
+
+	/**
+	 * Obtains a frame from the pool. The caller is the only owner of the returned frame and has to
+	 * {@link Frame#release()} it.
+	 *
+	 * @param timestampNanos Elapsed realtime in nanoseconds when the frame was grabbed
+	 * @return A frame or null, if all frames are in use or the pool was closed
+	 */
+	public synchronized Frame obtain(long timestampNanos) {
+		if (closed) {
+			return null;
+		}
+		Frame frame;
+		if (freeCount > 0) {
+			frame = freeFrames[--freeCount];
+			freeFrames[freeCount] = null;
+		} else if (frameCount < capacity) {
+			frame = new Frame(this);
+			frameCount++;
+		} else {
+			return null;
+		}
+		frame.set(timestampNanos);
+		return frame;
+	}
+
+	/**
+	 * Changes the maximum number of frames. If the pool shrinks, the frames above the new capacity are freed as soon
+	 * as they are not in use anymore.
+	 */
+	public synchronized void setCapacity(int capacity) {
+		this.capacity = Math.max(capacity, 1);
+		while (frameCount > this.capacity && freeCount > 0) {
+			freeFrames[--freeCount].dispose();
+			freeFrames[freeCount] = null;
+			frameCount--;
+		}
+	}
+
+	/**
+	 * Returns the maximum number of frames
+	 */
+	public synchronized int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the moving average of the time in nanoseconds from obtaining a frame until its last owner released it
+	 */
+	public synchronized long getAverageHoldNanos() {
+		return averageHoldNanos;
+	}
+
+	/**
+	 * Frees the native memory of all frames. Frames that are still in use are freed when they are released.
+	 */
+	public synchronized void close() {
+		closed = true;
+		while (freeCount > 0) {
+			freeFrames[--freeCount].dispose();
+			freeFrames[freeCount] = null;
+			frameCount--;
+		}
+	}
+
+	synchronized void recycle(Frame frame) {
+		long holdNanos = System.nanoTime() - frame.obtainedNanos;
+		averageHoldNanos = averageHoldNanos == 0 ? holdNanos : averageHoldNanos
+				+ (long) ((holdNanos - averageHoldNanos) * HOLD_TIME_SMOOTHING);
+
+		if (closed || frameCount > capacity) {
+			frame.dispose();
+			frameCount--;
+			return;
+		}
+		if (freeCount == freeFrames.length) {
+			Frame[] grown = new Frame[freeFrames.length * 2];
+			System.arraycopy(freeFrames, 0, grown, 0, freeCount);
+			freeFrames = grown;
+		}
+		freeFrames[freeCount++] = frame;
+	}
+}
@@ -0,0 +1,129 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import org.opencv.core.Mat;
+import org.opencv.core.Rect;
+import org.opencv.core.Size;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Crops the camera image to a region of interest and downscales it by a number of pyramid levels (each level halves
+ * width and height), before the frame is passed on. Both steps work on the native images: the crop is a view into the
+ * camera image, and only the downscaled result is written into the frame, so smaller frames also make encoding and
+ * storage cheaper.
+ *
+ * Instances are used by a single camera thread and own native buffers, which are freed with {@link #release()}.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class FrameTransform {
+
+	/**
+	 * Region of interest in camera pixels, or null for the whole image
+	 */
+	private final Rect regionOfInterest;
+
+	/**
+	 * Number of times the image is halved
+	 */
+	private final int pyramidLevels;
+
+	/**
+	 * Intermediate results of the pyramid levels, allocated on first use
+	 */
+	private Mat[] levels;
+
+	/**
+	 * @param regionOfInterest Region of the camera image in pixels that is kept, or null for the whole image. The
+	 *            region is clipped to the image.
+	 * @param pyramidLevels Number of times width and height are halved, 0 to keep the resolution
+	 */
+	public FrameTransform(Rect regionOfInterest, int pyramidLevels) {
+		this.regionOfInterest = regionOfInterest;
+		this.pyramidLevels = Math.max(pyramidLevels, 0);
+	}
+
+	/**
+	 * Returns whether this transform leaves the image as it is, so the camera can retrieve directly into the frame
+	 */
+	public boolean isIdentity() {
+		return regionOfInterest == null && pyramidLevels == 0;
+	}
+
+	/**
+	 * Returns the size of the frames for the given camera resolution
+	 */
+	public Size getOutputSize(Size cameraSize) {
+		Rect region = clip(cameraSize.width, cameraSize.height);
+		double width = region.width;
+		double height = region.height;
+		for (int i = 0; i < pyramidLevels; i++) {
+			width = Math.floor((width + 1) / 2);
+			height = Math.floor((height + 1) / 2);
+		}
+		return new Size(width, height);
+	}
+
+	/**
+	 * Writes the transformed camera image into the target
+	 *
+	 * @param cameraImage The image as retrieved from the camera
+	 * @param target The image of the frame
+	 */
+	public void apply(Mat cameraImage, Mat target) {
+		Mat region = regionOfInterest == null ? cameraImage : cameraImage.submat(clip(cameraImage.cols(),
+				cameraImage.rows()));
+		if (pyramidLevels == 0) {
+			region.copyTo(target);
+		} else {
+			if (levels == null) {
+				levels = new Mat[pyramidLevels - 1];
+				for (int i = 0; i < levels.length; i++) {
+					levels[i] = new Mat();
+				}
+			}
+			Mat source = region;
+			for (int i = 0; i < pyramidLevels; i++) {
+				Mat destination = i == pyramidLevels - 1 ? target : levels[i];
+				Imgproc.pyrDown(source, destination);
+				source = destination;
+			}
+		}
+		if (region != cameraImage) {
+			// Only the header of the view is freed, the pixels belong to the camera image
+			region.release();
+		}
+	}
+
+	/**
+	 * Frees the native buffers of this transform
+	 */
+	public void release() {
+		if (levels != null) {
+			for (Mat level : levels) {
+				level.release();
+			}
+			levels = null;
+		}
+	}
+
+	/**
+	 * Returns the region of interest clipped to an image of the given size
+	 */
+	private Rect clip(double width, double height) {
+		if (regionOfInterest == null) {
+			return new Rect(0, 0, (int) width, (int) height);
+		}
+		int x = Math.max(0, Math.min(regionOfInterest.x, (int) width - 1));
+		int y = Math.max(0, Math.min(regionOfInterest.y, (int) height - 1));
+		int w = Math.max(1, Math.min(regionOfInterest.width, (int) width - x));
+		int h = Math.max(1, Math.min(regionOfInterest.height, (int) height - y));
+		return new Rect(x, y, w, h);
+	}
+
+	@Override
+	public String toString() {
+		return "region " + (regionOfInterest != null ? regionOfInterest : "full") + ", " + pyramidLevels
+				+ " pyramid levels";
+	}
+}
@@ -0,0 +1,65 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import org.opencv.core.MatOfInt;
+import org.opencv.highgui.Highgui;
+
+/**
+ * The formats in which the {@link FrameEncoder} can store pictures. JPEG, PNG and the raw format store grayscale frames
+ * with a single 8 bit channel.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public enum ImageFormat {
+	/**
+	 * Lossy. The quality ranges from 0 to 100.
+	 */
+	JPEG(".jpg"),
+	/**
+	 * Lossless. The quality ranges from 0 to 100 and selects the zlib compression level: 100 is the fastest and
+	 * largest, 0 the slowest and smallest.
+	 */
+	PNG(".png"),
+	/**
+	 * Lossy, smaller than JPEG at the same quality but slower to encode. The quality ranges from 0 to 100. Only
+	 * available if OpenCV was built with WebP support.
+	 */
+	WEBP(".webp"),
+	/**
+	 * Uncompressed pixels of all pictures appended to a single file (see {@link RawFrameWriter}), for capturing at the
+	 * highest frame rate and compressing afterwards. The quality is ignored.
+	 */
+	RAW(RawFrameWriter.FILE_EXTENSION);
+
+	/**
+	 * Highgui.IMWRITE_WEBP_QUALITY, which is missing from the constants of the OpenCV 2.4 Java API
+	 */
+	private static final int IMWRITE_WEBP_QUALITY = 64;
+
+	/**
+	 * The extension of the files, including the dot
+	 */
+	public final String extension;
+
+	private ImageFormat(String extension) {
+		this.extension = extension;
+	}
+
+	/**
+	 * Creates the parameters for Highgui.imwrite, or null for {@link #RAW}
+	 *
+	 * @param quality The quality from 0 to 100
+	 */
+	MatOfInt createEncodingParameters(int quality) {
+		switch (this) {
+		case JPEG:
+			return new MatOfInt(Highgui.IMWRITE_JPEG_QUALITY, quality);
+		case PNG:
+			return new MatOfInt(Highgui.IMWRITE_PNG_COMPRESSION, (100 - quality) * 9 / 100);
+		case WEBP:
+			return new MatOfInt(IMWRITE_WEBP_QUALITY, quality);
+		default:
+			return null;
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import android.annotation.SuppressLint;
+import android.media.MediaCodec;
+import android.media.MediaCodecInfo;
+import android.media.MediaCodecInfo.CodecCapabilities;
+import android.media.MediaCodecList;
+import android.media.MediaFormat;
+import android.media.MediaMuxer;
+import android.os.Build;
+import android.util.Log;
+
+/**
+ * Encodes the frames to H.264 with the hardware encoder of the device (MediaCodec) and writes them into an MP4 file
+ * (MediaMuxer). Requires Android 4.3; use {@link #isAvailable()} before creating an instance, so the classes of the
+ * newer APIs are not loaded on older devices.
+ *
+ * @author Alexander Pacha
+ *
+ */
+@SuppressLint("NewApi")
+public class MediaCodecVideoEncoder implements VideoEncoder {
+	/**
+	 * Tag for logging
+	 */
+	private static final String TAG = MediaCodecVideoEncoder.class.getName();
+
+	private static final String MIME_TYPE = "video/avc";
+
+	/**
+	 * API level of Android 4.3 (Jelly Bean MR2) that introduced the MediaMuxer
+	 */
+	private static final int JELLY_BEAN_MR2 = 18;
+
+	/**
+	 * Bits per pixel and frame of the bit rate
+	 */
+	private static final float BITS_PER_PIXEL = 0.2f;
+
+	/**
+	 * Maximum time in microseconds to wait for a buffer of the codec
+	 */
+	private static final long TIMEOUT_US = 10000;
+
+	private MediaCodec codec;
+
+	private MediaMuxer muxer;
+
+	private MediaCodec.BufferInfo bufferInfo;
+
+	private ByteBuffer[] inputBuffers;
+
+	private ByteBuffer[] outputBuffers;
+
+	private int track = -1;
+
+	/**
+	 * Whether the codec expects the chroma planes interleaved (NV12) instead of planar (I420)
+	 */
+	private boolean semiPlanar;
+
+	/**
+	 * Frame in NV12 layout, only allocated if the codec is semi-planar
+	 */
+	private byte[] nv12;
+
+	/**
+	 * Returns whether this device has an H.264 encoder with a supported color format and the MediaMuxer
+	 */
+	public static boolean isAvailable() {
+		return Build.VERSION.SDK_INT >= JELLY_BEAN_MR2 && selectCodec() != null;
+	}
+
+	@Override
+	public String getFileExtension() {
+		return ".mp4";
+	}
+
+	@Override
+	public void start(File file, int width, int height, int frameRate, int keyFrameIntervalSeconds)
+			throws IOException {
+		MediaCodecInfo codecInfo = selectCodec();
+		if (codecInfo == null) {
+			throw new IOException("No H.264 encoder available");
+		}
+		int colorFormat = selectColorFormat(codecInfo);
+		semiPlanar = colorFormat == CodecCapabilities.COLOR_FormatYUV420SemiPlanar;
+
+		MediaFormat format = MediaFormat.createVideoFormat(MIME_TYPE, width, height);
+		format.setInteger(MediaFormat.KEY_COLOR_FORMAT, colorFormat);
+		format.setInteger(MediaFormat.KEY_BIT_RATE, (int) (width * height * frameRate * BITS_PER_PIXEL));
+		format.setInteger(MediaFormat.KEY_FRAME_RATE, frameRate);
+		format.setInteger(MediaFormat.KEY_I_FRAME_INTERVAL, keyFrameIntervalSeconds);
+
+		muxer = new MediaMuxer(file.getAbsolutePath(), MediaMuxer.OutputFormat.MUXER_OUTPUT_MPEG_4);
+		codec = MediaCodec.createByCodecName(codecInfo.getName());
+		codec.configure(format, null, null, MediaCodec.CONFIGURE_FLAG_ENCODE);
+		codec.start();
+		inputBuffers = codec.getInputBuffers();
+		outputBuffers = codec.getOutputBuffers();
+		bufferInfo = new MediaCodec.BufferInfo();
+		track = -1;
+	}
+
+	@Override
+	public int encode(byte[] i420, int length, long presentationTimeUs) throws IOException {
+		int written = 0;
+		int inputIndex;
+		// Wait for a free input buffer, writing the encoded frames that block it
+		while ((inputIndex = codec.dequeueInputBuffer(TIMEOUT_US)) < 0) {
+			written += drain(false);
+		}
+		ByteBuffer input = inputBuffers[inputIndex];
+		input.clear();
+		if (semiPlanar) {
+			toNv12(i420, length);
+			input.put(nv12, 0, length);
+		} else {
+			input.put(i420, 0, length);
+		}
+		codec.queueInputBuffer(inputIndex, 0, length, presentationTimeUs, 0);
+		return written + drain(false);
+	}
+
+	@Override
+	public long close() throws IOException {
+		long written = 0;
+		try {
+			int inputIndex = codec.dequeueInputBuffer(-1);
+			codec.queueInputBuffer(inputIndex, 0, 0, 0, MediaCodec.BUFFER_FLAG_END_OF_STREAM);
+			written = drain(true);
+		} finally {
+			codec.stop();
+			codec.release();
+			if (track >= 0) {
+				muxer.stop();
+			}
+			muxer.release();
+		}
+		return written;
+	}
+
+	/**
+	 * Writes the encoded frames that are available into the file.
+	 *
+	 * @param endOfStream Whether to wait until the codec reported the end of the stream
+	 * @return The number of bytes written
+	 */
+	private int drain(boolean endOfStream) {
+		int written = 0;
+		while (true) {
+			int outputIndex = codec.dequeueOutputBuffer(bufferInfo, TIMEOUT_US);
+			if (outputIndex == MediaCodec.INFO_TRY_AGAIN_LATER) {
+				if (!endOfStream) {
+					return written;
+				}
+			} else if (outputIndex == MediaCodec.INFO_OUTPUT_BUFFERS_CHANGED) {
+				outputBuffers = codec.getOutputBuffers();
+			} else if (outputIndex == MediaCodec.INFO_OUTPUT_FORMAT_CHANGED) {
+				track = muxer.addTrack(codec.getOutputFormat());
+				muxer.start();
+			} else if (outputIndex >= 0) {
+				ByteBuffer output = outputBuffers[outputIndex];
+				// The codec config (SPS/PPS) is passed to the muxer with the output format
+				if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_CODEC_CONFIG) == 0 && bufferInfo.size > 0) {
+					if (track < 0) {
+						Log.w(TAG, "Dropping an encoded frame that arrived before the output format");
+					} else {
+						output.position(bufferInfo.offset);
+						output.limit(bufferInfo.offset + bufferInfo.size);
+						muxer.writeSampleData(track, output, bufferInfo);
+						written += bufferInfo.size;
+					}
+				}
+				codec.releaseOutputBuffer(outputIndex, false);
+				if ((bufferInfo.flags & MediaCodec.BUFFER_FLAG_END_OF_STREAM) != 0) {
+					return written;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Interleaves the U and V planes of the I420 frame into the NV12 layout
+	 */
+	private void toNv12(byte[] i420, int length) {
+		if (nv12 == null || nv12.length < length) {
+			nv12 = new byte[length];
+		}
+		int ySize = length * 2 / 3;
+		int chromaSize = ySize / 4;
+		System.arraycopy(i420, 0, nv12, 0, ySize);
+		for (int i = 0; i < chromaSize; i++) {
+			nv12[ySize + 2 * i] = i420[ySize + i];
+			nv12[ySize + 2 * i + 1] = i420[ySize + chromaSize + i];
+		}
+	}
+
+	private static MediaCodecInfo selectCodec() {
+		for (int i = 0; i < MediaCodecList.getCodecCount(); i++) {
+			MediaCodecInfo codecInfo = MediaCodecList.getCodecInfoAt(i);
+			if (!codecInfo.isEncoder()) {
+				continue;
+			}
+			for (String type : codecInfo.getSupportedTypes()) {
+				if (type.equalsIgnoreCase(MIME_TYPE) && selectColorFormat(codecInfo) != 0) {
+					return codecInfo;
+				}
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the planar or semi-planar YUV 4:2:0 color format of the codec, or 0 if it supports neither
+	 */
+	private static int selectColorFormat(MediaCodecInfo codecInfo) {
+		int[] colorFormats = codecInfo.getCapabilitiesForType(MIME_TYPE).colorFormats;
+		int selected = 0;
+		for (int colorFormat : colorFormats) {
+			if (colorFormat == CodecCapabilities.COLOR_FormatYUV420Planar) {
+				return colorFormat;
+			} else if (colorFormat == CodecCapabilities.COLOR_FormatYUV420SemiPlanar) {
+				selected = colorFormat;
+			}
+		}
+		return selected;
+	}
+}
@@ -0,0 +1,87 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.opencv.core.CvType;
+import org.opencv.core.Mat;
+import org.opencv.core.MatOfByte;
+import org.opencv.core.MatOfInt;
+import org.opencv.highgui.Highgui;
+import org.opencv.imgproc.Imgproc;
+
+/**
+ * Software fallback of the {@link MediaCodecVideoEncoder} for devices without a hardware encoder: every frame is
+ * encoded as JPEG by OpenCV and appended to a frame container (see {@link FrameContainerFormat}), with the
+ * presentation timestamp as timestamp and the frame number as picture number. Every frame is a key frame, so the key
+ * frame interval is ignored.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class MjpegVideoEncoder implements VideoEncoder {
+
+	/**
+	 * JPEG quality of the frames
+	 */
+	public static final int JPEG_QUALITY = 90;
+
+	private FrameContainerWriter writer;
+
+	private Mat i420;
+
+	private Mat bgr;
+
+	private MatOfByte encoded;
+
+	private MatOfInt encodingParameters;
+
+	private byte[] data = new byte[0];
+
+	private int frameNumber;
+
+	@Override
+	public String getFileExtension() {
+		return FrameContainerFormat.CONTAINER_EXTENSION;
+	}
+
+	@Override
+	public void start(File file, int width, int height, int frameRate, int keyFrameIntervalSeconds)
+			throws IOException {
+		writer = new FrameContainerWriter(file, ImageFormat.JPEG.extension);
+		i420 = new Mat(height * 3 / 2, width, CvType.CV_8UC1);
+		bgr = new Mat();
+		encoded = new MatOfByte();
+		encodingParameters = ImageFormat.JPEG.createEncodingParameters(JPEG_QUALITY);
+		frameNumber = 0;
+	}
+
+	@Override
+	public int encode(byte[] pixels, int length, long presentationTimeUs) throws IOException {
+		i420.put(0, 0, pixels);
+		Imgproc.cvtColor(i420, bgr, Imgproc.COLOR_YUV2BGR_I420);
+		if (!Highgui.imencode(ImageFormat.JPEG.extension, bgr, encoded, encodingParameters)) {
+			throw new IOException("Could not encode frame " + frameNumber);
+		}
+		int encodedLength = (int) encoded.total();
+		if (data.length < encodedLength) {
+			data = new byte[encodedLength];
+		}
+		encoded.get(0, 0, data);
+		writer.append(frameNumber++, presentationTimeUs * 1000, data, encodedLength);
+		return encodedLength;
+	}
+
+	@Override
+	public long close() throws IOException {
+		try {
+			writer.close();
+		} finally {
+			i420.release();
+			bgr.release();
+			encoded.release();
+			encodingParameters.release();
+		}
+		return 0;
+	}
+}
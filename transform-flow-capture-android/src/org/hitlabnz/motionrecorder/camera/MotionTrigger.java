@@ -0,0 +1,68 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import org.hitlabnz.motionrecorder.events.ImuEvent;
+import org.hitlabnz.motionrecorder.events.MotionEvent;
+import org.hitlabnz.motionrecorder.events.MotionEventListener;
+import org.hitlabnz.motionrecorder.recorders.SessionClock;
+
+/**
+ * Reports motion, when the magnitude of the first three values of the IMU events it receives exceeds a threshold,
+ * e.g. the angular speed of the gyroscope in rad/s. It is registered as listener of a recorder with
+ * addMotionEventListener and used with {@link CaptureSchedule#onMotion(MotionTrigger)}.
+ *
+ * The time of motion is taken when the event arrives, so the sensor should not batch its events (max report latency
+ * 0), otherwise frames are captured too late.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class MotionTrigger implements MotionEventListener {
+
+	/**
+	 * Square of the threshold of the magnitude
+	 */
+	private final float thresholdSquared;
+
+	/**
+	 * Time in nanoseconds that frames are still captured after the last motion
+	 */
+	private final long holdNanos;
+
+	/**
+	 * Elapsed realtime in nanoseconds when the last event above the threshold arrived
+	 */
+	private volatile long lastMotionNanos = Long.MIN_VALUE / 2;
+
+	/**
+	 * @param threshold The magnitude above which the device is moving, e.g. in rad/s for the gyroscope
+	 * @param holdMillis Time in milliseconds that frames are still captured after the last motion
+	 */
+	public MotionTrigger(float threshold, long holdMillis) {
+		thresholdSquared = threshold * threshold;
+		holdNanos = holdMillis * 1000000L;
+	}
+
+	@Override
+	public void onMotionEventUpdate(MotionEvent motionEvent) {
+		if (!(motionEvent instanceof ImuEvent)) {
+			return;
+		}
+		ImuEvent imuEvent = (ImuEvent) motionEvent;
+		if (imuEvent.valueCount < 3) {
+			return;
+		}
+		float[] values = imuEvent.values;
+		if (values[0] * values[0] + values[1] * values[1] + values[2] * values[2] > thresholdSquared) {
+			lastMotionNanos = SessionClock.elapsedRealtimeNanos();
+		}
+	}
+
+	/**
+	 * Returns whether there was motion within the hold time before the given time
+	 *
+	 * @param nowNanos Elapsed realtime in nanoseconds
+	 */
+	public boolean isMoving(long nowNanos) {
+		return nowNanos - lastMotionNanos <= holdNanos;
+	}
+}
@@ -0,0 +1,167 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+
+import org.opencv.core.Mat;
+
+/**
+ * Appends the uncompressed pixels of frames to a single file, so capturing is only limited by the storage bandwidth
+ * and the pictures can be compressed after the recording. The file is grown in large steps ahead of the writes, so the
+ * file system does not have to update its metadata for every frame; it is truncated to the written frames on
+ * {@link #close()}. All values are stored in little-endian byte order.
+ *
+ * <pre>
+ * Frame:
+ *   0  int    magic number ("TFCF")
+ *   4  int    picture number, as in the timestamp records of the session
+ *   8  long   timestamp in nanoseconds since the recording was started
+ *  16  int    width in pixels
+ *  20  int    height in pixels
+ *  24  int    OpenCV type of the pixels, e.g. CV_8UC3 for BGR or CV_8UC1 for grayscale
+ *  28  int    number of pixel bytes n
+ *  32  ...    n bytes of pixels, row by row
+ * </pre>
+ *
+ * The frames are appended in the order in which they were written, which may differ from the order of the picture
+ * numbers if several threads write.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class RawFrameWriter implements Closeable {
+
+	/**
+	 * Extension of the file, including the dot
+	 */
+	public static final String FILE_EXTENSION = ".raw";
+
+	/**
+	 * Magic number at the beginning of each frame ("TFCF" read as little-endian int)
+	 */
+	public static final int MAGIC = 0x46434654;
+
+	/**
+	 * Size of the header of each frame in bytes
+	 */
+	public static final int FRAME_HEADER_SIZE = 32;
+
+	/**
+	 * Number of bytes by which the file is grown, when the next frame does not fit anymore
+	 */
+	private static final long GROWTH_BYTES = 64L * 1024 * 1024;
+
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer header = ByteBuffer.allocate(FRAME_HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+	/**
+	 * Pixels of the current frame, grown to the largest frame
+	 */
+	private byte[] pixels = new byte[0];
+
+	/**
+	 * Continuous copy of frames whose image is a region of a larger image, allocated on first use
+	 */
+	private Mat continuous;
+
+	/**
+	 * Number of bytes that were written so far
+	 */
+	private long position;
+
+	/**
+	 * Current length of the file
+	 */
+	private long length;
+
+	/**
+	 * Creates the file and preallocates the first part of it.
+	 *
+	 * @param file The target file, an existing file will be overwritten
+	 * @throws IOException If the file could not be created
+	 */
+	public RawFrameWriter(File file) throws IOException {
+		this.file = new RandomAccessFile(file, "rw");
+		channel = this.file.getChannel();
+		this.file.setLength(0);
+		grow(GROWTH_BYTES);
+	}
+
+	/**
+	 * Appends the image of the frame. Can be called from any thread.
+	 *
+	 * @param frame The frame to write
+	 * @param pictureNumber The number of the picture
+	 * @param timestampNanos Timestamp in nanoseconds since the recording was started
+	 * @return The number of bytes written, including the header
+	 * @throws IOException If writing the file failed
+	 */
+	public synchronized int write(Frame frame, int pictureNumber, long timestampNanos) throws IOException {
+		Mat image = frame.image;
+		if (!image.isContinuous()) {
+			if (continuous == null) {
+				continuous = new Mat();
+			}
+			image.copyTo(continuous);
+			image = continuous;
+		}
+		int byteCount = (int) (image.total() * image.elemSize());
+		if (pixels.length < byteCount) {
+			pixels = new byte[byteCount];
+		}
+		image.get(0, 0, pixels);
+
+		int frameSize = FRAME_HEADER_SIZE + byteCount;
+		if (position + frameSize > length) {
+			grow(Math.max(GROWTH_BYTES, frameSize));
+		}
+
+		header.clear();
+		header.putInt(MAGIC);
+		header.putInt(pictureNumber);
+		header.putLong(timestampNanos);
+		header.putInt(image.cols());
+		header.putInt(image.rows());
+		header.putInt(image.type());
+		header.putInt(byteCount);
+		header.flip();
+		writeFully(header);
+		writeFully(ByteBuffer.wrap(pixels, 0, byteCount));
+		return frameSize;
+	}
+
+	/**
+	 * Truncates the file to the frames that were written and closes it.
+	 */
+	@Override
+	public synchronized void close() throws IOException {
+		try {
+			file.setLength(position);
+		} finally {
+			file.close();
+			if (continuous != null) {
+				continuous.release();
+				continuous = null;
+			}
+		}
+	}
+
+	private void grow(long bytes) throws IOException {
+		length += bytes;
+		file.setLength(length);
+	}
+
+	private void writeFully(ByteBuffer buffer) throws IOException {
+		while (buffer.hasRemaining()) {
+			position += channel.write(buffer, position);
+		}
+	}
+}
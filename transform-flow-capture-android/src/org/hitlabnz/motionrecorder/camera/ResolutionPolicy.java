@@ -0,0 +1,138 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.util.List;
+
+import org.opencv.core.Size;
+
+/**
+ * Selects the resolution of the camera from the preview sizes it supports. The result does not depend on the order in
+ * which the camera reports its sizes.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class ResolutionPolicy {
+
+	/**
+	 * The ways of selecting a resolution
+	 */
+	public enum Mode {
+		/**
+		 * Exactly the given size, or the closest one if the camera does not support it
+		 */
+		EXACT,
+		/**
+		 * The size that is closest to the given one in width and height
+		 */
+		CLOSEST_TO,
+		/**
+		 * The largest size with an area below the one of the given size and at least a minimum width
+		 */
+		MAX_AREA_UNDER
+	}
+
+	/**
+	 * The policy that the camera used before it was configurable: the largest size below 1280x720 that is at least 480
+	 * pixels wide
+	 */
+	public static final ResolutionPolicy DEFAULT = maxAreaUnder(1280, 720, 480);
+
+	private final Mode mode;
+
+	private final double width;
+
+	private final double height;
+
+	private final double minWidth;
+
+	private ResolutionPolicy(Mode mode, double width, double height, double minWidth) {
+		this.mode = mode;
+		this.width = width;
+		this.height = height;
+		this.minWidth = minWidth;
+	}
+
+	/**
+	 * Selects exactly the given size. If the camera does not support it, the closest size is selected.
+	 */
+	public static ResolutionPolicy exact(int width, int height) {
+		return new ResolutionPolicy(Mode.EXACT, width, height, 0);
+	}
+
+	/**
+	 * Selects the size that is closest to the given one in width and height
+	 */
+	public static ResolutionPolicy closestTo(int width, int height) {
+		return new ResolutionPolicy(Mode.CLOSEST_TO, width, height, 0);
+	}
+
+	/**
+	 * Selects the largest size with an area below width x height and a width of at least minWidth. If there is no such
+	 * size, the smallest size is selected.
+	 */
+	public static ResolutionPolicy maxAreaUnder(int width, int height, int minWidth) {
+		return new ResolutionPolicy(Mode.MAX_AREA_UNDER, width, height, minWidth);
+	}
+
+	public Mode getMode() {
+		return mode;
+	}
+
+	/**
+	 * Returns the selected size, or null if the list is empty
+	 *
+	 * @param supportedSizes The preview sizes that the camera supports
+	 */
+	public Size select(List<Size> supportedSizes) {
+		Size selected = null;
+		switch (mode) {
+		case EXACT:
+			for (Size size : supportedSizes) {
+				if (size.width == width && size.height == height) {
+					return size;
+				}
+			}
+			return selectClosest(supportedSizes);
+		case CLOSEST_TO:
+			return selectClosest(supportedSizes);
+		case MAX_AREA_UNDER:
+			double maxArea = width * height;
+			for (Size size : supportedSizes) {
+				if (size.area() < maxArea && size.width >= minWidth
+						&& (selected == null || size.area() > selected.area())) {
+					selected = size;
+				}
+			}
+			if (selected == null) {
+				for (Size size : supportedSizes) {
+					if (selected == null || size.area() < selected.area()) {
+						selected = size;
+					}
+				}
+			}
+			return selected;
+		default:
+			return null;
+		}
+	}
+
+	private Size selectClosest(List<Size> supportedSizes) {
+		Size selected = null;
+		double selectedDistance = Double.MAX_VALUE;
+		for (Size size : supportedSizes) {
+			double dw = size.width - width;
+			double dh = size.height - height;
+			double distance = dw * dw + dh * dh;
+			if (distance < selectedDistance) {
+				selected = size;
+				selectedDistance = distance;
+			}
+		}
+		return selected;
+	}
+
+	@Override
+	public String toString() {
+		return mode + " " + (int) width + "x" + (int) height;
+	}
+}
@@ -0,0 +1,54 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Encodes a sequence of frames into a video file. The frames are passed as I420 (planar YUV 4:2:0) bytes, so
+ * implementations and the {@link VideoTrack} that drives them do not depend on OpenCV.
+ *
+ * The methods are never called concurrently, and in the order start, encode..., close.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public interface VideoEncoder {
+
+	/**
+	 * Returns the extension of the files written by this encoder, including the dot
+	 */
+	String getFileExtension();
+
+	/**
+	 * Creates the video file and prepares the encoder.
+	 *
+	 * @param file The target file, an existing file will be overwritten
+	 * @param width Width of the frames in pixels
+	 * @param height Height of the frames in pixels
+	 * @param frameRate The expected frame rate, used to select the bit rate
+	 * @param keyFrameIntervalSeconds Time in seconds between two key frames
+	 * @throws IOException If the file could not be created or no encoder is available
+	 */
+	void start(File file, int width, int height, int frameRate, int keyFrameIntervalSeconds) throws IOException;
+
+	/**
+	 * Encodes a frame.
+	 *
+	 * @param i420 The pixels of the frame in I420 layout
+	 * @param length Number of bytes in i420
+	 * @param presentationTimeUs Presentation timestamp of the frame in microseconds, greater than that of the
+	 *            previous frame
+	 * @return The number of bytes that were written to the file during this call. Encoders may write a frame later
+	 *         than it was passed.
+	 * @throws IOException If encoding or writing the file failed
+	 */
+	int encode(byte[] i420, int length, long presentationTimeUs) throws IOException;
+
+	/**
+	 * Encodes the frames that are still pending and closes the file.
+	 *
+	 * @return The number of bytes that were written to the file during this call
+	 * @throws IOException If encoding or writing the file failed
+	 */
+	long close() throws IOException;
+}
@@ -0,0 +1,117 @@
+package org.hitlabnz.motionrecorder.camera;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Feeds the frames of a recording to a {@link VideoEncoder} and keeps their presentation timestamps aligned with the
+ * session: the presentation timestamp of a frame is its session timestamp in microseconds (see
+ * {@link #presentationTimeUs(long)}), so a picture record of the session can be matched with its video frame, and with
+ * the IMU records around it, without a separate table.
+ *
+ * The encoder is started with the size of the first frame. Like the encoder, this class does not depend on Android or
+ * OpenCV, so it can be driven with a stub encoder on a plain JVM.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class VideoTrack {
+
+	/**
+	 * The frame rate that is expected from the camera
+	 */
+	public static final int DEFAULT_FRAME_RATE = 30;
+
+	/**
+	 * Default time in seconds between two key frames
+	 */
+	public static final int DEFAULT_KEY_FRAME_INTERVAL_SECONDS = 1;
+
+	private final VideoEncoder encoder;
+
+	private final File file;
+
+	private final int keyFrameIntervalSeconds;
+
+	private boolean started;
+
+	private int width;
+
+	private int height;
+
+	private long lastPresentationTimeUs = Long.MIN_VALUE;
+
+	private int frameCount;
+
+	/**
+	 * @param encoder The encoder of the video
+	 * @param folder The folder of the recording; the file name is "Video" with the extension of the encoder
+	 * @param keyFrameIntervalSeconds Time in seconds between two key frames
+	 */
+	public VideoTrack(VideoEncoder encoder, File folder, int keyFrameIntervalSeconds) {
+		this.encoder = encoder;
+		this.file = new File(folder, "Video" + encoder.getFileExtension());
+		this.keyFrameIntervalSeconds = keyFrameIntervalSeconds;
+	}
+
+	/**
+	 * Returns the presentation timestamp in microseconds of a frame with the given session timestamp
+	 *
+	 * @param sessionTimeNanos Timestamp in nanoseconds since the recording was started
+	 */
+	public static long presentationTimeUs(long sessionTimeNanos) {
+		return sessionTimeNanos / 1000;
+	}
+
+	/**
+	 * Encodes a frame. Frames with a presentation timestamp that is not after the one of the previous frame are
+	 * skipped, because the encoders require increasing timestamps.
+	 *
+	 * @param i420 The pixels of the frame in I420 layout
+	 * @param length Number of bytes in i420
+	 * @param width Width of the frame in pixels
+	 * @param height Height of the frame in pixels
+	 * @param sessionTimeNanos Timestamp in nanoseconds since the recording was started
+	 * @return The number of bytes that were written to the file, or -1 if the frame was skipped
+	 * @throws IOException If encoding failed or the frame has a different size than the first frame
+	 */
+	public int write(byte[] i420, int length, int width, int height, long sessionTimeNanos) throws IOException {
+		if (!started) {
+			encoder.start(file, width, height, DEFAULT_FRAME_RATE, keyFrameIntervalSeconds);
+			this.width = width;
+			this.height = height;
+			started = true;
+		} else if (width != this.width || height != this.height) {
+			throw new IOException("Frame size changed from " + this.width + "x" + this.height + " to " + width + "x"
+					+ height);
+		}
+		long presentationTimeUs = presentationTimeUs(sessionTimeNanos);
+		if (presentationTimeUs <= lastPresentationTimeUs) {
+			return -1;
+		}
+		lastPresentationTimeUs = presentationTimeUs;
+		int bytes = encoder.encode(i420, length, presentationTimeUs);
+		frameCount++;
+		return bytes;
+	}
+
+	/**
+	 * Returns the number of frames that the encoder accepted
+	 */
+	public int getFrameCount() {
+		return frameCount;
+	}
+
+	/**
+	 * Encodes the pending frames and closes the video, if it was started.
+	 *
+	 * @return The number of bytes that were written to the file during this call
+	 */
+	public long close() throws IOException {
+		if (!started) {
+			return 0;
+		}
+		started = false;
+		return encoder.close();
+	}
+}
@@ -1,19 +1,40 @@
 package org.hitlabnz.motionrecorder.events;
 
-import org.hitlabnz.glassCubeSample.representation.Quaternion;
+import org.hitlabnz.motionrecorder.math.Quat4f;
 
 /**
- * A fused sensor-event that contains rotation in form of a quaternion
+ * A fused sensor-event that contains rotation in form of a quaternion.
+ * 
+ * The fusion recorders reuse one event for all their results, so listeners may read the event during
+ * {@link MotionEventListener#onMotionEventUpdate(MotionEvent)}, but have to copy the quaternion to keep it.
  * 
  * @author Alexander Pacha
  * 
  */
 public class FusionEvent extends MotionEvent {
 
-	public final Quaternion fusedQuaternion;
+	public final Quat4f fusedQuaternion = new Quat4f();
+
+	public FusionEvent(EventType eventType) {
+		super(eventType);
+	}
 
-	public FusionEvent(Quaternion fusedQuaternion, EventType eventType, long elapsedTime) {
+	/**
+	 * @param elapsedTime The elapsed time since the recording was started in milliseconds. Use
+	 *            {@link #fromNanos(Quat4f, EventType, long)} for the full resolution.
+	 */
+	public FusionEvent(Quat4f fusedQuaternion, EventType eventType, long elapsedTime) {
 		super(eventType, elapsedTime);
-		this.fusedQuaternion = fusedQuaternion;
+		this.fusedQuaternion.set(fusedQuaternion);
+	}
+
+	/**
+	 * @param elapsedTimeNanos The elapsed time since the recording was started in nanoseconds
+	 */
+	public static FusionEvent fromNanos(Quat4f fusedQuaternion, EventType eventType, long elapsedTimeNanos) {
+		FusionEvent event = new FusionEvent(eventType);
+		event.fusedQuaternion.set(fusedQuaternion);
+		event.setElapsedTimeNanos(elapsedTimeNanos);
+		return event;
 	}
 }
@@ -12,8 +12,26 @@ public class GpsEvent extends MotionEvent {
 
 	public final Location location;
 
+	/**
+	 * @param elapsedTime The elapsed time since the recording was started in milliseconds. Use
+	 *            {@link #fromNanos(Location, EventType, long)} for the full resolution.
+	 */
 	public GpsEvent(Location location, EventType eventType, long elapsedTime) {
 		super(eventType, elapsedTime);
 		this.location = location;
 	}
+
+	private GpsEvent(Location location, EventType eventType) {
+		super(eventType);
+		this.location = location;
+	}
+
+	/**
+	 * @param elapsedTimeNanos The elapsed time since the recording was started in nanoseconds
+	 */
+	public static GpsEvent fromNanos(Location location, EventType eventType, long elapsedTimeNanos) {
+		GpsEvent event = new GpsEvent(location, eventType);
+		event.setElapsedTimeNanos(elapsedTimeNanos);
+		return event;
+	}
 }
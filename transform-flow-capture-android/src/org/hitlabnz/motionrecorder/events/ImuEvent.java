@@ -1,19 +1,91 @@
 package org.hitlabnz.motionrecorder.events;
 
-import android.hardware.SensorEvent;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
- * An event that was received from an IMU-sensor through the Android SensorManager
- * 
+ * An event that was received from an IMU-sensor through the Android SensorManager.
+ *
+ * The values and the timestamp of the original SensorEvent are copied into this event, because Android recycles its
+ * SensorEvents after the callback returned. Instances are obtained from an {@link ImuEventPool} and are reused:
+ * listeners may read the event during {@link MotionEventListener#onMotionEventUpdate(MotionEvent)}; a listener that
+ * wants to keep the event beyond that call must {@link #retain()} it and {@link #release()} it when done.
+ *
  * @author Alexander Pacha
- * 
+ *
  */
 public class ImuEvent extends MotionEvent {
 
-	public final SensorEvent originalEvent;
+	/**
+	 * Maximum number of values that an event can hold
+	 */
+	public static final int MAX_VALUES = 16;
 
-	public ImuEvent(SensorEvent event, EventType eventType, long elapsedTime) {
-		super(eventType, elapsedTime);
-		this.originalEvent = event;
+	/**
+	 * The values of the sensor event. Only the first {@link #valueCount} entries are valid.
+	 */
+	public final float[] values = new float[MAX_VALUES];
+
+	/**
+	 * Number of valid entries in {@link #values}
+	 */
+	public int valueCount;
+
+	/**
+	 * The time in nanoseconds at which the sensor event happened (SensorEvent.timestamp)
+	 */
+	public long timestamp;
+
+	/**
+	 * The accuracy of the sensor event
+	 */
+	public int accuracy;
+
+	/**
+	 * The pool this event is returned to, once all references were released
+	 */
+	private final ImuEventPool pool;
+
+	/**
+	 * Number of owners that currently hold this event
+	 */
+	private final AtomicInteger references = new AtomicInteger();
+
+	ImuEvent(ImuEventPool pool, EventType eventType) {
+		super(eventType);
+		this.pool = pool;
+	}
+
+	/**
+	 * Copies the given sensor values into this event and makes the caller its only owner.
+	 */
+	void set(float[] values, long timestamp, int accuracy, long elapsedTimeNanos) {
+		this.valueCount = Math.min(values.length, MAX_VALUES);
+		System.arraycopy(values, 0, this.values, 0, valueCount);
+		this.timestamp = timestamp;
+		this.accuracy = accuracy;
+		setElapsedTimeNanos(elapsedTimeNanos);
+		references.set(1);
+	}
+
+	/**
+	 * Adds an owner to this event. Every call must be balanced by a call to {@link #release()}.
+	 */
+	public void retain() {
+		if (references.getAndIncrement() <= 0) {
+			throw new IllegalStateException("ImuEvent was retained after it had been released");
+		}
+	}
+
+	/**
+	 * Releases the ownership of this event. When the last owner released the event, it is returned to its pool and
+	 * must not be accessed anymore.
+	 */
+	public void release() {
+		int remaining = references.decrementAndGet();
+		if (remaining == 0) {
+			pool.recycle(this);
+		} else if (remaining < 0) {
+			throw new IllegalStateException("ImuEvent was released more often than it was retained");
+		}
 	}
 }
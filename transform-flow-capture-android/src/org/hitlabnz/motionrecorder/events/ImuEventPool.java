@@ -0,0 +1,92 @@
+package org.hitlabnz.motionrecorder.events;
+
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
+
+/**
+ * A pool of preallocated {@link ImuEvent}s of one event type, so that no event has to be allocated per sensor sample.
+ *
+ * Events are obtained by the recorder that owns the pool and returned automatically when their last owner called
+ * {@link ImuEvent#release()}. If all events are in use, a new event is allocated and kept in the pool afterwards.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class ImuEventPool {
+
+	/**
+	 * The type of all events in this pool
+	 */
+	private final EventType eventType;
+
+	/**
+	 * Stack of events that are currently not in use
+	 */
+	private ImuEvent[] freeEvents;
+
+	/**
+	 * Number of entries in freeEvents
+	 */
+	private int freeCount;
+
+	/**
+	 * Total number of events that were created by this pool
+	 */
+	private int allocatedCount;
+
+	/**
+	 * Creates a new pool and preallocates the given number of events.
+	 *
+	 * @param eventType The type of the events
+	 * @param capacity Number of events to preallocate
+	 */
+	public ImuEventPool(EventType eventType, int capacity) {
+		this.eventType = eventType;
+		freeEvents = new ImuEvent[Math.max(capacity, 1)];
+		for (int i = 0; i < capacity; i++) {
+			freeEvents[freeCount++] = new ImuEvent(this, eventType);
+		}
+		allocatedCount = capacity;
+	}
+
+	/**
+	 * Obtains an event from the pool and copies the given sensor values into it. The caller is the only owner of the
+	 * returned event and has to {@link ImuEvent#release()} it.
+	 *
+	 * @param values The values of the sensor event
+	 * @param timestamp The timestamp of the sensor event in nanoseconds
+	 * @param accuracy The accuracy of the sensor event
+	 * @param elapsedTimeNanos The time in nanoseconds since the recording was started
+	 * @return An event that contains a copy of the values
+	 */
+	public ImuEvent obtain(float[] values, long timestamp, int accuracy, long elapsedTimeNanos) {
+		ImuEvent event;
+		synchronized (this) {
+			if (freeCount > 0) {
+				event = freeEvents[--freeCount];
+				freeEvents[freeCount] = null;
+			} else {
+				event = new ImuEvent(this, eventType);
+				allocatedCount++;
+			}
+		}
+		event.set(values, timestamp, accuracy, elapsedTimeNanos);
+		return event;
+	}
+
+	/**
+	 * Returns the total number of events that were created by this pool. If this number keeps growing, listeners do
+	 * not release the events they retained.
+	 */
+	public synchronized int getAllocatedCount() {
+		return allocatedCount;
+	}
+
+	synchronized void recycle(ImuEvent event) {
+		if (freeCount == freeEvents.length) {
+			ImuEvent[] grown = new ImuEvent[freeEvents.length * 2];
+			System.arraycopy(freeEvents, 0, grown, 0, freeCount);
+			freeEvents = grown;
+		}
+		freeEvents[freeCount++] = event;
+	}
+}
@@ -14,16 +14,52 @@ public class MotionEvent {
 	 */
 	public long elapsedTime;
 
+	/**
+	 * The elapsed time since the record-button was clicked in nanoseconds, taken from the hardware timestamp of the
+	 * event where available
+	 */
+	public long elapsedTimeNanos;
+
+	/**
+	 * @param eventType The type of the event
+	 * @param elapsedTime The elapsed time since the recording was started in milliseconds. Use
+	 *            {@link #fromNanos(EventType, long)} for the full resolution.
+	 */
 	public MotionEvent(EventType eventType, long elapsedTime) {
+		this(eventType);
+		setElapsedTimeNanos(elapsedTime * 1000000L);
+	}
+
+	/**
+	 * Creates an event without a time, which is set with {@link #setElapsedTimeNanos(long)}
+	 */
+	protected MotionEvent(EventType eventType) {
 		this.eventType = eventType;
-		this.elapsedTime = elapsedTime;
+	}
+
+	/**
+	 * @param eventType The type of the event
+	 * @param elapsedTimeNanos The elapsed time since the recording was started in nanoseconds
+	 */
+	public static MotionEvent fromNanos(EventType eventType, long elapsedTimeNanos) {
+		MotionEvent event = new MotionEvent(eventType);
+		event.setElapsedTimeNanos(elapsedTimeNanos);
+		return event;
+	}
+
+	/**
+	 * Sets the elapsed time in nanoseconds and milliseconds, e.g. when an event is reused for the next result
+	 */
+	public void setElapsedTimeNanos(long elapsedTimeNanos) {
+		this.elapsedTimeNanos = elapsedTimeNanos;
+		this.elapsedTime = elapsedTimeNanos / 1000000L;
 	}
 
 	/**
 	 * Enumeration describing the different types of motion event that can occur
 	 */
 	public enum EventType {
-		Accelerometer, Compass, Gravity, Gyroscope, LinearAccelerometer, Orientation, Picture, RotationVector, FusedRotationVector1, FusedRotationVector2, Gps
+		Accelerometer, Compass, Gravity, Gyroscope, LinearAccelerometer, Orientation, Picture, RotationVector, FusedRotationVector1, FusedRotationVector2, Gps, FrameDrop
 	}
 
 }
@@ -10,7 +10,10 @@ public interface MotionEventListener {
 
 	/**
 	 * When a sensor is ready to deliver data, this method will be called to notify the listener of the update.
-	 * 
+	 *
+	 * The event is only valid during this call, since recorders may reuse it for the next sample. To keep an
+	 * {@link ImuEvent} beyond this call, {@link ImuEvent#retain()} it and release it when done.
+	 *
 	 * @param event The event that was reported
 	 */
 	public void onMotionEventUpdate(MotionEvent event);
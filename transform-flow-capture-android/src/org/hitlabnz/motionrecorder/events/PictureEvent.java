@@ -1,20 +1,41 @@
 package org.hitlabnz.motionrecorder.events;
 
-import android.graphics.Bitmap;
+import org.hitlabnz.motionrecorder.camera.Frame;
 
 /**
- * A new picture-event that was received from the camera
+ * A new picture-event that was received from the camera. The frame is only valid during
+ * {@link MotionEventListener#onMotionEventUpdate(MotionEvent)}; a listener that wants to keep it must
+ * {@link Frame#retain()} it and {@link Frame#release()} it when done. Listeners that display the picture convert it with
+ * {@link Frame#toBitmap(android.graphics.Bitmap)}.
  * 
  * @author Alexander Pacha
  * 
  */
 public class PictureEvent extends MotionEvent {
 
-	public final Bitmap picture;
+	public final Frame frame;
 
-	public PictureEvent(Bitmap picture, EventType eventType, long elapsedTime) {
+	/**
+	 * @param elapsedTime The elapsed time since the recording was started in milliseconds. Use
+	 *            {@link #fromNanos(Frame, EventType, long)} for the full resolution.
+	 */
+	public PictureEvent(Frame frame, EventType eventType, long elapsedTime) {
 		super(eventType, elapsedTime);
 
-		this.picture = picture;
+		this.frame = frame;
+	}
+
+	private PictureEvent(Frame frame, EventType eventType) {
+		super(eventType);
+		this.frame = frame;
+	}
+
+	/**
+	 * @param elapsedTimeNanos The elapsed time since the recording was started in nanoseconds
+	 */
+	public static PictureEvent fromNanos(Frame frame, EventType eventType, long elapsedTimeNanos) {
+		PictureEvent event = new PictureEvent(frame, eventType);
+		event.setElapsedTimeNanos(elapsedTimeNanos);
+		return event;
 	}
 }
@@ -0,0 +1,30 @@
+package org.hitlabnz.motionrecorder.fusion;
+
+/**
+ * Corrects the gyroscope orientation with a constant weight, independent of the motion (sensor fusion scenario 1).
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class ConstantWeighting implements InterpolationWeighting {
+
+	/**
+	 * The weight that was used by the SensorFusion1Recorder
+	 */
+	public static final float DEFAULT_WEIGHT = 0.005f;
+
+	private final float weight;
+
+	/**
+	 * @param weight The weight of the rotation vector, between 0 and 1. It should be quite low, so the rotation vector
+	 *            corrects the gyroscope only slowly and the output keeps responsive.
+	 */
+	public ConstantWeighting(float weight) {
+		this.weight = weight;
+	}
+
+	@Override
+	public float interpolationWeight(double rotationVelocity) {
+		return weight;
+	}
+}
@@ -0,0 +1,19 @@
+package org.hitlabnz.motionrecorder.fusion;
+
+/**
+ * Strategy that determines how much the rotation vector corrects the orientation that was integrated from the
+ * gyroscope in each step of the {@link OrientationFusionEngine}.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public interface InterpolationWeighting {
+
+	/**
+	 * Returns the weight of the slerp from the gyroscope orientation towards the rotation vector. 0 means that the
+	 * system entirely relies on the gyroscope, whereas 1 means that the system relies entirely on the rotation vector.
+	 *
+	 * @param rotationVelocity The angular speed of the last gyroscope sample in rad/s
+	 */
+	float interpolationWeight(double rotationVelocity);
+}
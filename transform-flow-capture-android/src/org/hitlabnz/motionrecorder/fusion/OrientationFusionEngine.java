@@ -0,0 +1,294 @@
+package org.hitlabnz.motionrecorder.fusion;
+
+import org.hitlabnz.motionrecorder.math.Quat;
+import org.hitlabnz.motionrecorder.math.Quat4f;
+import org.hitlabnz.motionrecorder.math.Vec4;
+
+/**
+ * Fuses the gyroscope with the rotation vector into an absolute orientation. The gyroscope samples are integrated into
+ * the orientation, which is slowly corrected towards the rotation vector by a spherical linear interpolation (slerp)
+ * with the weight of an {@link InterpolationWeighting}. If both sensors disagree for too long, the orientation is reset
+ * to the rotation vector.
+ *
+ * The engine does not depend on Android and does not allocate memory per sample, so it can also reprocess recorded
+ * sessions on a desktop JVM. The orientation is a unit quaternion (x, y, z, w). Instances are not thread-safe.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class OrientationFusionEngine {
+
+	/**
+	 * Sensor identifier of gyroscope samples for {@link #process(int, int, int[], long[], float[], float[], long[])}
+	 */
+	public static final int GYROSCOPE = 0;
+
+	/**
+	 * Sensor identifier of rotation vector samples for
+	 * {@link #process(int, int, int[], long[], float[], float[], long[])}
+	 */
+	public static final int ROTATION_VECTOR = 1;
+
+	/**
+	 * Number of values per sample in the value arrays of the batch API: x, y, z of the gyroscope or x, y, z, w of the
+	 * rotation vector
+	 */
+	public static final int VALUES_PER_SAMPLE = 4;
+
+	/**
+	 * Constant specifying the factor between a Nano-second and a second
+	 */
+	private static final float NS2S = 1.0f / 1000000000.0f;
+
+	/**
+	 * This is a filter-threshold for discarding Gyroscope measurements that are below a certain level and potentially
+	 * are only noise and not real motion. Below it, the rotation axis is not normalised.
+	 */
+	private static final double EPSILON = 0.05f;
+
+	/**
+	 * The threshold that indicates an outlier of the rotation vector. If the dot-product between the gyroscope
+	 * orientation and the rotation vector falls below this threshold, the rotation vector is ignored.
+	 */
+	private static final float OUTLIER_THRESHOLD = 0.85f;
+
+	/**
+	 * The threshold that indicates a massive discrepancy between the rotation vector and the gyroscope orientation. If
+	 * the dot-product falls below this threshold, the panic counter is increased.
+	 */
+	private static final float OUTLIER_PANIC_THRESHOLD = 0.6f;
+
+	/**
+	 * The number of consecutive panic samples, after which the orientation is reset to the rotation vector
+	 */
+	private static final int PANIC_THRESHOLD = 60;
+
+	/**
+	 * The angular speed in rad/s below which a panic reset is performed. During faster motion it is delayed.
+	 */
+	private static final double PANIC_RESET_MAX_VELOCITY = 3;
+
+	private final InterpolationWeighting weighting;
+
+	/**
+	 * The fused orientation as quaternion x, y, z, w
+	 */
+	private final float[] orientation = new float[4];
+
+	/**
+	 * The absolute orientation as obtained by the rotation vector sensor
+	 */
+	private final float[] rotationVector = new float[4];
+
+	/**
+	 * The rotational difference of the last gyroscope sample
+	 */
+	private final float[] deltaQuaternion = new float[4];
+
+	/**
+	 * The timestamp of the last gyroscope sample in nanoseconds, 0 before the first sample
+	 */
+	private long timestamp;
+
+	/**
+	 * The angular speed of the last gyroscope sample in rad/s
+	 */
+	private double rotationVelocity;
+
+	/**
+	 * Number of consecutive samples where the rotation vector and the gyroscope orientation were significantly
+	 * different
+	 */
+	private int panicCounter;
+
+	/**
+	 * Flag that indicates, that the orientation was initialised by the first rotation vector
+	 */
+	private boolean initialised;
+
+	/**
+	 * Creates a new engine, which is initialised by the first rotation vector.
+	 *
+	 * @param weighting The strategy that weights the correction by the rotation vector
+	 */
+	public OrientationFusionEngine(InterpolationWeighting weighting) {
+		this.weighting = weighting;
+		reset();
+	}
+
+	/**
+	 * Resets the engine to its initial state, e.g. before a new recording.
+	 */
+	public void reset() {
+		Quat.setIdentity(orientation, 0);
+		Quat.setIdentity(rotationVector, 0);
+		Quat.setIdentity(deltaQuaternion, 0);
+		timestamp = 0;
+		rotationVelocity = 0;
+		panicCounter = 0;
+		initialised = false;
+	}
+
+	/**
+	 * Stores the rotation vector that corrects the following gyroscope samples. The first rotation vector initialises
+	 * the orientation.
+	 *
+	 * @param values The values of the rotation vector event. The scalar component is calculated from x, y and z, unless
+	 *            exactly four values are given.
+	 * @param valueCount The number of valid values
+	 */
+	public void correct(float[] values, int valueCount) {
+		float rx = values[0];
+		float ry = values[1];
+		float rz = values[2];
+		// Starting with API_18, Android will provide the scalar component as values[3], but if not, it is calculated
+		float rw;
+		if (valueCount == 4) {
+			rw = values[3];
+		} else {
+			rw = 1 - rx * rx - ry * ry - rz * rz;
+			rw = (rw > 0) ? (float) Math.sqrt(rw) : 0;
+		}
+		correct(rx, ry, rz, rw);
+	}
+
+	/**
+	 * Stores the rotation vector that corrects the following gyroscope samples. The first rotation vector initialises
+	 * the orientation.
+	 */
+	public void correct(float rx, float ry, float rz, float rw) {
+		Vec4.set(rotationVector, 0, rx, ry, rz, rw);
+		if (!initialised) {
+			System.arraycopy(rotationVector, 0, orientation, 0, 4);
+			initialised = true;
+		}
+	}
+
+	/**
+	 * Integrates a gyroscope sample into the orientation and corrects it with the last rotation vector.
+	 *
+	 * @param values The angular speeds around the x, y and z axis in rad/s
+	 * @param timestampNs The hardware timestamp of the sample in nanoseconds
+	 * @return true, if the orientation was updated. It is not available before the first rotation vector.
+	 */
+	public boolean update(float[] values, long timestampNs) {
+		return update(values[0], values[1], values[2], timestampNs);
+	}
+
+	/**
+	 * Integrates a gyroscope sample into the orientation and corrects it with the last rotation vector.
+	 *
+	 * @param axisX The angular speed around the x axis in rad/s
+	 * @param axisY The angular speed around the y axis in rad/s
+	 * @param axisZ The angular speed around the z axis in rad/s
+	 * @param timestampNs The hardware timestamp of the sample in nanoseconds
+	 * @return true, if the orientation was updated. It is not available before the first rotation vector.
+	 */
+	public boolean update(float axisX, float axisY, float axisZ, long timestampNs) {
+		if (timestamp != 0) {
+			final float dT = (timestampNs - timestamp) * NS2S;
+
+			// Calculate the angular speed of the sample
+			rotationVelocity = Math.sqrt(axisX * axisX + axisY * axisY + axisZ * axisZ);
+
+			// Normalize the rotation vector if it's big enough to get the axis
+			if (rotationVelocity > EPSILON) {
+				axisX /= rotationVelocity;
+				axisY /= rotationVelocity;
+				axisZ /= rotationVelocity;
+			}
+
+			// Integrate around this axis with the angular speed by the timestep in order to get a delta rotation
+			// from this sample over the timestep
+			double thetaOverTwo = rotationVelocity * dT / 2.0f;
+			double sinThetaOverTwo = Math.sin(thetaOverTwo);
+			double cosThetaOverTwo = Math.cos(thetaOverTwo);
+			Vec4.set(deltaQuaternion, 0, (float) (sinThetaOverTwo * axisX), (float) (sinThetaOverTwo * axisY),
+					(float) (sinThetaOverTwo * axisZ), (float) cosThetaOverTwo);
+		}
+		timestamp = timestampNs;
+
+		if (!initialised)
+			return false;
+
+		// Calculate new position from Gyro
+		Quat.multiply(orientation, 0, deltaQuaternion, 0, orientation, 0);
+
+		// Calculate the dot-product between the two orientations. Will be 1, if they are the same and < 1, if not.
+		float dotProduct = Math.abs(Quat.dot(orientation, 0, rotationVector, 0));
+
+		if (dotProduct < OUTLIER_THRESHOLD) {
+			// Increase panic counter
+			if (dotProduct < OUTLIER_PANIC_THRESHOLD)
+				panicCounter++;
+		} else {
+			// Reset the counter
+			panicCounter = 0;
+
+			// Interpolate between the gyroscope orientation and the rotation vector
+			float weight = weighting.interpolationWeight(rotationVelocity);
+			Quat.slerp(orientation, 0, orientation, 0, rotationVector, 0, weight);
+		}
+
+		if (panicCounter > PANIC_THRESHOLD && rotationVelocity < PANIC_RESET_MAX_VELOCITY) {
+			// Probably a gyroscope failure: reset the orientation to the rotation vector, unless the user is still
+			// shaking the device
+			System.arraycopy(rotationVector, 0, orientation, 0, 4);
+			panicCounter = 0;
+		}
+		return true;
+	}
+
+	/**
+	 * Processes a batch of gyroscope and rotation vector samples in the order of their index and writes the
+	 * orientation after each gyroscope sample into the output arrays.
+	 *
+	 * @param offset The index of the first sample
+	 * @param count The number of samples
+	 * @param sensors The sensor of each sample, {@link #GYROSCOPE} or {@link #ROTATION_VECTOR}
+	 * @param timestampsNs The hardware timestamp of each sample in nanoseconds
+	 * @param values {@link #VALUES_PER_SAMPLE} values per sample, starting at index * VALUES_PER_SAMPLE. Rotation
+	 *            vectors must contain the scalar component.
+	 * @param orientations Receives x, y, z, w of each fused orientation, must hold 4 values per gyroscope sample
+	 * @param orientationTimestampsNs Receives the timestamp of each fused orientation, may be null
+	 * @return The number of orientations that were written
+	 */
+	public int process(int offset, int count, int[] sensors, long[] timestampsNs, float[] values,
+			float[] orientations, long[] orientationTimestampsNs) {
+		int written = 0;
+		for (int i = offset; i < offset + count; i++) {
+			int v = i * VALUES_PER_SAMPLE;
+			if (sensors[i] == ROTATION_VECTOR) {
+				correct(values[v], values[v + 1], values[v + 2], values[v + 3]);
+			} else if (update(values[v], values[v + 1], values[v + 2], timestampsNs[i])) {
+				System.arraycopy(orientation, 0, orientations, written * 4, 4);
+				if (orientationTimestampsNs != null) {
+					orientationTimestampsNs[written] = timestampsNs[i];
+				}
+				written++;
+			}
+		}
+		return written;
+	}
+
+	/**
+	 * Returns true, if the orientation was initialised by a rotation vector
+	 */
+	public boolean isInitialised() {
+		return initialised;
+	}
+
+	/**
+	 * Copies the fused orientation into the given quaternion
+	 */
+	public void getOrientation(Quat4f output) {
+		output.set(orientation, 0);
+	}
+
+	/**
+	 * Returns the angular speed of the last gyroscope sample in rad/s
+	 */
+	public double getRotationVelocity() {
+		return rotationVelocity;
+	}
+}
@@ -0,0 +1,31 @@
+package org.hitlabnz.motionrecorder.fusion;
+
+/**
+ * Corrects the gyroscope orientation with a weight that grows with the angular speed (sensor fusion scenario 2). While
+ * the device rests, the drift-free gyroscope orientation is kept; during fast motion, where the gyroscope integration
+ * accumulates errors, the rotation vector takes over faster.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class VelocityWeighting implements InterpolationWeighting {
+
+	/**
+	 * The factor that was used by the SensorFusion2Recorder
+	 */
+	public static final float DEFAULT_FACTOR = 0.01f;
+
+	private final float factor;
+
+	/**
+	 * @param factor The factor that is multiplied by the angular speed in rad/s to obtain the weight
+	 */
+	public VelocityWeighting(float factor) {
+		this.factor = factor;
+	}
+
+	@Override
+	public float interpolationWeight(double rotationVelocity) {
+		return (float) rotationVelocity * factor;
+	}
+}
@@ -0,0 +1,157 @@
+package org.hitlabnz.motionrecorder.math;
+
+import java.nio.FloatBuffer;
+
+/**
+ * Quaternion math on unit quaternions (x, y, z, w) that are stored in float arrays or float buffers, see {@link Vec3}.
+ * The output may be the same quaternion as one of the inputs. Rotation matrices are 4x4 column-major matrices as used
+ * by {@link Mat4} and OpenGL.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public final class Quat {
+
+	private Quat() {
+	}
+
+	public static void setIdentity(float[] output, int outputOffset) {
+		Vec4.set(output, outputOffset, 0, 0, 0, 1);
+	}
+
+	public static float dot(float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+		return Vec4.dot(lhs, lhsOffset, rhs, rhsOffset);
+	}
+
+	/**
+	 * output = lhs * rhs (Hamilton product), which first rotates by rhs and then by lhs
+	 */
+	public static void multiply(float[] output, int outputOffset, float[] lhs, int lhsOffset, float[] rhs,
+			int rhsOffset) {
+		float x1 = lhs[lhsOffset], y1 = lhs[lhsOffset + 1], z1 = lhs[lhsOffset + 2], w1 = lhs[lhsOffset + 3];
+		float x2 = rhs[rhsOffset], y2 = rhs[rhsOffset + 1], z2 = rhs[rhsOffset + 2], w2 = rhs[rhsOffset + 3];
+		output[outputOffset + 3] = w1 * w2 - x1 * x2 - y1 * y2 - z1 * z2;
+		output[outputOffset] = w1 * x2 + x1 * w2 + y1 * z2 - z1 * y2;
+		output[outputOffset + 1] = w1 * y2 + y1 * w2 + z1 * x2 - x1 * z2;
+		output[outputOffset + 2] = w1 * z2 + z1 * w2 + x1 * y2 - y1 * x2;
+	}
+
+	/**
+	 * output = lhs * rhs on quaternions in float buffers, the offsets are absolute indices into the buffers
+	 */
+	public static void multiply(FloatBuffer output, int outputOffset, FloatBuffer lhs, int lhsOffset,
+			FloatBuffer rhs, int rhsOffset) {
+		float x1 = lhs.get(lhsOffset), y1 = lhs.get(lhsOffset + 1), z1 = lhs.get(lhsOffset + 2), w1 = lhs
+				.get(lhsOffset + 3);
+		float x2 = rhs.get(rhsOffset), y2 = rhs.get(rhsOffset + 1), z2 = rhs.get(rhsOffset + 2), w2 = rhs
+				.get(rhsOffset + 3);
+		output.put(outputOffset + 3, w1 * w2 - x1 * x2 - y1 * y2 - z1 * z2);
+		output.put(outputOffset, w1 * x2 + x1 * w2 + y1 * z2 - z1 * y2);
+		output.put(outputOffset + 1, w1 * y2 + y1 * w2 + z1 * x2 - x1 * z2);
+		output.put(outputOffset + 2, w1 * z2 + z1 * w2 + x1 * y2 - y1 * x2);
+	}
+
+	/**
+	 * Scales the quaternion q to the length 1 and stores it in the output
+	 */
+	public static void normalize(float[] output, int outputOffset, float[] q, int qOffset) {
+		float length = (float) Math.sqrt(dot(q, qOffset, q, qOffset));
+		output[outputOffset] = q[qOffset] / length;
+		output[outputOffset + 1] = q[qOffset + 1] / length;
+		output[outputOffset + 2] = q[qOffset + 2] / length;
+		output[outputOffset + 3] = q[qOffset + 3] / length;
+	}
+
+	/**
+	 * Spherical linear interpolation between two quaternions along the shorter arc.
+	 *
+	 * @param t The ratio between the two quaternions where 0 <= t <= 1.0 . Increasing t brings the result closer to
+	 *            the quaternion "to".
+	 */
+	public static void slerp(float[] output, int outputOffset, float[] from, int fromOffset, float[] to, int toOffset,
+			float t) {
+		float cosHalfTheta = dot(from, fromOffset, to, toOffset);
+		float toX = to[toOffset];
+		float toY = to[toOffset + 1];
+		float toZ = to[toOffset + 2];
+		float toW = to[toOffset + 3];
+		if (cosHalfTheta < 0) {
+			cosHalfTheta = -cosHalfTheta;
+			toX = -toX;
+			toY = -toY;
+			toZ = -toZ;
+			toW = -toW;
+		}
+
+		// if qa=qb or qa=-qb then theta = 0 and we can return qa
+		if (Math.abs(cosHalfTheta) >= 1.0) {
+			System.arraycopy(from, fromOffset, output, outputOffset, 4);
+			return;
+		}
+
+		double sinHalfTheta = Math.sqrt(1.0 - cosHalfTheta * cosHalfTheta);
+		double halfTheta = Math.acos(cosHalfTheta);
+		double ratioA = Math.sin((1 - t) * halfTheta) / sinHalfTheta;
+		double ratioB = Math.sin(t * halfTheta) / sinHalfTheta;
+
+		output[outputOffset] = (float) (from[fromOffset] * ratioA + toX * ratioB);
+		output[outputOffset + 1] = (float) (from[fromOffset + 1] * ratioA + toY * ratioB);
+		output[outputOffset + 2] = (float) (from[fromOffset + 2] * ratioA + toZ * ratioB);
+		output[outputOffset + 3] = (float) (from[fromOffset + 3] * ratioA + toW * ratioB);
+	}
+
+	/**
+	 * Stores the rotation matrix of the quaternion q as column-major 4x4 matrix in m
+	 */
+	public static void toRotationMatrix(float[] m, int mOffset, float[] q, int qOffset) {
+		float x = q[qOffset];
+		float y = q[qOffset + 1];
+		float z = q[qOffset + 2];
+		float w = q[qOffset + 3];
+
+		m[mOffset] = 1 - 2 * (y * y) - 2 * (z * z);
+		m[mOffset + 1] = 2 * (x * y) + 2 * (w * z);
+		m[mOffset + 2] = 2 * (x * z) - 2 * (w * y);
+		m[mOffset + 3] = 0;
+		m[mOffset + 4] = 2 * (x * y) - 2 * (w * z);
+		m[mOffset + 5] = 1 - 2 * (x * x) - 2 * (z * z);
+		m[mOffset + 6] = 2 * (y * z) + 2 * (w * x);
+		m[mOffset + 7] = 0;
+		m[mOffset + 8] = 2 * (x * z) + 2 * (w * y);
+		m[mOffset + 9] = 2 * (y * z) - 2 * (w * x);
+		m[mOffset + 10] = 1 - 2 * (x * x) - 2 * (y * y);
+		m[mOffset + 11] = 0;
+		m[mOffset + 12] = 0;
+		m[mOffset + 13] = 0;
+		m[mOffset + 14] = 0;
+		m[mOffset + 15] = 1;
+	}
+
+	/**
+	 * Stores the rotation matrix of the quaternion q as column-major 4x4 matrix in a float buffer, e.g. one that is
+	 * passed to OpenGL. The offsets are absolute indices into the buffers.
+	 */
+	public static void toRotationMatrix(FloatBuffer m, int mOffset, FloatBuffer q, int qOffset) {
+		float x = q.get(qOffset);
+		float y = q.get(qOffset + 1);
+		float z = q.get(qOffset + 2);
+		float w = q.get(qOffset + 3);
+
+		m.put(mOffset, 1 - 2 * (y * y) - 2 * (z * z));
+		m.put(mOffset + 1, 2 * (x * y) + 2 * (w * z));
+		m.put(mOffset + 2, 2 * (x * z) - 2 * (w * y));
+		m.put(mOffset + 3, 0);
+		m.put(mOffset + 4, 2 * (x * y) - 2 * (w * z));
+		m.put(mOffset + 5, 1 - 2 * (x * x) - 2 * (z * z));
+		m.put(mOffset + 6, 2 * (y * z) + 2 * (w * x));
+		m.put(mOffset + 7, 0);
+		m.put(mOffset + 8, 2 * (x * z) + 2 * (w * y));
+		m.put(mOffset + 9, 2 * (y * z) - 2 * (w * x));
+		m.put(mOffset + 10, 1 - 2 * (x * x) - 2 * (y * y));
+		m.put(mOffset + 11, 0);
+		m.put(mOffset + 12, 0);
+		m.put(mOffset + 13, 0);
+		m.put(mOffset + 14, 0);
+		m.put(mOffset + 15, 1);
+	}
+}
@@ -0,0 +1,65 @@
+package org.hitlabnz.motionrecorder.math;
+
+/**
+ * A lightweight quaternion (x, y, z, w) that carries the result of the sensor fusion. Unlike the Quaternion of the
+ * scene graph, it has no rotation matrix, lock or backing array. The math on quaternions is in {@link Quat}.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public final class Quat4f {
+
+	public float x, y, z, w;
+
+	/**
+	 * Creates the identity quaternion.
+	 */
+	public Quat4f() {
+		w = 1;
+	}
+
+	public Quat4f(float x, float y, float z, float w) {
+		set(x, y, z, w);
+	}
+
+	public Quat4f set(float x, float y, float z, float w) {
+		this.x = x;
+		this.y = y;
+		this.z = z;
+		this.w = w;
+		return this;
+	}
+
+	public Quat4f set(Quat4f quaternion) {
+		return set(quaternion.x, quaternion.y, quaternion.z, quaternion.w);
+	}
+
+	/**
+	 * Sets this quaternion to the identity.
+	 */
+	public Quat4f setIdentity() {
+		return set(0, 0, 0, 1);
+	}
+
+	/**
+	 * Copies x, y, z, w from the array
+	 */
+	public Quat4f set(float[] values, int offset) {
+		return set(values[offset], values[offset + 1], values[offset + 2], values[offset + 3]);
+	}
+
+	/**
+	 * Copies x, y, z, w into the array
+	 */
+	public void get(float[] values, int offset) {
+		values[offset] = x;
+		values[offset + 1] = y;
+		values[offset + 2] = z;
+		values[offset + 3] = w;
+	}
+
+	@Override
+	public String toString() {
+		return "{X: " + x + ", Y:" + y + ", Z:" + z + ", W:" + w + "}";
+	}
+}
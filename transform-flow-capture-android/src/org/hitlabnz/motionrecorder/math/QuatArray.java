@@ -0,0 +1,82 @@
+package org.hitlabnz.motionrecorder.math;
+
+/**
+ * A sequence of quaternions in structure-of-arrays layout: one array per component instead of one object or four
+ * consecutive floats per quaternion. This is the layout that {@link QuatBatch} works on, because the loops over it can
+ * be vectorised by the JIT compiler.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public final class QuatArray {
+
+	public final float[] x;
+
+	public final float[] y;
+
+	public final float[] z;
+
+	public final float[] w;
+
+	/**
+	 * Creates an array of identity quaternions.
+	 */
+	public QuatArray(int capacity) {
+		x = new float[capacity];
+		y = new float[capacity];
+		z = new float[capacity];
+		w = new float[capacity];
+		for (int i = 0; i < capacity; i++) {
+			w[i] = 1;
+		}
+	}
+
+	public int capacity() {
+		return w.length;
+	}
+
+	public void set(int index, float x, float y, float z, float w) {
+		this.x[index] = x;
+		this.y[index] = y;
+		this.z[index] = z;
+		this.w[index] = w;
+	}
+
+	public void get(int index, Quat4f output) {
+		output.set(x[index], y[index], z[index], w[index]);
+	}
+
+	/**
+	 * Copies quaternions from an array with x, y, z, w of each quaternion next to each other, e.g. the output of
+	 * {@link org.hitlabnz.motionrecorder.fusion.OrientationFusionEngine#process}.
+	 *
+	 * @param values The interleaved quaternions
+	 * @param valuesOffset The index of the first value to copy
+	 * @param offset The index of the first quaternion in this array
+	 * @param count The number of quaternions
+	 */
+	public void setInterleaved(float[] values, int valuesOffset, int offset, int count) {
+		for (int i = 0; i < count; i++) {
+			int v = valuesOffset + i * 4;
+			set(offset + i, values[v], values[v + 1], values[v + 2], values[v + 3]);
+		}
+	}
+
+	/**
+	 * Copies quaternions into an array with x, y, z, w of each quaternion next to each other.
+	 *
+	 * @param values Receives the interleaved quaternions
+	 * @param valuesOffset The index of the first value to write
+	 * @param offset The index of the first quaternion in this array
+	 * @param count The number of quaternions
+	 */
+	public void getInterleaved(float[] values, int valuesOffset, int offset, int count) {
+		for (int i = 0; i < count; i++) {
+			int v = valuesOffset + i * 4;
+			values[v] = x[offset + i];
+			values[v + 1] = y[offset + i];
+			values[v + 2] = z[offset + i];
+			values[v + 3] = w[offset + i];
+		}
+	}
+}
@@ -0,0 +1,139 @@
+package org.hitlabnz.motionrecorder.math;
+
+/**
+ * Quaternion math on many quaternions at once, e.g. to reprocess the fused orientations of a recorded session. The
+ * quaternions are stored in {@link QuatArray}s and the operations apply to the elements offset to offset + count - 1.
+ * The output may be the same array as one of the inputs.
+ *
+ * The loops are kept simple on purpose: the arrays are read into locals, there are no branches or calls in the loop
+ * body and every element is independent, so the JIT compiler (e.g. HotSpot C2) can vectorise them. Slerp, which needs
+ * the trigonometric functions per element, and the matrix conversion, which writes 16 floats per element, are the
+ * exceptions.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public final class QuatBatch {
+
+	private QuatBatch() {
+	}
+
+	/**
+	 * output[i] = lhs[i] * rhs[i], see {@link Quat#multiply(float[], int, float[], int, float[], int)}
+	 */
+	public static void multiply(QuatArray output, QuatArray lhs, QuatArray rhs, int offset, int count) {
+		float[] ox = output.x, oy = output.y, oz = output.z, ow = output.w;
+		float[] ax = lhs.x, ay = lhs.y, az = lhs.z, aw = lhs.w;
+		float[] bx = rhs.x, by = rhs.y, bz = rhs.z, bw = rhs.w;
+		for (int i = offset; i < offset + count; i++) {
+			float x1 = ax[i], y1 = ay[i], z1 = az[i], w1 = aw[i];
+			float x2 = bx[i], y2 = by[i], z2 = bz[i], w2 = bw[i];
+			ow[i] = w1 * w2 - x1 * x2 - y1 * y2 - z1 * z2;
+			ox[i] = w1 * x2 + x1 * w2 + y1 * z2 - z1 * y2;
+			oy[i] = w1 * y2 + y1 * w2 + z1 * x2 - x1 * z2;
+			oz[i] = w1 * z2 + z1 * w2 + x1 * y2 - y1 * x2;
+		}
+	}
+
+	/**
+	 * Scales the quaternions to the length 1
+	 */
+	public static void normalize(QuatArray output, QuatArray q, int offset, int count) {
+		float[] ox = output.x, oy = output.y, oz = output.z, ow = output.w;
+		float[] qx = q.x, qy = q.y, qz = q.z, qw = q.w;
+		for (int i = offset; i < offset + count; i++) {
+			float x = qx[i], y = qy[i], z = qz[i], w = qw[i];
+			float length = (float) Math.sqrt(x * x + y * y + z * z + w * w);
+			ox[i] = x / length;
+			oy[i] = y / length;
+			oz[i] = z / length;
+			ow[i] = w / length;
+		}
+	}
+
+	/**
+	 * Spherical linear interpolation with the same ratio t for all quaternions, see
+	 * {@link Quat#slerp(float[], int, float[], int, float[], int, float)}
+	 */
+	public static void slerp(QuatArray output, QuatArray from, QuatArray to, float t, int offset, int count) {
+		float[] ox = output.x, oy = output.y, oz = output.z, ow = output.w;
+		float[] ax = from.x, ay = from.y, az = from.z, aw = from.w;
+		float[] bx = to.x, by = to.y, bz = to.z, bw = to.w;
+		for (int i = offset; i < offset + count; i++) {
+			float x1 = ax[i], y1 = ay[i], z1 = az[i], w1 = aw[i];
+			float x2 = bx[i], y2 = by[i], z2 = bz[i], w2 = bw[i];
+			float cosHalfTheta = x1 * x2 + y1 * y2 + z1 * z2 + w1 * w2;
+			if (cosHalfTheta < 0) {
+				cosHalfTheta = -cosHalfTheta;
+				x2 = -x2;
+				y2 = -y2;
+				z2 = -z2;
+				w2 = -w2;
+			}
+			if (cosHalfTheta >= 1.0) {
+				ox[i] = x1;
+				oy[i] = y1;
+				oz[i] = z1;
+				ow[i] = w1;
+				continue;
+			}
+			double sinHalfTheta = Math.sqrt(1.0 - cosHalfTheta * cosHalfTheta);
+			double halfTheta = Math.acos(cosHalfTheta);
+			double ratioA = Math.sin((1 - t) * halfTheta) / sinHalfTheta;
+			double ratioB = Math.sin(t * halfTheta) / sinHalfTheta;
+			ox[i] = (float) (x1 * ratioA + x2 * ratioB);
+			oy[i] = (float) (y1 * ratioA + y2 * ratioB);
+			oz[i] = (float) (z1 * ratioA + z2 * ratioB);
+			ow[i] = (float) (w1 * ratioA + w2 * ratioB);
+		}
+	}
+
+	/**
+	 * Rotates the vectors (vx[i], vy[i], vz[i]) in place by the unit quaternions q[i]
+	 */
+	public static void rotate(QuatArray q, float[] vx, float[] vy, float[] vz, int offset, int count) {
+		float[] qx = q.x, qy = q.y, qz = q.z, qw = q.w;
+		for (int i = offset; i < offset + count; i++) {
+			float x = qx[i], y = qy[i], z = qz[i], w = qw[i];
+			float px = vx[i], py = vy[i], pz = vz[i];
+			// v' = v + w * t + u x t with t = 2 * (u x v) and u = (x, y, z)
+			float tx = 2 * (y * pz - z * py);
+			float ty = 2 * (z * px - x * pz);
+			float tz = 2 * (x * py - y * px);
+			vx[i] = px + w * tx + (y * tz - z * ty);
+			vy[i] = py + w * ty + (z * tx - x * tz);
+			vz[i] = pz + w * tz + (x * ty - y * tx);
+		}
+	}
+
+	/**
+	 * Stores the rotation matrices of the quaternions as consecutive column-major 4x4 matrices, see
+	 * {@link Quat#toRotationMatrix(float[], int, float[], int)}
+	 *
+	 * @param matrices Receives 16 floats per quaternion
+	 * @param matricesOffset The index of the first matrix in matrices
+	 */
+	public static void toRotationMatrix(float[] matrices, int matricesOffset, QuatArray q, int offset, int count) {
+		float[] qx = q.x, qy = q.y, qz = q.z, qw = q.w;
+		for (int i = 0; i < count; i++) {
+			float x = qx[offset + i], y = qy[offset + i], z = qz[offset + i], w = qw[offset + i];
+			int m = matricesOffset + i * 16;
+			matrices[m] = 1 - 2 * (y * y) - 2 * (z * z);
+			matrices[m + 1] = 2 * (x * y) + 2 * (w * z);
+			matrices[m + 2] = 2 * (x * z) - 2 * (w * y);
+			matrices[m + 3] = 0;
+			matrices[m + 4] = 2 * (x * y) - 2 * (w * z);
+			matrices[m + 5] = 1 - 2 * (x * x) - 2 * (z * z);
+			matrices[m + 6] = 2 * (y * z) + 2 * (w * x);
+			matrices[m + 7] = 0;
+			matrices[m + 8] = 2 * (x * z) + 2 * (w * y);
+			matrices[m + 9] = 2 * (y * z) - 2 * (w * x);
+			matrices[m + 10] = 1 - 2 * (x * x) - 2 * (y * y);
+			matrices[m + 11] = 0;
+			matrices[m + 12] = 0;
+			matrices[m + 13] = 0;
+			matrices[m + 14] = 0;
+			matrices[m + 15] = 1;
+		}
+	}
+}
@@ -0,0 +1,78 @@
+package org.hitlabnz.motionrecorder.math;
+
+/**
+ * Vector math on 3 element vectors (x, y, z) that are stored in float arrays, in the style of
+ * {@link org.hitlabnz.glassCubeSample.representation.Matrix}. The vectors start at the given offset, so many of them
+ * can be packed into one array. The output may be the same vector as one of the inputs.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public final class Vec3 {
+
+	private Vec3() {
+	}
+
+	public static void set(float[] output, int outputOffset, float x, float y, float z) {
+		output[outputOffset] = x;
+		output[outputOffset + 1] = y;
+		output[outputOffset + 2] = z;
+	}
+
+	/**
+	 * output = lhs + rhs
+	 */
+	public static void add(float[] output, int outputOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+		output[outputOffset] = lhs[lhsOffset] + rhs[rhsOffset];
+		output[outputOffset + 1] = lhs[lhsOffset + 1] + rhs[rhsOffset + 1];
+		output[outputOffset + 2] = lhs[lhsOffset + 2] + rhs[rhsOffset + 2];
+	}
+
+	/**
+	 * output = lhs - rhs
+	 */
+	public static void subtract(float[] output, int outputOffset, float[] lhs, int lhsOffset, float[] rhs,
+			int rhsOffset) {
+		output[outputOffset] = lhs[lhsOffset] - rhs[rhsOffset];
+		output[outputOffset + 1] = lhs[lhsOffset + 1] - rhs[rhsOffset + 1];
+		output[outputOffset + 2] = lhs[lhsOffset + 2] - rhs[rhsOffset + 2];
+	}
+
+	/**
+	 * output = v * scalar
+	 */
+	public static void scale(float[] output, int outputOffset, float[] v, int vOffset, float scalar) {
+		output[outputOffset] = v[vOffset] * scalar;
+		output[outputOffset + 1] = v[vOffset + 1] * scalar;
+		output[outputOffset + 2] = v[vOffset + 2] * scalar;
+	}
+
+	public static float dot(float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+		return lhs[lhsOffset] * rhs[rhsOffset] + lhs[lhsOffset + 1] * rhs[rhsOffset + 1] + lhs[lhsOffset + 2]
+				* rhs[rhsOffset + 2];
+	}
+
+	/**
+	 * output = lhs x rhs
+	 */
+	public static void cross(float[] output, int outputOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+		float x = lhs[lhsOffset + 1] * rhs[rhsOffset + 2] - lhs[lhsOffset + 2] * rhs[rhsOffset + 1];
+		float y = lhs[lhsOffset + 2] * rhs[rhsOffset] - lhs[lhsOffset] * rhs[rhsOffset + 2];
+		float z = lhs[lhsOffset] * rhs[rhsOffset + 1] - lhs[lhsOffset + 1] * rhs[rhsOffset];
+		set(output, outputOffset, x, y, z);
+	}
+
+	public static float length(float[] v, int vOffset) {
+		return (float) Math.sqrt(dot(v, vOffset, v, vOffset));
+	}
+
+	/**
+	 * Stores the vector v with the length 1 in the output
+	 */
+	public static void normalize(float[] output, int outputOffset, float[] v, int vOffset) {
+		double length = Math.sqrt(dot(v, vOffset, v, vOffset));
+		output[outputOffset] = (float) (v[vOffset] / length);
+		output[outputOffset + 1] = (float) (v[vOffset + 1] / length);
+		output[outputOffset + 2] = (float) (v[vOffset + 2] / length);
+	}
+}
@@ -0,0 +1,69 @@
+package org.hitlabnz.motionrecorder.math;
+
+/**
+ * Vector math on 4 element vectors (x, y, z, w) that are stored in float arrays, see {@link Vec3}. The output may be
+ * the same vector as one of the inputs.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public final class Vec4 {
+
+	private Vec4() {
+	}
+
+	public static void set(float[] output, int outputOffset, float x, float y, float z, float w) {
+		output[outputOffset] = x;
+		output[outputOffset + 1] = y;
+		output[outputOffset + 2] = z;
+		output[outputOffset + 3] = w;
+	}
+
+	/**
+	 * output = lhs + rhs
+	 */
+	public static void add(float[] output, int outputOffset, float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+		output[outputOffset] = lhs[lhsOffset] + rhs[rhsOffset];
+		output[outputOffset + 1] = lhs[lhsOffset + 1] + rhs[rhsOffset + 1];
+		output[outputOffset + 2] = lhs[lhsOffset + 2] + rhs[rhsOffset + 2];
+		output[outputOffset + 3] = lhs[lhsOffset + 3] + rhs[rhsOffset + 3];
+	}
+
+	/**
+	 * output = lhs - rhs
+	 */
+	public static void subtract(float[] output, int outputOffset, float[] lhs, int lhsOffset, float[] rhs,
+			int rhsOffset) {
+		output[outputOffset] = lhs[lhsOffset] - rhs[rhsOffset];
+		output[outputOffset + 1] = lhs[lhsOffset + 1] - rhs[rhsOffset + 1];
+		output[outputOffset + 2] = lhs[lhsOffset + 2] - rhs[rhsOffset + 2];
+		output[outputOffset + 3] = lhs[lhsOffset + 3] - rhs[rhsOffset + 3];
+	}
+
+	/**
+	 * output = v * scalar
+	 */
+	public static void scale(float[] output, int outputOffset, float[] v, int vOffset, float scalar) {
+		output[outputOffset] = v[vOffset] * scalar;
+		output[outputOffset + 1] = v[vOffset + 1] * scalar;
+		output[outputOffset + 2] = v[vOffset + 2] * scalar;
+		output[outputOffset + 3] = v[vOffset + 3] * scalar;
+	}
+
+	public static float dot(float[] lhs, int lhsOffset, float[] rhs, int rhsOffset) {
+		return lhs[lhsOffset] * rhs[rhsOffset] + lhs[lhsOffset + 1] * rhs[rhsOffset + 1] + lhs[lhsOffset + 2]
+				* rhs[rhsOffset + 2] + lhs[lhsOffset + 3] * rhs[rhsOffset + 3];
+	}
+
+	/**
+	 * Linear interpolation: output = from * (1 - t) + to * t
+	 */
+	public static void lerp(float[] output, int outputOffset, float[] from, int fromOffset, float[] to, int toOffset,
+			float t) {
+		float s = 1 - t;
+		output[outputOffset] = from[fromOffset] * s + to[toOffset] * t;
+		output[outputOffset + 1] = from[fromOffset + 1] * s + to[toOffset + 1] * t;
+		output[outputOffset + 2] = from[fromOffset + 2] * s + to[toOffset + 2] * t;
+		output[outputOffset + 3] = from[fromOffset + 3] * s + to[toOffset + 3] * t;
+	}
+}
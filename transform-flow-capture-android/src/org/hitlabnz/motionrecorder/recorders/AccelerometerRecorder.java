@@ -1,9 +1,7 @@
 package org.hitlabnz.motionrecorder.recorders;
 
 import java.io.File;
-import java.util.Date;
 
-import org.hitlabnz.motionrecorder.events.ImuEvent;
 import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
 import org.hitlabnz.motionrecorder.events.MotionEventListener;
 
@@ -11,7 +9,6 @@ import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.util.Log;
 
 /**
@@ -37,17 +34,17 @@ public class AccelerometerRecorder extends SensorRecorder implements SensorEvent
 	}
 
 	@Override
-	public void startRecording(Date startTime, File folderName) {
-		super.startRecording(startTime, new File(folderName + File.separator + "Accelerometer.txt"));
+	public void startRecording(SessionClock clock, File folderName) {
+		super.startRecording(clock, new File(folderName + File.separator + "Accelerometer.txt"));
 		// Start listening
-		sensorManager.registerListener(this, accelerometerSensor, SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(this, accelerometerSensor, EventType.Accelerometer);
 	}
 
 	@Override
-	public void startRecording(Date startTime, MotionEventListener listener) {
-		super.startRecording(startTime, listener);
+	public void startRecording(SessionClock clock, MotionEventListener listener) {
+		super.startRecording(clock, listener);
 		// Start listening
-		sensorManager.registerListener(this, accelerometerSensor, SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(this, accelerometerSensor, EventType.Accelerometer);
 	}
 
 	@Override
@@ -73,11 +70,9 @@ public class AccelerometerRecorder extends SensorRecorder implements SensorEvent
 			return;
 
 		if (recordingToFile) {
-			writeToSDCard(event);
+			writeToSDCard(event, EventType.Accelerometer);
 		} else {
-			for (MotionEventListener listener : listeners) {
-				listener.onMotionEventUpdate(new ImuEvent(event, EventType.Accelerometer, elapsedTimeSinceStart()));
-			}
+			notifyListeners(event, EventType.Accelerometer);
 		}
 	}
 }
@@ -1,9 +1,7 @@
 package org.hitlabnz.motionrecorder.recorders;
 
 import java.io.File;
-import java.util.Date;
 
-import org.hitlabnz.motionrecorder.events.ImuEvent;
 import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
 import org.hitlabnz.motionrecorder.events.MotionEventListener;
 
@@ -11,7 +9,6 @@ import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.util.Log;
 
 /**
@@ -34,17 +31,17 @@ public class CompassRecorder extends SensorRecorder implements SensorEventListen
 	}
 
 	@Override
-	public void startRecording(Date startTime, File folderName) {
-		super.startRecording(startTime, new File(folderName + File.separator + "Compass.txt"));
+	public void startRecording(SessionClock clock, File folderName) {
+		super.startRecording(clock, new File(folderName + File.separator + "Compass.txt"));
 		// Start listening
-		sensorManager.registerListener(this, compassSensor, SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(this, compassSensor, EventType.Compass);
 	}
 
 	@Override
-	public void startRecording(Date startTime, MotionEventListener listener) {
-		super.startRecording(startTime, listener);
+	public void startRecording(SessionClock clock, MotionEventListener listener) {
+		super.startRecording(clock, listener);
 		// Start listening
-		sensorManager.registerListener(this, compassSensor, SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(this, compassSensor, EventType.Compass);
 	}
 
 	@Override
@@ -70,11 +67,9 @@ public class CompassRecorder extends SensorRecorder implements SensorEventListen
 			return;
 
 		if (recordingToFile) {
-			writeToSDCard(event);
+			writeToSDCard(event, EventType.Compass);
 		} else {
-			for (MotionEventListener listener : listeners) {
-				listener.onMotionEventUpdate(new ImuEvent(event, EventType.Compass, elapsedTimeSinceStart()));
-			}
+			notifyListeners(event, EventType.Compass);
 		}
 	}
 }
@@ -2,16 +2,17 @@ package org.hitlabnz.motionrecorder.recorders;
 
 import java.io.File;
 import java.io.IOException;
-import java.util.Date;
 
 import org.hitlabnz.motionrecorder.events.GpsEvent;
 import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
 import org.hitlabnz.motionrecorder.events.MotionEventListener;
 
+import android.annotation.SuppressLint;
 import android.app.Activity;
 import android.content.Context;
 import android.content.IntentSender;
 import android.location.Location;
+import android.os.Build;
 import android.os.Bundle;
 import android.util.Log;
 
@@ -61,6 +62,12 @@ public class GPSRecorder extends SensorRecorder implements GooglePlayServicesCli
 	 */
 	private Context context;
 
+	/**
+	 * Buffer for the values of a location that are written into the binary session (latitude, longitude, altitude,
+	 * accuracy)
+	 */
+	private final double[] locationValues = new double[4];
+
 	@Override
 	public void initialize(Context context) {
 		super.initialize(context);
@@ -72,8 +79,8 @@ public class GPSRecorder extends SensorRecorder implements GooglePlayServicesCli
 	}
 
 	@Override
-	public void startRecording(Date startTime, File folderName) {
-		super.startRecording(startTime, new File(folderName + File.separator + "GPS.txt"));
+	public void startRecording(SessionClock clock, File folderName) {
+		super.startRecording(clock, new File(folderName + File.separator + "GPS.txt"));
 
 		// Create the LocationRequest object
 		LocationRequest locationRequest = LocationRequest.create();
@@ -84,12 +91,12 @@ public class GPSRecorder extends SensorRecorder implements GooglePlayServicesCli
 		// Set the fastest update interval to 1 second
 		locationRequest.setFastestInterval(FASTEST_INTERVAL);
 		// Start receiving location updates
-		locationClient.requestLocationUpdates(locationRequest, this);
+		requestLocationUpdates(locationRequest);
 	}
 
 	@Override
-	public void startRecording(Date startTime, MotionEventListener listener) {
-		super.startRecording(startTime, listener);
+	public void startRecording(SessionClock clock, MotionEventListener listener) {
+		super.startRecording(clock, listener);
 		// Start listening
 		// Create the LocationRequest object
 		LocationRequest locationRequest = LocationRequest.create();
@@ -100,7 +107,18 @@ public class GPSRecorder extends SensorRecorder implements GooglePlayServicesCli
 		// Set the fastest update interval to 1 second
 		locationRequest.setFastestInterval(FASTEST_INTERVAL);
 		// Start receiving location updates
-		locationClient.requestLocationUpdates(locationRequest, this);
+		requestLocationUpdates(locationRequest);
+	}
+
+	/**
+	 * Requests the location updates on the thread of the handler, or on the main thread if no handler was set
+	 */
+	private void requestLocationUpdates(LocationRequest locationRequest) {
+		if (handler != null) {
+			locationClient.requestLocationUpdates(locationRequest, this, handler.getLooper());
+		} else {
+			locationClient.requestLocationUpdates(locationRequest, this);
+		}
 	}
 
 	@Override
@@ -156,22 +174,43 @@ public class GPSRecorder extends SensorRecorder implements GooglePlayServicesCli
 		if (!recording)
 			return;
 
-		if (recordingToFile) {
-			CharSequence currentTimeStamp = formatter.format(new Date((new Date().getTime() - recordingStartDate
-					.getTime())));
-			String msg = currentTimeStamp + Double.toString(location.getLatitude()) + ","
-					+ Double.toString(location.getLongitude()) + "\n";
+		long sessionTime = sessionTimeOf(location);
+		if (recordingToFile && sessionWriter != null) {
+			locationValues[0] = location.getLatitude();
+			locationValues[1] = location.getLongitude();
+			locationValues[2] = location.getAltitude();
+			locationValues[3] = location.getAccuracy();
+			try {
+				sessionWriter.writeDoubles(EventType.Gps, sessionTime, 0, locationValues, locationValues.length);
+			} catch (IOException e) {
+				Log.e(TAG, "Could not write GPS data", e);
+			}
+		} else if (recordingToFile) {
+			formatter.reset().appendTimestamp(sessionTime / MS2NS).append(location.getLatitude()).append(',')
+					.append(location.getLongitude()).append('\n');
 
 			// Write new location to SD-card
 			try {
-				writer.write(msg);
+				formatter.writeTo(writer);
 			} catch (IOException e) {
 				Log.e(TAG, "Could not write GPS data", e);
 			}
 		} else {
 			for (MotionEventListener listener : listeners) {
-				listener.onMotionEventUpdate(new GpsEvent(location, EventType.Gps, elapsedTimeSinceStart()));
+				listener.onMotionEventUpdate(GpsEvent.fromNanos(location, EventType.Gps, sessionTime));
 			}
 		}
 	}
+
+	/**
+	 * Returns the time in nanoseconds since the recording was started at which the location fix was obtained. Before
+	 * API 17 locations carry no elapsed realtime, so the time of the callback is used instead.
+	 */
+	@SuppressLint("NewApi")
+	private long sessionTimeOf(Location location) {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1 && location.getElapsedRealtimeNanos() != 0) {
+			return clock.toSessionNanos(location.getElapsedRealtimeNanos());
+		}
+		return elapsedTimeSinceStart();
+	}
 }
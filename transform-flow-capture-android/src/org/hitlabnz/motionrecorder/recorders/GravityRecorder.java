@@ -1,9 +1,7 @@
 package org.hitlabnz.motionrecorder.recorders;
 
 import java.io.File;
-import java.util.Date;
 
-import org.hitlabnz.motionrecorder.events.ImuEvent;
 import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
 import org.hitlabnz.motionrecorder.events.MotionEventListener;
 
@@ -11,7 +9,6 @@ import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.util.Log;
 
 /**
@@ -34,17 +31,17 @@ public class GravityRecorder extends SensorRecorder implements SensorEventListen
 	}
 
 	@Override
-	public void startRecording(Date startTime, File folderName) {
-		super.startRecording(startTime, new File(folderName + File.separator + "Gravity.txt"));
+	public void startRecording(SessionClock clock, File folderName) {
+		super.startRecording(clock, new File(folderName + File.separator + "Gravity.txt"));
 		// Start listening
-		sensorManager.registerListener(this, gravitySensor, SensorManager.SENSOR_DELAY_NORMAL);
+		registerSensor(this, gravitySensor, EventType.Gravity);
 	}
 
 	@Override
-	public void startRecording(Date startTime, MotionEventListener listener) {
-		super.startRecording(startTime, listener);
+	public void startRecording(SessionClock clock, MotionEventListener listener) {
+		super.startRecording(clock, listener);
 		// Start listening
-		sensorManager.registerListener(this, gravitySensor, SensorManager.SENSOR_DELAY_NORMAL);
+		registerSensor(this, gravitySensor, EventType.Gravity);
 	}
 
 	@Override
@@ -70,11 +67,9 @@ public class GravityRecorder extends SensorRecorder implements SensorEventListen
 			return;
 
 		if (recordingToFile) {
-			writeToSDCard(event);
+			writeToSDCard(event, EventType.Gravity);
 		} else {
-			for (MotionEventListener listener : listeners) {
-				listener.onMotionEventUpdate(new ImuEvent(event, EventType.Gravity, elapsedTimeSinceStart()));
-			}
+			notifyListeners(event, EventType.Gravity);
 		}
 	}
 }
@@ -1,9 +1,7 @@
 package org.hitlabnz.motionrecorder.recorders;
 
 import java.io.File;
-import java.util.Date;
 
-import org.hitlabnz.motionrecorder.events.ImuEvent;
 import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
 import org.hitlabnz.motionrecorder.events.MotionEventListener;
 
@@ -11,7 +9,6 @@ import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.util.Log;
 
 /**
@@ -35,17 +32,17 @@ public class LinearAccelerometerRecorder extends SensorRecorder implements Senso
 	}
 
 	@Override
-	public void startRecording(Date startTime, File folderName) {
-		super.startRecording(startTime, new File(folderName + File.separator + "LinearAccelerometer.txt"));
+	public void startRecording(SessionClock clock, File folderName) {
+		super.startRecording(clock, new File(folderName + File.separator + "LinearAccelerometer.txt"));
 		// Start listening
-		sensorManager.registerListener(this, linearAccelerometerSensor, SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(this, linearAccelerometerSensor, EventType.LinearAccelerometer);
 	}
 
 	@Override
-	public void startRecording(Date startTime, MotionEventListener listener) {
-		super.startRecording(startTime, listener);
+	public void startRecording(SessionClock clock, MotionEventListener listener) {
+		super.startRecording(clock, listener);
 		// Start listening
-		sensorManager.registerListener(this, linearAccelerometerSensor, SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(this, linearAccelerometerSensor, EventType.LinearAccelerometer);
 	}
 
 	@Override
@@ -71,11 +68,9 @@ public class LinearAccelerometerRecorder extends SensorRecorder implements Senso
 			return;
 
 		if (recordingToFile) {
-			writeToSDCard(event);
+			writeToSDCard(event, EventType.LinearAccelerometer);
 		} else {
-			for (MotionEventListener listener : listeners) {
-				listener.onMotionEventUpdate(new ImuEvent(event, EventType.LinearAccelerometer, elapsedTimeSinceStart()));
-			}
+			notifyListeners(event, EventType.LinearAccelerometer);
 		}
 	}
 }
@@ -1,9 +1,7 @@
 package org.hitlabnz.motionrecorder.recorders;
 
 import java.io.File;
-import java.util.Date;
 
-import org.hitlabnz.motionrecorder.events.ImuEvent;
 import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
 import org.hitlabnz.motionrecorder.events.MotionEventListener;
 
@@ -11,7 +9,6 @@ import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.util.Log;
 
 /**
@@ -38,17 +35,17 @@ public class OrientationRecorder extends SensorRecorder implements SensorEventLi
 	}
 
 	@Override
-	public void startRecording(Date startTime, File folderName) {
-		super.startRecording(startTime, new File(folderName + File.separator + "Orientation.txt"));
+	public void startRecording(SessionClock clock, File folderName) {
+		super.startRecording(clock, new File(folderName + File.separator + "Orientation.txt"));
 		// Start listening
-		sensorManager.registerListener(this, orientationSensor, SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(this, orientationSensor, EventType.Orientation);
 	}
 
 	@Override
-	public void startRecording(Date startTime, MotionEventListener listener) {
-		super.startRecording(startTime, listener);
+	public void startRecording(SessionClock clock, MotionEventListener listener) {
+		super.startRecording(clock, listener);
 		// Start listening
-		sensorManager.registerListener(this, orientationSensor, SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(this, orientationSensor, EventType.Orientation);
 	}
 
 	@Override
@@ -74,11 +71,9 @@ public class OrientationRecorder extends SensorRecorder implements SensorEventLi
 			return;
 
 		if (recordingToFile) {
-			writeToSDCard(event);
+			writeToSDCard(event, EventType.Orientation);
 		} else {
-			for (MotionEventListener listener : listeners) {
-				listener.onMotionEventUpdate(new ImuEvent(event, EventType.Orientation, elapsedTimeSinceStart()));
-			}
+			notifyListeners(event, EventType.Orientation);
 		}
 	}
 }
@@ -4,26 +4,42 @@
 package org.hitlabnz.motionrecorder.recorders;
 
 import java.io.File;
-import java.io.FileOutputStream;
 import java.io.IOException;
-import java.util.Date;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import org.hitlabnz.motionrecorder.OpenCVWorker;
+import org.hitlabnz.motionrecorder.camera.CaptureSchedule;
+import org.hitlabnz.motionrecorder.camera.FeatureExtractor;
+import org.hitlabnz.motionrecorder.camera.FeatureType;
+import org.hitlabnz.motionrecorder.camera.Frame;
+import org.hitlabnz.motionrecorder.camera.FrameEncoder;
+import org.hitlabnz.motionrecorder.camera.FrameEncoder.BackpressurePolicy;
+import org.hitlabnz.motionrecorder.camera.FrameTransform;
+import org.hitlabnz.motionrecorder.camera.ImageFormat;
+import org.hitlabnz.motionrecorder.camera.MediaCodecVideoEncoder;
+import org.hitlabnz.motionrecorder.camera.MjpegVideoEncoder;
+import org.hitlabnz.motionrecorder.camera.ResolutionPolicy;
+import org.hitlabnz.motionrecorder.camera.VideoEncoder;
+import org.hitlabnz.motionrecorder.camera.VideoTrack;
 import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
 import org.hitlabnz.motionrecorder.events.MotionEventListener;
 import org.hitlabnz.motionrecorder.events.PictureEvent;
+import org.hitlabnz.motionrecorder.session.SessionFormat;
+import org.opencv.core.Rect;
 
 import android.content.Context;
-import android.graphics.Bitmap;
 import android.util.Log;
 
 /**
- * Class for recording the video from the camera in separate image-files instead of in one video.
+ * Class for recording the video from the camera in separate image-files, or in one video in video mode (see
+ * {@link #setVideoMode(boolean, int)}).
  * 
  * @author Alexander Pacha
  * 
  */
-public class PictureRecorder extends SensorRecorder implements OpenCVWorker.ResultCallback {
+public class PictureRecorder extends SensorRecorder implements OpenCVWorker.ResultCallback,
+		FrameEncoder.VideoFrameListener {
 	/**
 	 * Tag for logging
 	 */
@@ -33,7 +49,273 @@ public class PictureRecorder extends SensorRecorder implements OpenCVWorker.Resu
 	private OpenCVWorker mWorker;
 	int pictureCounter = 0;
 
-	String folderPath;
+	/**
+	 * Default number of frames that may wait for an encoder thread
+	 */
+	public static final int DEFAULT_ENCODER_QUEUE_CAPACITY = 4;
+
+	/**
+	 * Default quality of the pictures
+	 */
+	public static final int DEFAULT_IMAGE_QUALITY = 100;
+
+	/**
+	 * Value of a frame drop record: the frame was dropped by the camera, because all frames of its pool were in use
+	 */
+	public static final int DROPPED_BY_CAMERA = 0;
+
+	/**
+	 * Value of a frame drop record: the picture was dropped, because the queue of the encoder was full or the video
+	 * encoder could not take the frame. If only features are recorded, the features were dropped, because the queue
+	 * of the feature extractor was full.
+	 */
+	public static final int DROPPED_BY_ENCODER = 1;
+
+	/**
+	 * Time in milliseconds after which a warning is logged, if the camera thread of a stopped recording has not
+	 * terminated yet
+	 */
+	private static final long CAMERA_STOP_TIMEOUT_MILLIS = 2000;
+
+	/**
+	 * Counted down when the recording was stopped and all its pictures, features and records were written
+	 */
+	private volatile CountDownLatch stopped = new CountDownLatch(0);
+
+	/**
+	 * Guards the text writer and the values of the records that are written from the camera thread and, in video
+	 * mode, from the encoder thread
+	 */
+	private final Object recordLock = new Object();
+
+	private int encoderThreadCount = FrameEncoder.defaultThreadCount();
+
+	private int encoderQueueCapacity = DEFAULT_ENCODER_QUEUE_CAPACITY;
+
+	private BackpressurePolicy backpressurePolicy = BackpressurePolicy.DROP;
+
+	private ImageFormat imageFormat = ImageFormat.JPEG;
+
+	private int imageQuality = DEFAULT_IMAGE_QUALITY;
+
+	/**
+	 * Whether the pictures are written into a single frame container instead of one file each
+	 */
+	private boolean pictureContainer = true;
+
+	/**
+	 * Whether the frames are encoded into a video instead of pictures
+	 */
+	private boolean videoMode;
+
+	private int keyFrameIntervalSeconds = VideoTrack.DEFAULT_KEY_FRAME_INTERVAL_SECONDS;
+
+	/**
+	 * The presentation timestamp of the current frame, as value of its picture record in video mode
+	 */
+	private final double[] presentationTime = new double[1];
+
+	/**
+	 * The reason of the current frame drop, as value of its frame drop record
+	 */
+	private final float[] dropReason = new float[1];
+
+	/**
+	 * The format of the pictures of the recording, as value of their picture records (see
+	 * {@link SessionFormat#PICTURE_JPEG})
+	 */
+	private final float[] pictureFormat = new float[1];
+
+	/**
+	 * Value of the picture record of a frame whose features were recorded, but not its picture
+	 */
+	private final float[] noPictureFormat = { SessionFormat.PICTURE_NONE };
+
+	/**
+	 * Memory budget of the adaptive frame pool of the camera, or 0 for a fixed pool
+	 */
+	private long framePoolMemoryBudget;
+
+	/**
+	 * Decides which frames of the camera are captured
+	 */
+	private CaptureSchedule captureSchedule;
+
+	private ResolutionPolicy resolutionPolicy = ResolutionPolicy.DEFAULT;
+
+	/**
+	 * Region of the camera image that is recorded, or null for the whole image
+	 */
+	private Rect regionOfInterest;
+
+	/**
+	 * Number of times the recorded frames are halved in width and height
+	 */
+	private int pyramidLevels;
+
+	/**
+	 * Whether only the luminance of the frames is recorded
+	 */
+	private boolean grayscale;
+
+	/**
+	 * The features that are extracted from the frames, or null if no features are extracted
+	 */
+	private FeatureType featureType;
+
+	private int maxKeypoints = FeatureExtractor.DEFAULT_MAX_KEYPOINTS;
+
+	/**
+	 * Whether the pictures are stored if features are extracted
+	 */
+	private boolean storePictures = true;
+
+	/**
+	 * Extracts the features of the pictures while recording to file, null if no features are extracted
+	 */
+	private FeatureExtractor featureExtractor;
+
+	/**
+	 * Encodes the pictures while recording to file
+	 */
+	private FrameEncoder encoder;
+
+	/**
+	 * Sets how the pictures are encoded. Takes effect with the next recording.
+	 * 
+	 * @param threadCount Number of threads that encode pictures in parallel
+	 * @param queueCapacity Maximum number of pictures that wait for an encoder thread
+	 * @param policy Whether pictures are dropped or the camera waits, if the encoder threads can not keep up
+	 */
+	public void setEncoderConfiguration(int threadCount, int queueCapacity, BackpressurePolicy policy) {
+		encoderThreadCount = threadCount;
+		encoderQueueCapacity = queueCapacity;
+		backpressurePolicy = policy;
+	}
+
+	/**
+	 * Sets the format of the pictures. Takes effect with the next recording.
+	 * 
+	 * @param format The format of the pictures
+	 * @param quality The quality from 0 to 100, see {@link ImageFormat}
+	 */
+	public void setImageFormat(ImageFormat format, int quality) {
+		imageFormat = format;
+		imageQuality = quality;
+	}
+
+	/**
+	 * Selects whether the pictures are appended to a single frame container ("Pictures.tfc", the default) or written
+	 * to one file per picture. A container can be exported to single files with the FrameContainerExporter. Takes
+	 * effect with the next recording.
+	 */
+	public void setPictureContainer(boolean pictureContainer) {
+		this.pictureContainer = pictureContainer;
+	}
+
+	/**
+	 * Selects whether the frames are encoded into a video ("Video.mp4") instead of pictures. The hardware H.264
+	 * encoder is used where available (Android 4.3), otherwise the frames are stored as Motion-JPEG in a frame
+	 * container ("Video.tfc"). The presentation timestamp of each frame is stored in its picture record. Takes effect
+	 * with the next recording.
+	 * 
+	 * @param videoMode Whether to record a video
+	 * @param keyFrameIntervalSeconds Time in seconds between two key frames of the video
+	 */
+	public void setVideoMode(boolean videoMode, int keyFrameIntervalSeconds) {
+		this.videoMode = videoMode;
+		this.keyFrameIntervalSeconds = keyFrameIntervalSeconds;
+	}
+
+	/**
+	 * Lets the frame pool of the camera adapt to the time the encoder needs, within the given memory budget (see
+	 * {@link OpenCVWorker#setAdaptivePool(long)}). Takes effect with the next recording.
+	 * 
+	 * @param memoryBudgetBytes Maximum memory in bytes for the frames of the camera, or 0 for a fixed pool
+	 */
+	public void setAdaptiveFramePool(long memoryBudgetBytes) {
+		framePoolMemoryBudget = memoryBudgetBytes;
+	}
+
+	/**
+	 * Sets which frames of the camera are captured, e.g. at a lower frame rate or only while the device moves. By
+	 * default every frame is captured. Takes effect with the next recording.
+	 */
+	public void setCaptureSchedule(CaptureSchedule captureSchedule) {
+		this.captureSchedule = captureSchedule;
+	}
+
+	/**
+	 * Sets how the resolution of the camera is selected. Takes effect with the next recording.
+	 */
+	public void setResolutionPolicy(ResolutionPolicy resolutionPolicy) {
+		this.resolutionPolicy = resolutionPolicy;
+	}
+
+	/**
+	 * Crops the frames to a region of the camera image and downscales them, before they are recorded or passed to
+	 * the listeners (see {@link FrameTransform}). Takes effect with the next recording.
+	 * 
+	 * @param regionOfInterest Region of the camera image in pixels, or null for the whole image
+	 * @param pyramidLevels Number of times width and height are halved, 0 to keep the resolution
+	 */
+	public void setFrameTransform(Rect regionOfInterest, int pyramidLevels) {
+		this.regionOfInterest = regionOfInterest;
+		this.pyramidLevels = pyramidLevels;
+	}
+
+	/**
+	 * Selects whether the frames are recorded in grayscale (see {@link OpenCVWorker#setGrayscale(boolean)}), e.g. for
+	 * feature tracking. JPEG, PNG and raw pictures are stored with a single 8 bit channel. Takes effect with the next
+	 * recording.
+	 */
+	public void setGrayscale(boolean grayscale) {
+		this.grayscale = grayscale;
+	}
+
+	/**
+	 * Extracts keypoints and descriptors from the frames while recording to file and writes them to "Features.tfc"
+	 * (see {@link FeatureExtractor}), with the number and timestamp of their picture. The extraction uses as many
+	 * threads and the same queue configuration as the encoder. Takes effect with the next recording.
+	 * 
+	 * @param featureType The detector and descriptor, or null to extract no features
+	 * @param maxKeypoints Maximum number of keypoints per frame
+	 * @param storePictures Whether the pictures are stored as well. Without them, a session only needs a fraction of
+	 *            the storage.
+	 */
+	public void setFeatureExtraction(FeatureType featureType, int maxKeypoints, boolean storePictures) {
+		this.featureType = featureType;
+		this.maxKeypoints = maxKeypoints;
+		this.storePictures = storePictures;
+	}
+
+	/**
+	 * Returns a line that summarises the pictures and features of the current or last recording, or null if nothing
+	 * was recorded to file
+	 */
+	public String getSummary() {
+		return summarise(encoder, featureExtractor, mWorker);
+	}
+
+	private static String summarise(FrameEncoder encoder, FeatureExtractor featureExtractor, OpenCVWorker worker) {
+		if (encoder == null && featureExtractor == null) {
+			return null;
+		}
+		String summary = encoder != null ? encoder.getSummary() : "no pictures";
+		if (featureExtractor != null) {
+			summary += "; " + featureExtractor.getSummary();
+		}
+		return summary + "; camera: " + worker.getGrabbedCount() + " frames grabbed, " + worker.getDeliveredCount()
+				+ " delivered, " + worker.getDroppedCount() + " dropped, " + worker.getSkippedCount() + " skipped";
+	}
+
+	/**
+	 * Returns the number of pictures that were dropped in the current or last recording, because the encoder threads
+	 * could not keep up
+	 */
+	public long getDroppedPictureCount() {
+		return encoder != null ? encoder.getDroppedCount() : 0;
+	}
 
 	/* (non-Javadoc)
 	 * @see org.hitlabnz.motionrecorder.recorders.SensorRecorder#initialize(android.content.Context) */
@@ -43,37 +325,169 @@ public class PictureRecorder extends SensorRecorder implements OpenCVWorker.Resu
 	}
 
 	/* (non-Javadoc)
-	 * @see org.hitlabnz.motionrecorder.recorders.SensorRecorder#startRecording(java.util.Date, java.io.File) */
+	 * @see org.hitlabnz.motionrecorder.recorders.SensorRecorder#startRecording(org.hitlabnz.motionrecorder.recorders.SessionClock, java.io.File) */
 	@Override
-	public void startRecording(Date startTime, File folderName) {
-		super.startRecording(startTime, new File(folderName + File.separator + "Pictures.txt"));
+	public void startRecording(SessionClock clock, File folderName) {
+		super.startRecording(clock, new File(folderName + File.separator + "Pictures.txt"));
 		// Save the date when recording has started
 		pictureCounter = 0;
-		folderPath = folderName.getAbsolutePath();
-		mWorker = new OpenCVWorker(OpenCVWorker.FIRST_CAMERA);
-		mWorker.addResultCallback(this);
-		new Thread(mWorker).start();
+		encoder = null;
+		featureExtractor = null;
+		// The camera needs a frame for each queued picture, each worker thread and the one it is grabbing into
+		int framePoolSize = 1;
+		if (featureType != null) {
+			try {
+				featureExtractor = new FeatureExtractor(folderName, featureType, maxKeypoints, encoderThreadCount,
+						encoderQueueCapacity, backpressurePolicy);
+				framePoolSize += encoderQueueCapacity + encoderThreadCount;
+			} catch (IOException e) {
+				Log.e(TAG, "Could not create the feature file, no features are recorded", e);
+			}
+		}
+		if (featureType == null || storePictures) {
+			framePoolSize += startEncoder(folderName);
+		}
+		if (encoder == null && featureExtractor == null) {
+			return;
+		}
+		pictureFormat[0] = sessionPictureFormat();
+		mWorker = new OpenCVWorker(OpenCVWorker.FIRST_CAMERA, framePoolSize);
+		mWorker.setAdaptivePool(framePoolMemoryBudget);
+		startWorker();
+	}
+
+	/**
+	 * Returns the format of the pictures for the picture records of the binary session
+	 */
+	private int sessionPictureFormat() {
+		if (encoder == null) {
+			return SessionFormat.PICTURE_NONE;
+		}
+		switch (imageFormat) {
+		case PNG:
+			return SessionFormat.PICTURE_PNG;
+		case WEBP:
+			return SessionFormat.PICTURE_WEBP;
+		case RAW:
+			return SessionFormat.PICTURE_RAW;
+		default:
+			return SessionFormat.PICTURE_JPEG;
+		}
+	}
+
+	/**
+	 * Creates the encoder for the pictures or the video
+	 * 
+	 * @return The number of frames that the encoder can hold, or 0 if it could not be created
+	 */
+	private int startEncoder(File folderName) {
+		int threadCount;
+		if (videoMode) {
+			VideoEncoder videoEncoder = MediaCodecVideoEncoder.isAvailable() ? new MediaCodecVideoEncoder()
+					: new MjpegVideoEncoder();
+			encoder = new FrameEncoder(encoderQueueCapacity, backpressurePolicy, new VideoTrack(videoEncoder,
+					folderName, keyFrameIntervalSeconds), this);
+			threadCount = 1;
+		} else {
+			try {
+				encoder = new FrameEncoder(folderName, encoderThreadCount, encoderQueueCapacity, backpressurePolicy,
+						imageFormat, imageQuality, pictureContainer);
+			} catch (IOException e) {
+				Log.e(TAG, "Could not create the picture files, no pictures are recorded", e);
+				encoder = null;
+				return 0;
+			}
+			threadCount = encoderThreadCount;
+		}
+		return encoderQueueCapacity + threadCount;
 	}
 
 	@Override
-	public void startRecording(Date startTime, MotionEventListener listener) {
-		super.startRecording(startTime, listener);
+	public void startRecording(SessionClock clock, MotionEventListener listener) {
+		super.startRecording(clock, listener);
 		// Save the date when recording has started
 		pictureCounter = 0;
+		encoder = null;
+		featureExtractor = null;
 		mWorker = new OpenCVWorker(OpenCVWorker.FIRST_CAMERA);
+		startWorker();
+	}
+
+	private void startWorker() {
+		if (captureSchedule != null) {
+			// A schedule keeps state, so every recording starts with a fresh copy
+			mWorker.setCaptureSchedule(captureSchedule.copy());
+		}
+		mWorker.setResolutionPolicy(resolutionPolicy);
+		mWorker.setGrayscale(grayscale);
+		mWorker.setFrameTransform(new FrameTransform(regionOfInterest, pyramidLevels));
 		mWorker.addResultCallback(this);
+		stopped = new CountDownLatch(1);
 		new Thread(mWorker).start();
 	}
 
-	/* (non-Javadoc)
-	 * @see org.hitlabnz.motionrecorder.recorders.SensorRecorder#stopRecording() */
+	/**
+	 * Stops the camera and returns without waiting for the pictures that are still queued: a background thread waits
+	 * until the camera thread has terminated, then writes the queued pictures and features, closes the text file and
+	 * logs the summary of the recording. Use {@link #awaitStop(long)} to wait until it is done, e.g. before the
+	 * session file is closed, because the picture records of a video are written by the encoder thread.
+	 * 
+	 * @see org.hitlabnz.motionrecorder.recorders.SensorRecorder#stopRecording()
+	 */
 	@Override
 	public void stopRecording() {
-		if (mWorker != null) {
-			mWorker.stopProcessing();
-			mWorker.removeResultCallback(this);
+		recording = false;
+		final OpenCVWorker worker = mWorker;
+		if (worker != null) {
+			worker.stopProcessing();
+			// Returns once a frame that is passed to this recorder right now was queued, so the camera thread does not
+			// use the writer or the encoder afterwards
+			worker.removeResultCallback(this);
+		}
+
+		final FrameEncoder stoppedEncoder = encoder;
+		final FeatureExtractor stoppedFeatureExtractor = featureExtractor;
+		final CountDownLatch recordingStopped = stopped;
+		if (worker == null || (stoppedEncoder == null && stoppedFeatureExtractor == null)) {
+			super.stopRecording();
+			recordingStopped.countDown();
+			return;
+		}
+		new Thread(new Runnable() {
+			@Override
+			public void run() {
+				// The encoder is only closed once the camera thread has terminated, so no frame can be queued after
+				// the encoder took its last frame
+				while (!worker.awaitStop(CAMERA_STOP_TIMEOUT_MILLIS)) {
+					Log.w(TAG, "Camera thread did not stop in time, still waiting");
+				}
+				if (stoppedEncoder != null) {
+					// Write the pictures that are still queued
+					stoppedEncoder.close();
+				}
+				if (stoppedFeatureExtractor != null) {
+					stoppedFeatureExtractor.close();
+				}
+				PictureRecorder.super.stopRecording();
+				Log.i(TAG, "Pictures: " + summarise(stoppedEncoder, stoppedFeatureExtractor, worker));
+				recordingStopped.countDown();
+			}
+		}, "PictureRecorderShutdown").start();
+	}
+
+	/**
+	 * Waits until the last recording was stopped and all its pictures, features and records were written
+	 * 
+	 * @param timeoutMillis Maximum time to wait in milliseconds
+	 * @return Whether everything was written
+	 */
+	public boolean awaitStop(long timeoutMillis) {
+		try {
+			return stopped.await(timeoutMillis, TimeUnit.MILLISECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
 		}
-		super.stopRecording();
 	}
 
 	/* (non-Javadoc)
@@ -84,42 +498,116 @@ public class PictureRecorder extends SensorRecorder implements OpenCVWorker.Resu
 	}
 
 	@Override
-	public void onResultMatrixReady(Bitmap resultBitmap) {
+	public void onFrameReady(Frame frame) {
 		if (!recording)
 			return;
 
+		long sessionTime = clock.toSessionNanos(frame.timestampNanos);
 		if (recordingToFile) {
-
-			CharSequence currentTimeStamp = formatter.format(new Date((new Date().getTime() - recordingStartDate
-					.getTime())));
-			String msg = currentTimeStamp + String.valueOf(pictureCounter) + ".jpg" + "\n";
-
-			// Write current timestamp to SD-card
-			try {
-				writer.write(msg);
-			} catch (IOException e) {
-				Log.e(TAG, "Could not write picture capture timestamp data", e);
+			// Queue the picture for the encoder and feature threads. The number is assigned here, so the pictures are
+			// numbered in the order they were grabbed and a dropped picture leaves no gap.
+			boolean encoded = encoder != null && encoder.submit(frame, pictureCounter, sessionTime);
+			boolean extracted = featureExtractor != null
+					&& featureExtractor.submit(frame, pictureCounter, sessionTime);
+			if (encoder != null ? !encoded : !extracted) {
+				// The picture, or without pictures the features, will be missing
+				writeFrameDrop(sessionTime, DROPPED_BY_ENCODER);
+			}
+			if (!encoded && !extracted) {
+				return;
 			}
 
-			// Store to sd-card
-			File file = new File(folderPath, pictureCounter + ".jpg");
-			pictureCounter++;
-			FileOutputStream fOut;
-			try {
-				fOut = new FileOutputStream(file);
-				resultBitmap.compress(Bitmap.CompressFormat.JPEG, 100, fOut);
-				fOut.flush();
-				fOut.close();
-			} catch (Exception e) {
-				Log.e(TAG, "Error when writing image to sd-card", e);
+			// The record of a video frame is written by the encoder thread, once the frame is in the video (see
+			// onVideoFrameWritten), so it never refers to a frame that the video encoder skipped
+			if (!videoMode || !encoded) {
+				writePictureRecord(sessionTime, pictureCounter, encoded);
 			}
-			// Release bitmap
-			mWorker.releaseResultBitmap(resultBitmap);
+			pictureCounter++;
 		} else {
+			PictureEvent event = PictureEvent.fromNanos(frame, EventType.Picture, sessionTime);
 			for (MotionEventListener listener : listeners) {
-				listener.onMotionEventUpdate(new PictureEvent(resultBitmap, EventType.Picture, elapsedTimeSinceStart()));
+				listener.onMotionEventUpdate(event);
+			}
+		}
+	}
+
+	@Override
+	public void onFrameDropped(long timestampNanos) {
+		if (recording && recordingToFile) {
+			writeFrameDrop(clock.toSessionNanos(timestampNanos), DROPPED_BY_CAMERA);
+		}
+	}
+
+	@Override
+	public void onVideoFrameWritten(int pictureNumber, long timestampNanos, long presentationTimeUs) {
+		try {
+			synchronized (recordLock) {
+				if (sessionWriter != null) {
+					presentationTime[0] = presentationTimeUs;
+					sessionWriter.writeDoubles(EventType.Picture, timestampNanos, pictureNumber, presentationTime, 1);
+				} else {
+					formatter.reset().appendTimestamp(timestampNanos / MS2NS).append(pictureNumber).append(',')
+							.append(presentationTimeUs).append('\n');
+					formatter.writeTo(writer);
+				}
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "Could not write picture capture timestamp data", e);
+		}
+	}
+
+	@Override
+	public void onVideoFrameSkipped(int pictureNumber, long timestampNanos) {
+		// The number was given to the frame already, so it gets a record without a picture, like a frame of which
+		// only the features were recorded
+		writeFrameDrop(timestampNanos, DROPPED_BY_ENCODER, pictureNumber);
+		writePictureRecord(timestampNanos, pictureNumber, false);
+	}
+
+	/**
+	 * Writes the record of a picture that is not a frame of a video
+	 * 
+	 * @param pictureStored Whether the picture is stored, otherwise the record refers to no file
+	 */
+	private void writePictureRecord(long sessionTime, int pictureNumber, boolean pictureStored) {
+		try {
+			synchronized (recordLock) {
+				if (sessionWriter != null) {
+					sessionWriter.writeFloats(EventType.Picture, sessionTime, pictureNumber,
+							pictureStored ? pictureFormat : noPictureFormat, 1);
+				} else {
+					formatter.reset().appendTimestamp(sessionTime / MS2NS).append(pictureNumber);
+					if (pictureStored && imageFormat != ImageFormat.RAW) {
+						formatter.append(imageFormat.extension);
+					}
+					formatter.append('\n').writeTo(writer);
+				}
+			}
+		} catch (IOException e) {
+			Log.e(TAG, "Could not write picture capture timestamp data", e);
+		}
+	}
+
+	private void writeFrameDrop(long sessionTime, int reason) {
+		writeFrameDrop(sessionTime, reason, pictureCounter);
+	}
+
+	/**
+	 * Writes a record for a frame that was grabbed but not recorded, so the gaps between the pictures are known. The
+	 * record has the time of the frame, the number of the next picture as auxiliary value and the reason as value.
+	 * Frame drops are only recorded in the binary session, to keep the format of "Pictures.txt".
+	 */
+	private void writeFrameDrop(long sessionTime, int reason, int nextPictureNumber) {
+		if (sessionWriter == null) {
+			return;
+		}
+		try {
+			synchronized (recordLock) {
+				dropReason[0] = reason;
+				sessionWriter.writeFloats(EventType.FrameDrop, sessionTime, nextPictureNumber, dropReason, 1);
 			}
-			mWorker.releaseResultBitmap(resultBitmap);
+		} catch (IOException e) {
+			Log.e(TAG, "Could not write frame drop", e);
 		}
 	}
 }
@@ -0,0 +1,59 @@
+package org.hitlabnz.motionrecorder.recorders;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+/**
+ * A dedicated thread on which recorders receive and process their events instead of the UI thread (see
+ * {@link SensorRecorder#setHandler(Handler)}). Recorders that share a thread process their events in the order of
+ * arrival.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class RecorderThread {
+
+	private final HandlerThread thread;
+
+	private final Handler handler;
+
+	/**
+	 * Creates and starts a new thread.
+	 *
+	 * @param name The name of the thread
+	 * @param priority The Linux priority of the thread, one of the android.os.Process.THREAD_PRIORITY_* constants
+	 */
+	public RecorderThread(String name, int priority) {
+		thread = new HandlerThread(name, priority);
+		thread.start();
+		handler = new Handler(thread.getLooper());
+	}
+
+	/**
+	 * Returns the handler that runs on this thread
+	 */
+	public Handler getHandler() {
+		return handler;
+	}
+
+	/**
+	 * Stops the thread after it processed the events that are already queued and waits until it terminated.
+	 *
+	 * @param timeoutMillis Maximum time in milliseconds to wait for the thread
+	 */
+	public void quit(long timeoutMillis) {
+		final Looper looper = thread.getLooper();
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				looper.quit();
+			}
+		});
+		try {
+			thread.join(timeoutMillis);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
@@ -1,9 +1,7 @@
 package org.hitlabnz.motionrecorder.recorders;
 
 import java.io.File;
-import java.util.Date;
 
-import org.hitlabnz.motionrecorder.events.ImuEvent;
 import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
 import org.hitlabnz.motionrecorder.events.MotionEventListener;
 
@@ -11,7 +9,6 @@ import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
-import android.hardware.SensorManager;
 import android.util.Log;
 
 /**
@@ -34,17 +31,17 @@ public class RotationVectorRecorder extends SensorRecorder implements SensorEven
 	}
 
 	@Override
-	public void startRecording(Date startTime, File folderName) {
-		super.startRecording(startTime, new File(folderName + File.separator + "RotationVector.txt"));
+	public void startRecording(SessionClock clock, File folderName) {
+		super.startRecording(clock, new File(folderName + File.separator + "RotationVector.txt"));
 		// Start listening
-		sensorManager.registerListener(this, rotationVectorSensor, SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(this, rotationVectorSensor, EventType.RotationVector);
 	}
 
 	@Override
-	public void startRecording(Date startTime, MotionEventListener listener) {
-		super.startRecording(startTime, listener);
+	public void startRecording(SessionClock clock, MotionEventListener listener) {
+		super.startRecording(clock, listener);
 		// Start listening
-		sensorManager.registerListener(this, rotationVectorSensor, SensorManager.SENSOR_DELAY_GAME);
+		registerSensor(this, rotationVectorSensor, EventType.RotationVector);
 	}
 
 	@Override
@@ -70,13 +67,11 @@ public class RotationVectorRecorder extends SensorRecorder implements SensorEven
 			return;
 
 		if (recordingToFile) {
-			writeToSDCard(event);
+			writeToSDCard(event, EventType.RotationVector);
 		}
 
 		// Always notify listeners, because fused sensors listen as well
-		for (MotionEventListener listener : listeners) {
-			listener.onMotionEventUpdate(new ImuEvent(event, EventType.RotationVector, elapsedTimeSinceStart()));
-		}
+		notifyListeners(event, EventType.RotationVector);
 
 	}
 }
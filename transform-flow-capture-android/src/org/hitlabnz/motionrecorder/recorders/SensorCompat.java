@@ -0,0 +1,153 @@
+package org.hitlabnz.motionrecorder.recorders;
+
+import java.lang.reflect.Method;
+
+import android.hardware.Sensor;
+import android.hardware.SensorEventListener;
+import android.hardware.SensorManager;
+import android.os.Build;
+import android.os.Handler;
+import android.util.Log;
+
+/**
+ * Access to the sensor APIs of newer Android versions: the sensor batching API (hardware FIFO of the sensor hub) that
+ * was introduced with Android 4.4 and the maximum delay of a sensor from Android 5.0. The app is built against API 18,
+ * so the methods are looked up once by reflection and are unavailable on older devices.
+ *
+ * @author Alexander Pacha
+ *
+ */
+final class SensorCompat {
+
+	private static final String TAG = SensorCompat.class.getName();
+
+	/**
+	 * API level of Android 4.4 (KitKat) that introduced sensor batching
+	 */
+	private static final int KITKAT = 19;
+
+	/**
+	 * API level of Android 5.0 (Lollipop) that introduced Sensor.getMaxDelay()
+	 */
+	private static final int LOLLIPOP = 21;
+
+	private static final Method getFifoMaxEventCount;
+
+	private static final Method registerListener;
+
+	private static final Method registerListenerWithHandler;
+
+	private static final Method flush;
+
+	private static final Method getMaxDelay;
+
+	static {
+		Method fifoMethod = null;
+		Method registerMethod = null;
+		Method registerWithHandlerMethod = null;
+		Method flushMethod = null;
+		if (Build.VERSION.SDK_INT >= KITKAT) {
+			try {
+				fifoMethod = Sensor.class.getMethod("getFifoMaxEventCount");
+				registerMethod = SensorManager.class.getMethod("registerListener", SensorEventListener.class,
+						Sensor.class, int.class, int.class);
+				registerWithHandlerMethod = SensorManager.class.getMethod("registerListener",
+						SensorEventListener.class, Sensor.class, int.class, int.class, Handler.class);
+				flushMethod = SensorManager.class.getMethod("flush", SensorEventListener.class);
+			} catch (NoSuchMethodException e) {
+				Log.w(TAG, "Sensor batching is not available", e);
+				fifoMethod = null;
+				registerMethod = null;
+				registerWithHandlerMethod = null;
+				flushMethod = null;
+			}
+		}
+		getFifoMaxEventCount = fifoMethod;
+		registerListener = registerMethod;
+		registerListenerWithHandler = registerWithHandlerMethod;
+		flush = flushMethod;
+
+		Method maxDelayMethod = null;
+		if (Build.VERSION.SDK_INT >= LOLLIPOP) {
+			try {
+				maxDelayMethod = Sensor.class.getMethod("getMaxDelay");
+			} catch (NoSuchMethodException e) {
+				Log.w(TAG, "Sensor.getMaxDelay() is not available", e);
+			}
+		}
+		getMaxDelay = maxDelayMethod;
+	}
+
+	private SensorCompat() {
+	}
+
+	/**
+	 * Returns the maximum time in microseconds between two events of the given sensor, or 0 if it is unknown.
+	 */
+	static int getMaxDelay(Sensor sensor) {
+		if (getMaxDelay == null || sensor == null)
+			return 0;
+		try {
+			return (Integer) getMaxDelay.invoke(sensor);
+		} catch (Exception e) {
+			Log.w(TAG, "Could not query maximum delay of " + sensor.getName(), e);
+			return 0;
+		}
+	}
+
+	/**
+	 * Returns the number of events that the hardware FIFO can hold for the given sensor, or 0 if the sensor or the
+	 * device does not support batching.
+	 */
+	static int getFifoMaxEventCount(Sensor sensor) {
+		if (getFifoMaxEventCount == null || sensor == null)
+			return 0;
+		try {
+			return (Integer) getFifoMaxEventCount.invoke(sensor);
+		} catch (Exception e) {
+			Log.w(TAG, "Could not query FIFO size of " + sensor.getName(), e);
+			return 0;
+		}
+	}
+
+	/**
+	 * Registers the listener with a maximum report latency, so the sensor hub collects the events in its FIFO and
+	 * delivers them as a batch.
+	 *
+	 * @param handler The handler on whose thread the events are delivered, or null for the main thread
+	 * @return true, if the sensor was registered for batching. If false, the listener was not registered.
+	 */
+	static boolean registerListener(SensorManager sensorManager, SensorEventListener listener, Sensor sensor,
+			int samplingPeriodUs, int maxReportLatencyUs, Handler handler) {
+		if (registerListener == null || getFifoMaxEventCount(sensor) <= 0)
+			return false;
+		try {
+			if (handler != null) {
+				return (Boolean) registerListenerWithHandler.invoke(sensorManager, listener, sensor, samplingPeriodUs,
+						maxReportLatencyUs, handler);
+			}
+			return (Boolean) registerListener.invoke(sensorManager, listener, sensor, samplingPeriodUs,
+					maxReportLatencyUs);
+		} catch (Exception e) {
+			Log.w(TAG, "Could not register " + sensor.getName() + " for batching", e);
+			return false;
+		}
+	}
+
+	/**
+	 * Requests the sensor hub to deliver all events that are still in the FIFO of the sensors of the listener. The
+	 * events are delivered asynchronously through the listener.
+	 *
+	 * @return true, if the flush was requested
+	 */
+	static boolean flush(SensorManager sensorManager, SensorEventListener listener) {
+		if (flush == null)
+			return false;
+		try {
+			return (Boolean) flush.invoke(sensorManager, listener);
+		} catch (Exception e) {
+			Log.w(TAG, "Could not flush the sensor FIFO", e);
+			return false;
+		}
+	}
+}
@@ -0,0 +1,110 @@
+package org.hitlabnz.motionrecorder.recorders;
+
+import java.io.File;
+
+import org.hitlabnz.motionrecorder.events.FusionEvent;
+import org.hitlabnz.motionrecorder.events.ImuEvent;
+import org.hitlabnz.motionrecorder.events.MotionEvent;
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
+import org.hitlabnz.motionrecorder.events.MotionEventListener;
+import org.hitlabnz.motionrecorder.fusion.InterpolationWeighting;
+import org.hitlabnz.motionrecorder.fusion.OrientationFusionEngine;
+
+/**
+ * This recorder fuses the gyroscope and the rotation vector with an {@link OrientationFusionEngine} and outputs the
+ * fused orientation. It has to be registered as listener of the GyroscopeRecorder and the RotationVectorRecorder.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class SensorFusionRecorder extends SensorRecorder implements MotionEventListener {
+
+    /**
+     * The engine that fuses the sensors
+     */
+    private final OrientationFusionEngine engine;
+
+    /**
+     * The name of the file that the fused orientations are written to
+     */
+    private final String fileName;
+
+    /**
+     * The event that is reused for all fused orientations, so the fusion does not allocate memory per sample
+     */
+    private final FusionEvent fusionEvent;
+
+    /**
+     * Creates a new fusion recorder.
+     *
+     * @param weighting The strategy that weights the correction by the rotation vector
+     * @param eventType The type of the fused events
+     * @param fileName The name of the file that the fused orientations are written to
+     */
+    public SensorFusionRecorder(InterpolationWeighting weighting, EventType eventType, String fileName) {
+        this.engine = new OrientationFusionEngine(weighting);
+        this.fusionEvent = new FusionEvent(eventType);
+        this.fileName = fileName;
+    }
+
+    @Override
+    public void startRecording(SessionClock clock, File folderName) {
+        startEngine();
+        super.startRecording(clock, new File(folderName + File.separator + fileName));
+    }
+
+    @Override
+    public void startRecording(SessionClock clock, MotionEventListener listener) {
+        startEngine();
+        super.startRecording(clock, listener);
+    }
+
+    private void startEngine() {
+        // The engine is only accessed from the thread of this recorder
+        runOnRecorderThread(new Runnable() {
+            @Override
+            public void run() {
+                engine.reset();
+            }
+        });
+    }
+
+    @Override
+    public void close() {
+        // Nothing to do
+    }
+
+    @Override
+    public void onMotionEventUpdate(MotionEvent motionEvent) {
+        if (!recording)
+            return;
+
+        // Fuse on the thread of this recorder, so the thread of the sensors can continue with the next sample
+        processOnRecorderThread((ImuEvent) motionEvent);
+    }
+
+    @Override
+    protected void processEvent(ImuEvent event) {
+        if (!recording)
+            return;
+
+        // Two types of events can arrive here: Gyroscope-event or RotationVector-event.
+        if (event.eventType == EventType.RotationVector) {
+            engine.correct(event.values, event.valueCount);
+        } else if (event.eventType == EventType.Gyroscope) {
+            if (!engine.update(event.values, event.timestamp))
+                return;
+
+            engine.getOrientation(fusionEvent.fusedQuaternion);
+            fusionEvent.setElapsedTimeNanos(event.elapsedTimeNanos);
+            if (recordingToFile) {
+                writeToSDCard(fusionEvent);
+            } else {
+                // Notify listeners, iterate by index to avoid allocating an iterator per sample
+                for (int i = 0; i < listeners.size(); i++) {
+                    listeners.get(i).onMotionEventUpdate(fusionEvent);
+                }
+            }
+        }
+    }
+}
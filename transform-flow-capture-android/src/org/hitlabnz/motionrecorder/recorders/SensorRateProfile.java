@@ -0,0 +1,135 @@
+package org.hitlabnz.motionrecorder.recorders;
+
+import java.util.EnumMap;
+
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
+
+import android.hardware.Sensor;
+import android.hardware.SensorManager;
+import android.util.Log;
+
+/**
+ * The sampling periods in microseconds at which the sensors of the recorders are registered. The requested periods
+ * are validated against the rates that each sensor supports when the recorder registers it.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class SensorRateProfile {
+
+	private static final String TAG = SensorRateProfile.class.getName();
+
+	/**
+	 * Sampling period that requests the fastest rate that the sensor supports
+	 */
+	public static final int SAMPLING_PERIOD_FASTEST = 0;
+
+	/**
+	 * Sampling period in microseconds that corresponds to SensorManager.SENSOR_DELAY_GAME (50 Hz)
+	 */
+	public static final int SAMPLING_PERIOD_GAME_US = 20000;
+
+	/**
+	 * Sampling period in microseconds that corresponds to SensorManager.SENSOR_DELAY_UI (15 Hz)
+	 */
+	public static final int SAMPLING_PERIOD_UI_US = 66667;
+
+	/**
+	 * Sampling period in microseconds that corresponds to SensorManager.SENSOR_DELAY_NORMAL (5 Hz)
+	 */
+	public static final int SAMPLING_PERIOD_NORMAL_US = 200000;
+
+	/**
+	 * The sampling period of sensors for which no period was set
+	 */
+	private final int defaultSamplingPeriodUs;
+
+	/**
+	 * The sampling periods that were set per sensor
+	 */
+	private final EnumMap<EventType, Integer> samplingPeriodsUs = new EnumMap<EventType, Integer>(EventType.class);
+
+	/**
+	 * Creates a new profile, that samples all sensors with the given period.
+	 *
+	 * @param defaultSamplingPeriodUs The sampling period in microseconds or {@link #SAMPLING_PERIOD_FASTEST}
+	 */
+	public SensorRateProfile(int defaultSamplingPeriodUs) {
+		this.defaultSamplingPeriodUs = checkSamplingPeriod(defaultSamplingPeriodUs);
+	}
+
+	/**
+	 * Returns the profile that was used so far: all sensors at the game rate, except gravity which changes slowly.
+	 */
+	public static SensorRateProfile standard() {
+		return new SensorRateProfile(SAMPLING_PERIOD_GAME_US).setSamplingPeriod(EventType.Gravity,
+				SAMPLING_PERIOD_NORMAL_US);
+	}
+
+	/**
+	 * Returns the profile for visual-inertial recordings: gyroscope and accelerometer at the fastest rate that the
+	 * device supports (typically 200 to 400+ Hz), the other sensors at the game rate and gravity at the normal rate.
+	 */
+	public static SensorRateProfile maxRate() {
+		return standard().setSamplingPeriod(EventType.Gyroscope, SAMPLING_PERIOD_FASTEST)
+				.setSamplingPeriod(EventType.Accelerometer, SAMPLING_PERIOD_FASTEST);
+	}
+
+	/**
+	 * Sets the sampling period of the sensor with the given event type.
+	 *
+	 * @param eventType The type of the events that the sensor produces
+	 * @param samplingPeriodUs The sampling period in microseconds or {@link #SAMPLING_PERIOD_FASTEST}
+	 * @return This profile
+	 */
+	public SensorRateProfile setSamplingPeriod(EventType eventType, int samplingPeriodUs) {
+		samplingPeriodsUs.put(eventType, checkSamplingPeriod(samplingPeriodUs));
+		return this;
+	}
+
+	/**
+	 * Returns the requested sampling period in microseconds of the sensor with the given event type
+	 */
+	public int getSamplingPeriod(EventType eventType) {
+		Integer samplingPeriodUs = samplingPeriodsUs.get(eventType);
+		return samplingPeriodUs != null ? samplingPeriodUs : defaultSamplingPeriodUs;
+	}
+
+	/**
+	 * Limits the requested sampling period to the range that the sensor supports. Sensors that only report changes do
+	 * not have a minimum delay and get the requested period.
+	 *
+	 * @param sensor The sensor that is registered
+	 * @param samplingPeriodUs The requested sampling period in microseconds or {@link #SAMPLING_PERIOD_FASTEST}
+	 * @return The sampling period in microseconds that is passed to the SensorManager
+	 */
+	public static int validate(Sensor sensor, int samplingPeriodUs) {
+		int minDelayUs = sensor.getMinDelay();
+		if (minDelayUs <= 0) {
+			// 0 equals SensorManager.SENSOR_DELAY_FASTEST as well
+			return samplingPeriodUs;
+		}
+		if (samplingPeriodUs < minDelayUs) {
+			if (samplingPeriodUs != SAMPLING_PERIOD_FASTEST) {
+				Log.w(TAG, sensor.getName() + " does not support a sampling period of " + samplingPeriodUs
+						+ " us, using its minimum of " + minDelayUs + " us");
+			}
+			return minDelayUs;
+		}
+		int maxDelayUs = SensorCompat.getMaxDelay(sensor);
+		if (maxDelayUs > 0 && samplingPeriodUs > maxDelayUs) {
+			Log.w(TAG, sensor.getName() + " does not support a sampling period of " + samplingPeriodUs
+					+ " us, using its maximum of " + maxDelayUs + " us");
+			return maxDelayUs;
+		}
+		return samplingPeriodUs;
+	}
+
+	private static int checkSamplingPeriod(int samplingPeriodUs) {
+		// Values between 1 and 3 would be interpreted as the SensorManager.SENSOR_DELAY_* constants
+		if (samplingPeriodUs < 0
+				|| (samplingPeriodUs != SAMPLING_PERIOD_FASTEST && samplingPeriodUs <= SensorManager.SENSOR_DELAY_NORMAL))
+			throw new IllegalArgumentException("Invalid sampling period: " + samplingPeriodUs + " us");
+		return samplingPeriodUs;
+	}
+}
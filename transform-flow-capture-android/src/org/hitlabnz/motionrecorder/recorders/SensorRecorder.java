@@ -4,18 +4,25 @@ import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
-import java.text.SimpleDateFormat;
 import java.util.ArrayList;
-import java.util.Date;
 import java.util.List;
-import java.util.Locale;
 
 import org.hitlabnz.motionrecorder.events.FusionEvent;
+import org.hitlabnz.motionrecorder.events.ImuEvent;
+import org.hitlabnz.motionrecorder.events.ImuEventPool;
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
 import org.hitlabnz.motionrecorder.events.MotionEventListener;
+import org.hitlabnz.motionrecorder.session.SessionWriter;
+import org.hitlabnz.motionrecorder.session.TextRecordFormatter;
 
 import android.content.Context;
+import android.hardware.Sensor;
 import android.hardware.SensorEvent;
+import android.hardware.SensorEventListener;
 import android.hardware.SensorManager;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
 import android.util.Log;
 
 /**
@@ -32,9 +39,26 @@ public abstract class SensorRecorder {
 	protected List<MotionEventListener> listeners;
 
 	/**
-	 * The time, when the recording was started
+	 * The clock of the current recording session
 	 */
-	protected Date recordingStartDate;
+	protected SessionClock clock;
+
+	/**
+	 * Offset in nanoseconds between the time base of the sensor timestamps and the elapsed realtime. Some devices
+	 * report SensorEvent.timestamp in a different time base, which is detected with the first event of a recording.
+	 */
+	private long sensorTimestampOffset = 0;
+
+	/**
+	 * Flag indicating, whether the sensorTimestampOffset was determined for the current recording
+	 */
+	private boolean sensorTimestampOffsetKnown = false;
+
+	/**
+	 * Maximum difference in nanoseconds between a sensor timestamp and the elapsed realtime, that is still accepted as
+	 * the same time base
+	 */
+	private static final long MAX_TIME_BASE_DIFFERENCE_NS = 1000000000L;
 
 	/**
 	 * The application's SensorManager
@@ -42,9 +66,41 @@ public abstract class SensorRecorder {
 	protected SensorManager sensorManager;
 
 	/**
-	 * Formatter to write the elapsed time to SD-card.
+	 * The sampling periods at which the sensors are registered
+	 */
+	protected SensorRateProfile rateProfile = SensorRateProfile.standard();
+
+	/**
+	 * The handler on whose thread the sensor events are delivered, or null for the main thread
 	 */
-	protected SimpleDateFormat formatter;
+	protected Handler handler = null;
+
+	/**
+	 * The handler that passes the events of other recorders to {@link #processEvent(ImuEvent)} on the thread of this
+	 * recorder
+	 */
+	private Handler eventHandler = null;
+
+	/**
+	 * Message that hands an ImuEvent over to the thread of this recorder
+	 */
+	private static final int PROCESS_EVENT = 1;
+
+	/**
+	 * The maximum time in microseconds that events may be held back in the FIFO of the sensor hub before they are
+	 * delivered as a batch. 0 delivers every event immediately.
+	 */
+	protected int maxReportLatencyUs = 0;
+
+	/**
+	 * The listener that was registered for batching, or null if the events are delivered immediately
+	 */
+	private SensorEventListener batchingListener = null;
+
+	/**
+	 * Formatter to write the elapsed time and the values to SD-card.
+	 */
+	protected TextRecordFormatter formatter;
 
 	/**
 	 * The buffered writer that writes the data onto the SD-card
@@ -52,9 +108,36 @@ public abstract class SensorRecorder {
 	protected BufferedWriter writer = null;
 
 	/**
-	 * Flag to indicate whether this sensor is currently recording
+	 * The shared writer of the binary session file. If set, events are written into the session file instead of a
+	 * separate text file per sensor.
+	 */
+	protected SessionWriter sessionWriter = null;
+
+	/**
+	 * Constant specifying the factor between a milli-second and a nano-second
+	 */
+	protected static final long MS2NS = 1000000L;
+
+	/**
+	 * Number of events that are preallocated for notifying the listeners
+	 */
+	private static final int IMU_EVENT_POOL_SIZE = 4;
+
+	/**
+	 * Buffer for the quaternion of a FusionEvent that is written into the session file
+	 */
+	private float[] fusionValues;
+
+	/**
+	 * Pool of the events that are handed to the listeners, so no event has to be allocated per sample
 	 */
-	protected boolean recording = false;
+	private ImuEventPool imuEventPool;
+
+	/**
+	 * Flag to indicate whether this sensor is currently recording. Events may be delivered on another thread than the
+	 * one that starts and stops the recording.
+	 */
+	protected volatile boolean recording = false;
 
 	/**
 	 * Flag indicating, whether recordings should be written to SD-card or reported to listener.
@@ -68,7 +151,7 @@ public abstract class SensorRecorder {
 	 */
 	public void initialize(Context context) {
 		sensorManager = (SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
-		formatter = new SimpleDateFormat("mm:ss.SSS;", Locale.US);
+		formatter = new TextRecordFormatter();
 		listeners = new ArrayList<MotionEventListener>();
 	}
 
@@ -76,50 +159,208 @@ public abstract class SensorRecorder {
 		listeners.add(listener);
 	}
 
+	/**
+	 * Sets the rates at which the sensors of this recorder are sampled. Must be called before the recording is
+	 * started.
+	 * 
+	 * @param rateProfile The sampling periods per sensor
+	 */
+	public void setRateProfile(SensorRateProfile rateProfile) {
+		this.rateProfile = rateProfile;
+	}
+
+	/**
+	 * Sets the handler on whose thread the sensor events are delivered and processed. Must be called before the
+	 * recording is started.
+	 * 
+	 * @param handler The handler of a dedicated thread, or null for the main thread
+	 */
+	public void setHandler(Handler handler) {
+		this.handler = handler;
+		if (handler == null) {
+			eventHandler = null;
+		} else {
+			eventHandler = new Handler(handler.getLooper(), new Handler.Callback() {
+				@Override
+				public boolean handleMessage(Message msg) {
+					ImuEvent event = (ImuEvent) msg.obj;
+					processEvent(event);
+					event.release();
+					return true;
+				}
+			});
+		}
+	}
+
+	/**
+	 * Allows the sensor hub to batch the events in its FIFO, so the application processor does not have to wake up
+	 * for every sample. Sensors without FIFO deliver every event immediately. Must be called before the recording is
+	 * started.
+	 * 
+	 * @param maxReportLatencyUs The maximum time in microseconds that events may be held back, 0 to disable batching
+	 */
+	public void setMaxReportLatency(int maxReportLatencyUs) {
+		if (maxReportLatencyUs < 0)
+			throw new IllegalArgumentException("maxReportLatencyUs must not be negative: " + maxReportLatencyUs);
+		this.maxReportLatencyUs = maxReportLatencyUs;
+	}
+
+	/**
+	 * Sets the shared writer of the binary session file. Must be called before
+	 * {@link #startRecording(SessionClock, File)}; pass null to record into separate text files again.
+	 * 
+	 * @param sessionWriter The session writer that is shared by all recorders of a session
+	 */
+	public void setSessionWriter(SessionWriter sessionWriter) {
+		this.sessionWriter = sessionWriter;
+	}
+
 	/**
 	 * Starts the recording of this sensor. The recorded data will be written to the SD-card.
 	 * 
-	 * @param startTime The timestamp, when the recording was started
+	 * @param clock The clock of the recording session, that all events are timed against
 	 * @param folderName The folder on the SD-Card where the Sensor data should be written to
 	 */
-	public void startRecording(Date startTime, File folderName) {
-		this.recordingStartDate = startTime;
+	public void startRecording(SessionClock clock, final File folderName) {
+		startClock(clock);
 		recording = true;
 		recordingToFile = true;
+		if (sessionWriter != null) {
+			// The session writer is shared and will be closed by its owner
+			return;
+		}
+		// The writer is only accessed from the thread that receives the events
+		runOnRecorderThread(new Runnable() {
+			@Override
+			public void run() {
+				openWriter(folderName);
+			}
+		});
+	}
+
+	private void openWriter(File file) {
 		try {
 			// Note that this method gets called from implementation, that construct a real file from the folder-name.
 			// So despite the fact that the variable is called folderName, it is the target file.
-			writer = new BufferedWriter(new FileWriter(folderName));
+			writer = new BufferedWriter(new FileWriter(file));
 		} catch (Exception e) {
-			Log.e("SensorRecorder", "Could not open target file for recording: " + folderName.getAbsolutePath(), e);
+			Log.e("SensorRecorder", "Could not open target file for recording: " + file.getAbsolutePath(), e);
 		}
 	}
 
 	/**
 	 * Starts the recording of this sensor. The recorded data will be reported to the registered listener
 	 * 
-	 * @param startTime The timestamp, when the recording was started
+	 * @param clock The clock of the recording session, that all events are timed against
 	 */
-	public void startRecording(Date startTime, MotionEventListener listener) {
-		this.recordingStartDate = startTime;
+	public void startRecording(SessionClock clock, MotionEventListener listener) {
+		startClock(clock);
 		recording = true;
 		listeners.add(listener);
 		recordingToFile = false;
 	}
 
+	/**
+	 * Registers the listener for the sensor with the sampling period of the rate profile, limited to the rates that
+	 * the sensor supports. If a maximum report latency is set and the sensor has a hardware FIFO, the events are
+	 * batched by the sensor hub. Batched events keep the hardware timestamp at which they were acquired.
+	 * 
+	 * @param listener The listener that receives the events
+	 * @param sensor The sensor to listen to
+	 * @param eventType The type of the events of the sensor, that selects the sampling period of the rate profile
+	 */
+	protected void registerSensor(SensorEventListener listener, Sensor sensor, EventType eventType) {
+		if (sensor == null) {
+			Log.w("SensorRecorder", "The device has no sensor for " + eventType);
+			return;
+		}
+		int samplingPeriodUs = SensorRateProfile.validate(sensor, rateProfile.getSamplingPeriod(eventType));
+		Log.i("SensorRecorder", "Registering " + sensor.getName() + " with a sampling period of " + samplingPeriodUs
+				+ " us");
+		if (maxReportLatencyUs > 0
+				&& SensorCompat.registerListener(sensorManager, listener, sensor, samplingPeriodUs,
+						maxReportLatencyUs, handler)) {
+			batchingListener = listener;
+			return;
+		}
+		batchingListener = null;
+		sensorManager.registerListener(listener, sensor, samplingPeriodUs, handler);
+	}
+
+	/**
+	 * Requests all events that are still batched in the FIFO of the sensor hub. The events are delivered
+	 * asynchronously, so the recording should be stopped only after the maximum report latency has passed.
+	 * 
+	 * @return The time in microseconds until all batched events were delivered, or 0 if nothing is batched
+	 */
+	public int flushSensors() {
+		if (!recording || batchingListener == null)
+			return 0;
+		return SensorCompat.flush(sensorManager, batchingListener) ? maxReportLatencyUs : 0;
+	}
+
 	/**
 	 * Stops the recording of this sensor, flushes all buffers and write the data to the SD-card.
 	 */
 	public void stopRecording() {
 		recording = false;
+		batchingListener = null;
+
+		if (recordingToFile) {
+			// Close the writer after the events that are still queued on the recorder thread were processed
+			runOnRecorderThread(new Runnable() {
+				@Override
+				public void run() {
+					closeWriter();
+				}
+			});
+		}
+	}
 
+	private void closeWriter() {
+		if (writer == null)
+			return;
 		try {
-			if (recordingToFile) {
-				writer.close();
-			}
+			writer.close();
 		} catch (IOException e) {
 			Log.e("SensorRecorder", "Could not close output writer", e);
 		}
+		writer = null;
+	}
+
+	/**
+	 * Runs the task on the thread of the handler, or immediately if no handler was set.
+	 */
+	protected void runOnRecorderThread(Runnable task) {
+		if (handler != null) {
+			handler.post(task);
+		} else {
+			task.run();
+		}
+	}
+
+	/**
+	 * Processes an event of another recorder on the thread of this recorder. The event is retained until it was
+	 * processed, so the thread of the other recorder can continue with the next sample right away.
+	 * 
+	 * @param event The event that was reported to this recorder
+	 */
+	protected void processOnRecorderThread(ImuEvent event) {
+		if (eventHandler == null || eventHandler.getLooper() == Looper.myLooper()) {
+			processEvent(event);
+			return;
+		}
+		event.retain();
+		eventHandler.obtainMessage(PROCESS_EVENT, event).sendToTarget();
+	}
+
+	/**
+	 * Processes an event that was passed to {@link #processOnRecorderThread(ImuEvent)}, on the thread of this
+	 * recorder. The event is released afterwards, so it must be retained to keep it.
+	 * 
+	 * @param event The event to process
+	 */
+	protected void processEvent(ImuEvent event) {
 	}
 
 	/**
@@ -127,34 +368,106 @@ public abstract class SensorRecorder {
 	 */
 	public abstract void close();
 
-	protected void writeToSDCard(SensorEvent event) {
-		CharSequence currentTimeStamp = formatter
-				.format(new Date((new Date().getTime() - recordingStartDate.getTime())));
-		String msg = currentTimeStamp + String.valueOf(event.values[0]) + "," + String.valueOf(event.values[1]) + ","
-				+ String.valueOf(event.values[2]) + "\n";
+	/**
+	 * Copies the values of the sensor event into a pooled ImuEvent and reports it to all registered listeners. The
+	 * event is released after all listeners were notified, so listeners that keep it have to retain it.
+	 * 
+	 * @param event The event that was received from the SensorManager
+	 * @param eventType The type of the event that is reported
+	 */
+	protected void notifyListeners(SensorEvent event, EventType eventType) {
+		if (listeners.isEmpty())
+			return;
+
+		if (imuEventPool == null) {
+			imuEventPool = new ImuEventPool(eventType, IMU_EVENT_POOL_SIZE);
+		}
+		ImuEvent imuEvent = imuEventPool.obtain(event.values, event.timestamp, event.accuracy, sessionTimeOf(event));
+		// Iterate by index to avoid allocating an iterator per sample
+		for (int i = 0; i < listeners.size(); i++) {
+			listeners.get(i).onMotionEventUpdate(imuEvent);
+		}
+		imuEvent.release();
+	}
+
+	protected void writeToSDCard(SensorEvent event, EventType eventType) {
+		if (sessionWriter != null) {
+			try {
+				sessionWriter.writeFloats(eventType, sessionTimeOf(event), 0, event.values, event.values.length);
+			} catch (IOException e) {
+				Log.e("SensorRecorder", "Could not write Sensor-Event data from " + event.sensor.getName(), e);
+			}
+			return;
+		}
+		formatter.reset().appendTimestamp(sessionTimeOf(event) / MS2NS).append(event.values[0]).append(',')
+				.append(event.values[1]).append(',').append(event.values[2]).append('\n');
 		// Write new location to SD-card
 		try {
-			writer.write(msg);
+			formatter.writeTo(writer);
 		} catch (IOException e) {
 			Log.e("SensorRecorder", "Could not write Sensor-Event data from " + event.sensor.getName(), e);
 		}
 	}
 
 	protected void writeToSDCard(FusionEvent event) {
+		if (sessionWriter != null) {
+			try {
+				sessionWriter.writeFloats(event.eventType, event.elapsedTimeNanos, 0,
+						fusionValues(event), 4);
+			} catch (IOException e) {
+				Log.e("SensorRecorder", "Could not write Sensor-Event data from " + event.eventType, e);
+			}
+			return;
+		}
 
 		// Write new location to SD-card
-		String msg = String.format("Time:%.3f;Quaternion:%.3f, %.3f, %.3f, %.3f", event.elapsedTime / 1000f,
-				event.fusedQuaternion.x(), event.fusedQuaternion.y(), event.fusedQuaternion.z(),
-				event.fusedQuaternion.w())
-				+ "\n";
+		formatter.reset().append("Time:").appendFixed(event.elapsedTime / 1000f, 3).append(";Quaternion:")
+				.appendFixed(event.fusedQuaternion.x, 3).append(", ").appendFixed(event.fusedQuaternion.y, 3)
+				.append(", ").appendFixed(event.fusedQuaternion.z, 3).append(", ")
+				.appendFixed(event.fusedQuaternion.w, 3).append('\n');
 		try {
-			writer.write(msg);
+			formatter.writeTo(writer);
 		} catch (IOException e) {
 			Log.e("SensorRecorder", "Could not write Sensor-Event data from " + event.eventType, e);
 		}
 	}
 
+	private float[] fusionValues(FusionEvent event) {
+		if (fusionValues == null) {
+			fusionValues = new float[4];
+		}
+		event.fusedQuaternion.get(fusionValues, 0);
+		return fusionValues;
+	}
+
+	/**
+	 * Returns the time in nanoseconds that has passed since the recording was started. Used for events that do not
+	 * carry a hardware timestamp.
+	 */
 	protected long elapsedTimeSinceStart() {
-		return (new Date()).getTime() - recordingStartDate.getTime();
+		return clock.elapsedNanos();
+	}
+
+	/**
+	 * Returns the time in nanoseconds since the recording was started at which the sensor event was acquired, based on
+	 * its hardware timestamp instead of the time when the callback was delivered.
+	 * 
+	 * @param event The event that was received from the SensorManager
+	 */
+	protected long sessionTimeOf(SensorEvent event) {
+		if (!sensorTimestampOffsetKnown) {
+			// SensorEvent.timestamp is documented as elapsed realtime, but some devices use a different time base.
+			// Batched events may be up to the maximum report latency older than the time of their delivery.
+			long offset = SessionClock.elapsedRealtimeNanos() - event.timestamp;
+			long tolerance = MAX_TIME_BASE_DIFFERENCE_NS + maxReportLatencyUs * 1000L;
+			sensorTimestampOffset = offset > -MAX_TIME_BASE_DIFFERENCE_NS && offset < tolerance ? 0 : offset;
+			sensorTimestampOffsetKnown = true;
+		}
+		return clock.toSessionNanos(event.timestamp + sensorTimestampOffset);
+	}
+
+	private void startClock(SessionClock clock) {
+		this.clock = clock;
+		sensorTimestampOffsetKnown = false;
 	}
 }
@@ -0,0 +1,76 @@
+package org.hitlabnz.motionrecorder.recorders;
+
+import android.annotation.SuppressLint;
+import android.os.Build;
+import android.os.SystemClock;
+
+/**
+ * Monotonic clock of a recording session. It is anchored on the elapsed realtime when the recording was started, so
+ * all recorders measure their events against the same instant with nanosecond resolution. Unlike the wall-clock, the
+ * elapsed realtime is not affected by time changes and it is the time base of SensorEvent and Location timestamps.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class SessionClock {
+
+	/**
+	 * Wall-clock time in milliseconds when the session was started
+	 */
+	private final long startTimeMillis;
+
+	/**
+	 * Elapsed realtime in nanoseconds when the session was started
+	 */
+	private final long startRealtimeNanos;
+
+	/**
+	 * Starts a new session clock at the current instant.
+	 */
+	public SessionClock() {
+		startRealtimeNanos = elapsedRealtimeNanos();
+		startTimeMillis = System.currentTimeMillis();
+	}
+
+	/**
+	 * Returns the elapsed realtime since boot in nanoseconds. Devices below API 17 only provide milliseconds.
+	 */
+	@SuppressLint("NewApi")
+	public static long elapsedRealtimeNanos() {
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+			return SystemClock.elapsedRealtimeNanos();
+		}
+		return SystemClock.elapsedRealtime() * 1000000L;
+	}
+
+	/**
+	 * Returns the wall-clock time in milliseconds when the session was started
+	 */
+	public long getStartTimeMillis() {
+		return startTimeMillis;
+	}
+
+	/**
+	 * Returns the elapsed realtime in nanoseconds when the session was started
+	 */
+	public long getStartRealtimeNanos() {
+		return startRealtimeNanos;
+	}
+
+	/**
+	 * Returns the time in nanoseconds since the session was started
+	 */
+	public long elapsedNanos() {
+		return elapsedRealtimeNanos() - startRealtimeNanos;
+	}
+
+	/**
+	 * Converts an elapsed realtime timestamp (e.g. of a camera frame) into the time since the session was started.
+	 *
+	 * @param realtimeNanos Elapsed realtime in nanoseconds
+	 * @return Time in nanoseconds since the session was started
+	 */
+	public long toSessionNanos(long realtimeNanos) {
+		return realtimeNanos - startRealtimeNanos;
+	}
+}
@@ -0,0 +1,262 @@
+package org.hitlabnz.motionrecorder.session;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A preallocated, lock-free ring buffer of fixed-size binary records with multiple producers and a single consumer.
+ *
+ * Producers {@link #claim()} a sequence number, write their record into the slot at {@link #offset(long)} of the
+ * shared {@link #buffer()} with absolute puts and {@link #publish(long)} it. The consumer copies published records in
+ * order with {@link #drainTo(ByteBuffer, int)}. Neither side takes a lock or allocates objects.
+ *
+ * When the ring is full, the {@link OverflowPolicy} decides whether the producer waits, drops the oldest queued record
+ * or drops its own record. Dropped records are counted in both cases. Once the consumer is gone, it {@link #close()}s
+ * the ring: the records that are still queued and all records claimed afterwards are dropped and counted, and waiting
+ * producers return.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class RecordRingBuffer {
+
+	/**
+	 * Defines what happens, if a producer claims a slot while the ring is full
+	 */
+	public enum OverflowPolicy {
+		/**
+		 * The producer waits until the consumer has freed a slot
+		 */
+		BLOCK,
+		/**
+		 * The oldest queued record is discarded to make room for the new one
+		 */
+		DROP_OLDEST,
+		/**
+		 * The new record is discarded and counted
+		 */
+		COUNT_AND_DROP
+	}
+
+	/**
+	 * Time a blocked producer waits before checking for a free slot again
+	 */
+	private static final long BLOCK_PARK_NANOS = 100000L;
+
+	/**
+	 * Bit of {@link #tail} that marks the ring as closed, so no producer can claim a slot anymore
+	 */
+	private static final long CLOSED = 1L << 62;
+
+	private final int capacity;
+
+	private final int mask;
+
+	private final int recordSize;
+
+	private final OverflowPolicy overflowPolicy;
+
+	/**
+	 * Backing storage of all slots
+	 */
+	private final byte[] slots;
+
+	/**
+	 * Little-endian view on the slots that producers use for absolute puts
+	 */
+	private final ByteBuffer slotBuffer;
+
+	/**
+	 * For each slot the sequence number of the record that was last published into it
+	 */
+	private final AtomicLongArray published;
+
+	/**
+	 * The next sequence number that will be claimed by a producer, with the bit {@link #CLOSED} set once the ring was
+	 * closed
+	 */
+	private final AtomicLong tail = new AtomicLong();
+
+	/**
+	 * The sequence number of the oldest record that was not consumed or dropped yet
+	 */
+	private final AtomicLong head = new AtomicLong();
+
+	private final AtomicLong droppedCount = new AtomicLong();
+
+	/**
+	 * Creates a new ring buffer.
+	 *
+	 * @param capacity Number of slots, will be rounded up to the next power of two
+	 * @param recordSize Size of a record in bytes
+	 * @param overflowPolicy Behaviour when the ring is full
+	 */
+	public RecordRingBuffer(int capacity, int recordSize, OverflowPolicy overflowPolicy) {
+		if (capacity < 1 || capacity > (1 << 30)) {
+			throw new IllegalArgumentException("Invalid capacity: " + capacity);
+		}
+		int size = 1;
+		while (size < capacity) {
+			size <<= 1;
+		}
+		this.capacity = size;
+		this.mask = this.capacity - 1;
+		this.recordSize = recordSize;
+		this.overflowPolicy = overflowPolicy;
+		slots = new byte[this.capacity * recordSize];
+		slotBuffer = ByteBuffer.wrap(slots).order(SessionFormat.BYTE_ORDER);
+		published = new AtomicLongArray(this.capacity);
+		for (int i = 0; i < this.capacity; i++) {
+			published.set(i, -1);
+		}
+	}
+
+	/**
+	 * Claims the slot for the next record. The caller must write the record and {@link #publish(long)} it.
+	 *
+	 * @return The sequence number of the claimed slot, or -1 if the record has to be dropped or the ring was closed
+	 */
+	public long claim() {
+		while (true) {
+			long sequence = tail.get();
+			if ((sequence & CLOSED) != 0) {
+				droppedCount.incrementAndGet();
+				return -1;
+			}
+			long oldest = head.get();
+			if (sequence - oldest >= capacity) {
+				switch (overflowPolicy) {
+				case COUNT_AND_DROP:
+					droppedCount.incrementAndGet();
+					return -1;
+				case DROP_OLDEST:
+					// Only drop records that are completely written, otherwise their producer could still write into
+					// the slot that is about to be reused
+					if (published.get((int) (oldest & mask)) == oldest && head.compareAndSet(oldest, oldest + 1)) {
+						droppedCount.incrementAndGet();
+					} else {
+						Thread.yield();
+					}
+					continue;
+				default:
+					LockSupport.parkNanos(BLOCK_PARK_NANOS);
+					continue;
+				}
+			}
+			if (tail.compareAndSet(sequence, sequence + 1)) {
+				return sequence;
+			}
+		}
+	}
+
+	/**
+	 * Closes the ring, when its consumer stopped. The records that were not consumed yet are dropped, and all further
+	 * claims fail, including those of producers that are waiting for a free slot.
+	 *
+	 * @return The number of queued records that were dropped
+	 */
+	public long close() {
+		long end;
+		while (true) {
+			long sequence = tail.get();
+			if ((sequence & CLOSED) != 0) {
+				return 0;
+			}
+			if (tail.compareAndSet(sequence, sequence | CLOSED)) {
+				end = sequence;
+				break;
+			}
+		}
+		long oldest;
+		do {
+			oldest = head.get();
+		} while (!head.compareAndSet(oldest, end));
+		droppedCount.addAndGet(end - oldest);
+		return end - oldest;
+	}
+
+	/**
+	 * Returns whether the ring was closed
+	 */
+	public boolean isClosed() {
+		return (tail.get() & CLOSED) != 0;
+	}
+
+	/**
+	 * Returns the buffer that records are written into. Producers must only use absolute puts within their slot.
+	 */
+	public ByteBuffer buffer() {
+		return slotBuffer;
+	}
+
+	/**
+	 * Returns the offset of the slot for the given sequence number within {@link #buffer()}.
+	 */
+	public int offset(long sequence) {
+		return (int) (sequence & mask) * recordSize;
+	}
+
+	/**
+	 * Makes the record with the given sequence number visible to the consumer.
+	 */
+	public void publish(long sequence) {
+		published.lazySet((int) (sequence & mask), sequence);
+	}
+
+	/**
+	 * Copies published records in order into the target buffer. Must only be called by a single consumer thread.
+	 *
+	 * @param target The buffer to copy the records to
+	 * @param maxRecords Maximum number of records to copy
+	 * @return The number of records that were copied
+	 */
+	public int drainTo(ByteBuffer target, int maxRecords) {
+		int count = 0;
+		while (count < maxRecords && target.remaining() >= recordSize) {
+			long oldest = head.get();
+			if (oldest >= (tail.get() & ~CLOSED)) {
+				break;
+			}
+			int index = (int) (oldest & mask);
+			if (published.get(index) != oldest) {
+				if (head.get() == oldest) {
+					// Claimed, but not yet completely written
+					break;
+				}
+				continue;
+			}
+			int position = target.position();
+			target.put(slots, index * recordSize, recordSize);
+			if (!head.compareAndSet(oldest, oldest + 1)) {
+				// A producer dropped this record while it was copied, so the copy may be inconsistent
+				target.position(position);
+				continue;
+			}
+			count++;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the number of slots of this ring buffer.
+	 */
+	public int getCapacity() {
+		return capacity;
+	}
+
+	/**
+	 * Returns the number of records that were dropped because the ring was full.
+	 */
+	public long getDroppedCount() {
+		return droppedCount.get();
+	}
+
+	/**
+	 * Returns the number of records that are currently queued (claimed but not yet consumed).
+	 */
+	public long getQueuedCount() {
+		return Math.max(0, (tail.get() & ~CLOSED) - head.get());
+	}
+}
@@ -0,0 +1,216 @@
+package org.hitlabnz.motionrecorder.session;
+
+import java.nio.ByteOrder;
+
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
+
+/**
+ * Describes the binary session format that is used to persist all recorded events of a session into one file.
+ *
+ * A session file starts with a header of {@link #HEADER_SIZE} bytes, followed by an arbitrary number of fixed-width
+ * records of {@link #RECORD_SIZE} bytes each. All values are stored in little-endian byte order.
+ *
+ * <pre>
+ * Header:
+ *   0  int    magic number ("TFCS")
+ *   4  short  format version
+ *   6  short  record size in bytes
+ *   8  long   wall-clock time in milliseconds when the recording was started
+ *  16  long   elapsed realtime in nanoseconds when the recording was started (since version 2)
+ *  24  ...    reserved (zero)
+ *
+ * Record:
+ *   0  byte   sensor id (see {@link #sensorId(EventType)})
+ *   1  byte   payload type ({@link #PAYLOAD_FLOAT} or {@link #PAYLOAD_DOUBLE})
+ *   2  byte   number of values in the payload
+ *   3  byte   reserved (zero)
+ *   4  int    auxiliary value, e.g. the picture number for picture records
+ *   8  long   timestamp in nanoseconds since the recording was started, taken from the hardware timestamp of the
+ *             event where available (since version 2, version 1 used the time when the event was delivered)
+ *  16  ...    payload: up to {@link #MAX_FLOAT_VALUES} floats or {@link #MAX_DOUBLE_VALUES} doubles
+ * </pre>
+ *
+ * Picture records of single pictures carry one float, the format of the picture ({@link #PICTURE_JPEG} ...), which
+ * selects the file extension ({@link #pictureExtension(int)}). Picture records without a value are JPEG pictures.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public final class SessionFormat {
+
+	/**
+	 * Magic number at the beginning of each session file ("TFCS" read as little-endian int)
+	 */
+	public static final int MAGIC = 0x53434654;
+
+	/**
+	 * The current version of the format
+	 */
+	public static final short VERSION = 2;
+
+	/**
+	 * Byte order of all values in a session file
+	 */
+	public static final ByteOrder BYTE_ORDER = ByteOrder.LITTLE_ENDIAN;
+
+	/**
+	 * Size of the file header in bytes
+	 */
+	public static final int HEADER_SIZE = 32;
+
+	/**
+	 * Size of a single record in bytes
+	 */
+	public static final int RECORD_SIZE = 48;
+
+	/**
+	 * Offset of the payload within a record
+	 */
+	public static final int PAYLOAD_OFFSET = 16;
+
+	/**
+	 * Maximum number of float values that fit into the payload of a record
+	 */
+	public static final int MAX_FLOAT_VALUES = (RECORD_SIZE - PAYLOAD_OFFSET) / 4;
+
+	/**
+	 * Maximum number of double values that fit into the payload of a record
+	 */
+	public static final int MAX_DOUBLE_VALUES = (RECORD_SIZE - PAYLOAD_OFFSET) / 8;
+
+	/**
+	 * Payload type for records that carry 32-bit float values (IMU, fusion)
+	 */
+	public static final byte PAYLOAD_FLOAT = 0;
+
+	/**
+	 * Payload type for records that carry 64-bit double values (GPS, presentation timestamps of video frames)
+	 */
+	public static final byte PAYLOAD_DOUBLE = 1;
+
+	/**
+	 * Format of a picture record: JPEG picture ("N.jpg")
+	 */
+	public static final int PICTURE_JPEG = 0;
+
+	/**
+	 * Format of a picture record: PNG picture ("N.png")
+	 */
+	public static final int PICTURE_PNG = 1;
+
+	/**
+	 * Format of a picture record: WebP picture ("N.webp")
+	 */
+	public static final int PICTURE_WEBP = 2;
+
+	/**
+	 * Format of a picture record: raw pixels in the raw frame file, no picture file
+	 */
+	public static final int PICTURE_RAW = 3;
+
+	/**
+	 * Format of a picture record: the picture was not stored, e.g. only its features were recorded
+	 */
+	public static final int PICTURE_NONE = 4;
+
+	/**
+	 * Default file name of a session file within a recording folder
+	 */
+	public static final String FILE_NAME = "Session.bin";
+
+	private SessionFormat() {
+	}
+
+	/**
+	 * Returns the stable id under which events of the given type are stored. The ids are part of the file format and
+	 * must never be changed or reused, independent of the order of the {@link EventType} enumeration.
+	 *
+	 * @param eventType The type of the event
+	 * @return The sensor id that is written into the record
+	 */
+	public static int sensorId(EventType eventType) {
+		switch (eventType) {
+		case Accelerometer:
+			return 1;
+		case Compass:
+			return 2;
+		case Gravity:
+			return 3;
+		case Gyroscope:
+			return 4;
+		case LinearAccelerometer:
+			return 5;
+		case Orientation:
+			return 6;
+		case Picture:
+			return 7;
+		case RotationVector:
+			return 8;
+		case FusedRotationVector1:
+			return 9;
+		case FusedRotationVector2:
+			return 10;
+		case Gps:
+			return 11;
+		case FrameDrop:
+			return 12;
+		default:
+			throw new IllegalArgumentException("No sensor id defined for " + eventType);
+		}
+	}
+
+	/**
+	 * Returns the event type for a sensor id that was read from a session file.
+	 *
+	 * @param sensorId The sensor id as stored in the record
+	 * @return The event type or null, if the id is unknown
+	 */
+	public static EventType eventType(int sensorId) {
+		for (EventType eventType : EventType.values()) {
+			if (sensorId(eventType) == sensorId) {
+				return eventType;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the extension of the picture files of the given format, as written into "Pictures.txt".
+	 *
+	 * @param pictureFormat The format of a picture record, e.g. {@link #PICTURE_JPEG}
+	 * @return The extension including the dot, or an empty string if there is no picture file
+	 */
+	public static String pictureExtension(int pictureFormat) {
+		switch (pictureFormat) {
+		case PICTURE_JPEG:
+			return ".jpg";
+		case PICTURE_PNG:
+			return ".png";
+		case PICTURE_WEBP:
+			return ".webp";
+		default:
+			return "";
+		}
+	}
+
+	/**
+	 * Returns the name of the text file, that the recorders used to write the events of the given type to.
+	 *
+	 * @param eventType The type of the event
+	 * @return The file name, e.g. "Gyroscope.txt"
+	 */
+	public static String textFileName(EventType eventType) {
+		switch (eventType) {
+		case Gps:
+			return "GPS.txt";
+		case Picture:
+			return "Pictures.txt";
+		case FusedRotationVector1:
+			return "SensorFusion1.txt";
+		case FusedRotationVector2:
+			return "SensorFusion2.txt";
+		default:
+			return eventType.name() + ".txt";
+		}
+	}
+}
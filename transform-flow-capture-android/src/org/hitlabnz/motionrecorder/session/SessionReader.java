@@ -0,0 +1,154 @@
+package org.hitlabnz.motionrecorder.session;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Reads the records of a binary session file (see {@link SessionFormat}) sequentially.
+ *
+ * This class does not depend on Android, so session files can also be processed on a desktop machine.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class SessionReader implements Closeable {
+
+	/**
+	 * Number of records that are read from the file at once
+	 */
+	private static final int BUFFERED_RECORDS = 1024;
+
+	private final FileChannel channel;
+
+	private final ByteBuffer buffer;
+
+	private final short version;
+
+	private final long startTimeMillis;
+
+	private final long startRealtimeNanos;
+
+	/**
+	 * Opens a session file and reads its header.
+	 *
+	 * @param file The session file
+	 * @throws IOException If the file could not be read or is not a session file
+	 */
+	public SessionReader(File file) throws IOException {
+		channel = new FileInputStream(file).getChannel();
+		buffer = ByteBuffer.allocate(BUFFERED_RECORDS * SessionFormat.RECORD_SIZE);
+		buffer.order(SessionFormat.BYTE_ORDER);
+		buffer.limit(0);
+
+		try {
+			if (!fill(SessionFormat.HEADER_SIZE)) {
+				throw new EOFException("Session file is too short: " + file.getAbsolutePath());
+			}
+			int magic = buffer.getInt();
+			if (magic != SessionFormat.MAGIC) {
+				throw new IOException("Not a session file: " + file.getAbsolutePath());
+			}
+			version = buffer.getShort();
+			if (version > SessionFormat.VERSION) {
+				throw new IOException("Unsupported session format version " + version);
+			}
+			int recordSize = buffer.getShort();
+			if (recordSize != SessionFormat.RECORD_SIZE) {
+				throw new IOException("Unsupported record size " + recordSize);
+			}
+			startTimeMillis = buffer.getLong();
+			startRealtimeNanos = version >= 2 ? buffer.getLong() : 0;
+			buffer.position(SessionFormat.HEADER_SIZE);
+		} catch (IOException e) {
+			channel.close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Returns the format version of the session file
+	 */
+	public short getVersion() {
+		return version;
+	}
+
+	/**
+	 * Returns the wall-clock time in milliseconds when the recording was started
+	 */
+	public long getStartTimeMillis() {
+		return startTimeMillis;
+	}
+
+	/**
+	 * Returns the elapsed realtime in nanoseconds when the recording was started, or 0 for files of version 1
+	 */
+	public long getStartRealtimeNanos() {
+		return startRealtimeNanos;
+	}
+
+	/**
+	 * Reads the next record into the given instance.
+	 *
+	 * @param record The record to fill
+	 * @return True if a record was read, false if the end of the file was reached
+	 * @throws IOException If the file could not be read
+	 */
+	public boolean next(SessionRecord record) throws IOException {
+		if (!fill(SessionFormat.RECORD_SIZE)) {
+			return false;
+		}
+		int start = buffer.position();
+
+		record.sensorId = buffer.get() & 0xFF;
+		record.eventType = SessionFormat.eventType(record.sensorId);
+		record.payloadType = buffer.get();
+		record.valueCount = buffer.get() & 0xFF;
+		buffer.get();
+		record.aux = buffer.getInt();
+		record.timestampNanos = buffer.getLong();
+
+		if (record.payloadType == SessionFormat.PAYLOAD_DOUBLE) {
+			record.valueCount = Math.min(record.valueCount, SessionFormat.MAX_DOUBLE_VALUES);
+			for (int i = 0; i < record.valueCount; i++) {
+				record.doubleValues[i] = buffer.getDouble();
+			}
+		} else {
+			record.valueCount = Math.min(record.valueCount, SessionFormat.MAX_FLOAT_VALUES);
+			for (int i = 0; i < record.valueCount; i++) {
+				record.floatValues[i] = buffer.getFloat();
+			}
+		}
+
+		buffer.position(start + SessionFormat.RECORD_SIZE);
+		return true;
+	}
+
+	@Override
+	public void close() throws IOException {
+		channel.close();
+	}
+
+	/**
+	 * Makes sure that at least the given number of bytes is available in the buffer.
+	 *
+	 * @return False if the end of the file was reached before enough bytes were available
+	 */
+	private boolean fill(int bytes) throws IOException {
+		if (buffer.remaining() >= bytes) {
+			return true;
+		}
+		buffer.compact();
+		while (buffer.position() < bytes) {
+			if (channel.read(buffer) < 0) {
+				break;
+			}
+		}
+		buffer.flip();
+		return buffer.remaining() >= bytes;
+	}
+}
@@ -0,0 +1,60 @@
+package org.hitlabnz.motionrecorder.session;
+
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
+
+/**
+ * A single record that was read from a session file. Instances are reused by the {@link SessionReader}, so the values
+ * are only valid until the next record is read into the same instance.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class SessionRecord {
+
+	/**
+	 * The raw sensor id as stored in the file
+	 */
+	public int sensorId;
+
+	/**
+	 * The type of the event or null, if the sensor id is unknown
+	 */
+	public EventType eventType;
+
+	/**
+	 * Either {@link SessionFormat#PAYLOAD_FLOAT} or {@link SessionFormat#PAYLOAD_DOUBLE}
+	 */
+	public byte payloadType;
+
+	/**
+	 * Number of valid entries in floatValues or doubleValues, depending on the payload type
+	 */
+	public int valueCount;
+
+	/**
+	 * Auxiliary value of the record, e.g. the picture number
+	 */
+	public int aux;
+
+	/**
+	 * Time in nanoseconds since the recording was started
+	 */
+	public long timestampNanos;
+
+	/**
+	 * The float values of the record, if the payload type is {@link SessionFormat#PAYLOAD_FLOAT}
+	 */
+	public final float[] floatValues = new float[SessionFormat.MAX_FLOAT_VALUES];
+
+	/**
+	 * The double values of the record, if the payload type is {@link SessionFormat#PAYLOAD_DOUBLE}
+	 */
+	public final double[] doubleValues = new double[SessionFormat.MAX_DOUBLE_VALUES];
+
+	/**
+	 * Returns the timestamp of this record in milliseconds since the recording was started
+	 */
+	public long elapsedTimeMillis() {
+		return timestampNanos / 1000000L;
+	}
+}
@@ -0,0 +1,138 @@
+package org.hitlabnz.motionrecorder.session;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.EnumMap;
+import java.util.Map;
+
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
+
+/**
+ * Converts a binary session file into the per-sensor text files ("Gyroscope.txt", "GPS.txt", ...) that were written
+ * by the recorders before the binary format was introduced, so existing evaluation tools keep working.
+ *
+ * Can be used on a desktop machine: <code>java SessionTextConverter Session.bin [outputFolder]</code>
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class SessionTextConverter {
+
+	/**
+	 * Formatter for the lines, identical to the one used by the recorders
+	 */
+	private final TextRecordFormatter formatter = new TextRecordFormatter();
+
+	/**
+	 * One writer per event type that occurred in the session
+	 */
+	private final Map<EventType, Writer> writers = new EnumMap<EventType, Writer>(EventType.class);
+
+	private final File outputFolder;
+
+	private SessionTextConverter(File outputFolder) {
+		this.outputFolder = outputFolder;
+	}
+
+	/**
+	 * Converts the given session file into text files.
+	 *
+	 * @param sessionFile The binary session file
+	 * @param outputFolder The folder where the text files are created
+	 * @return The number of records that were converted
+	 * @throws IOException If reading the session or writing the text files failed
+	 */
+	public static long convert(File sessionFile, File outputFolder) throws IOException {
+		SessionTextConverter converter = new SessionTextConverter(outputFolder);
+		SessionReader reader = new SessionReader(sessionFile);
+		SessionRecord record = new SessionRecord();
+		long count = 0;
+		try {
+			while (reader.next(record)) {
+				if (record.eventType != null) {
+					converter.write(record);
+					count++;
+				}
+			}
+		} finally {
+			reader.close();
+			converter.closeWriters();
+		}
+		return count;
+	}
+
+	private void write(SessionRecord record) throws IOException {
+		Writer writer = writers.get(record.eventType);
+		if (writer == null) {
+			writer = new BufferedWriter(new FileWriter(new File(outputFolder,
+					SessionFormat.textFileName(record.eventType))));
+			writers.put(record.eventType, writer);
+		}
+
+		long elapsedTime = record.elapsedTimeMillis();
+		formatter.reset();
+		switch (record.eventType) {
+		case FusedRotationVector1:
+		case FusedRotationVector2:
+			formatter.append("Time:").appendFixed(elapsedTime / 1000f, 3).append(";Quaternion:")
+					.appendFixed(record.floatValues[0], 3).append(", ").appendFixed(record.floatValues[1], 3)
+					.append(", ").appendFixed(record.floatValues[2], 3).append(", ")
+					.appendFixed(record.floatValues[3], 3).append('\n');
+			break;
+		case Gps:
+			formatter.appendTimestamp(elapsedTime).append(record.doubleValues[0]).append(',')
+					.append(record.doubleValues[1]).append('\n');
+			break;
+		case Picture:
+			formatter.appendTimestamp(elapsedTime).append(record.aux);
+			if (record.payloadType == SessionFormat.PAYLOAD_DOUBLE && record.valueCount > 0) {
+				// Frame of a video with its presentation timestamp in microseconds
+				formatter.append(',').append((long) record.doubleValues[0]).append('\n');
+			} else {
+				// Sessions without the format of the picture only stored JPEG pictures
+				int pictureFormat = record.valueCount > 0 ? (int) record.floatValues[0] : SessionFormat.PICTURE_JPEG;
+				formatter.append(SessionFormat.pictureExtension(pictureFormat)).append('\n');
+			}
+			break;
+		case FrameDrop:
+			// Camera frame that was dropped before the picture with the number aux
+			formatter.appendTimestamp(elapsedTime).append(record.aux).append(',')
+					.append((long) record.floatValues[0]).append('\n');
+			break;
+		default:
+			formatter.appendTimestamp(elapsedTime).append(record.floatValues[0]).append(',')
+					.append(record.floatValues[1]).append(',').append(record.floatValues[2]).append('\n');
+			break;
+		}
+		formatter.writeTo(writer);
+	}
+
+	private void closeWriters() throws IOException {
+		IOException exception = null;
+		for (Writer writer : writers.values()) {
+			try {
+				writer.close();
+			} catch (IOException e) {
+				exception = e;
+			}
+		}
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 1) {
+			System.err.println("Usage: SessionTextConverter <session file> [output folder]");
+			System.exit(1);
+		}
+		File sessionFile = new File(args[0]);
+		File outputFolder = args.length > 1 ? new File(args[1]) : sessionFile.getAbsoluteFile().getParentFile();
+		outputFolder.mkdirs();
+		long count = convert(sessionFile, outputFolder);
+		System.out.println("Converted " + count + " records to " + outputFolder.getAbsolutePath());
+	}
+}
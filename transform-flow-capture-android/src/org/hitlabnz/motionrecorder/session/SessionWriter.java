@@ -0,0 +1,328 @@
+package org.hitlabnz.motionrecorder.session;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.locks.LockSupport;
+
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
+import org.hitlabnz.motionrecorder.session.RecordRingBuffer.OverflowPolicy;
+
+/**
+ * Writes the events of all recorders into one binary session file (see {@link SessionFormat}).
+ *
+ * A single instance is shared between all recorders of a session. Recorders publish their records into a
+ * preallocated lock-free {@link RecordRingBuffer} and return immediately; a dedicated I/O thread drains the ring in
+ * batches and writes them to the file. A slow storage therefore never stalls the sensor callbacks, and writing a
+ * record does not allocate any objects.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class SessionWriter implements Closeable {
+
+	/**
+	 * Default number of records the ring buffer can hold (about 1.5 MB, several seconds of all sensors)
+	 */
+	public static final int DEFAULT_CAPACITY = 32768;
+
+	/**
+	 * Default behaviour when the ring buffer is full
+	 */
+	public static final OverflowPolicy DEFAULT_OVERFLOW_POLICY = OverflowPolicy.COUNT_AND_DROP;
+
+	/**
+	 * Number of records that are collected before they are written to the file
+	 */
+	private static final int BATCH_RECORDS = 1024;
+
+	/**
+	 * Time in milliseconds after which a partially filled batch is written to the file
+	 */
+	private static final long FLUSH_INTERVAL_MS = 500;
+
+	/**
+	 * Time the I/O thread waits, if there are no records to write
+	 */
+	private static final long IDLE_PARK_NANOS = 2000000L;
+
+	/**
+	 * Maximum time in milliseconds that closing waits for records, that were claimed but not yet published
+	 */
+	private static final long CLOSE_TIMEOUT_MS = 1000;
+
+	/**
+	 * The file channel of the session file, only accessed by the I/O thread
+	 */
+	private final FileChannel channel;
+
+	/**
+	 * Buffer that collects a batch of records before it is written to the channel, only accessed by the I/O thread
+	 */
+	private final ByteBuffer batchBuffer;
+
+	/**
+	 * The ring buffer between the recorders and the I/O thread
+	 */
+	private final RecordRingBuffer ring;
+
+	/**
+	 * The thread that writes the records to the file
+	 */
+	private final Thread ioThread;
+
+	/**
+	 * Flag indicating, whether the I/O thread should keep on running
+	 */
+	private volatile boolean running = true;
+
+	/**
+	 * The first error that occurred while writing the file
+	 */
+	private volatile IOException failure;
+
+	/**
+	 * Number of records that were taken from the queue to be written to the file so far
+	 */
+	private volatile long writtenCount = 0;
+
+	/**
+	 * Creates a new session file with the default capacity and overflow policy.
+	 *
+	 * @param file The target file, an existing file will be overwritten
+	 * @param startTimeMillis Wall-clock time in milliseconds when the recording was started
+	 * @param startRealtimeNanos Elapsed realtime in nanoseconds when the recording was started
+	 * @throws IOException If the file could not be created
+	 */
+	public SessionWriter(File file, long startTimeMillis, long startRealtimeNanos) throws IOException {
+		this(file, startTimeMillis, startRealtimeNanos, DEFAULT_CAPACITY, DEFAULT_OVERFLOW_POLICY);
+	}
+
+	/**
+	 * Creates a new session file, writes the header and starts the I/O thread.
+	 *
+	 * @param file The target file, an existing file will be overwritten
+	 * @param startTimeMillis Wall-clock time in milliseconds when the recording was started
+	 * @param startRealtimeNanos Elapsed realtime in nanoseconds when the recording was started
+	 * @param capacity Number of records that can be queued before the overflow policy applies
+	 * @param overflowPolicy What happens to new records, if the queue is full
+	 * @throws IOException If the file could not be created
+	 */
+	public SessionWriter(File file, long startTimeMillis, long startRealtimeNanos, int capacity,
+			OverflowPolicy overflowPolicy) throws IOException {
+		channel = new FileOutputStream(file).getChannel();
+		ring = new RecordRingBuffer(capacity, SessionFormat.RECORD_SIZE, overflowPolicy);
+		batchBuffer = ByteBuffer.allocateDirect(BATCH_RECORDS * SessionFormat.RECORD_SIZE);
+		batchBuffer.order(SessionFormat.BYTE_ORDER);
+
+		batchBuffer.putInt(SessionFormat.MAGIC);
+		batchBuffer.putShort(SessionFormat.VERSION);
+		batchBuffer.putShort((short) SessionFormat.RECORD_SIZE);
+		batchBuffer.putLong(startTimeMillis);
+		batchBuffer.putLong(startRealtimeNanos);
+		while (batchBuffer.position() < SessionFormat.HEADER_SIZE) {
+			batchBuffer.put((byte) 0);
+		}
+
+		ioThread = new Thread(new IoLoop(), "SessionWriter");
+		ioThread.start();
+	}
+
+	/**
+	 * Appends a record with float values. Can be called from any thread.
+	 *
+	 * @param eventType The type of the recorded event
+	 * @param timestampNanos Time in nanoseconds since the recording was started
+	 * @param aux Auxiliary value of the record, e.g. the picture number
+	 * @param values The values to store, may be null if count is 0
+	 * @param count Number of values to store, at most {@link SessionFormat#MAX_FLOAT_VALUES}
+	 * @throws IOException If the session was closed or writing the file failed
+	 */
+	public void writeFloats(EventType eventType, long timestampNanos, int aux, float[] values, int count)
+			throws IOException {
+		count = Math.min(count, SessionFormat.MAX_FLOAT_VALUES);
+		long sequence = beginRecord(eventType, SessionFormat.PAYLOAD_FLOAT, count, aux, timestampNanos);
+		if (sequence < 0) {
+			return;
+		}
+		ByteBuffer buffer = ring.buffer();
+		int offset = ring.offset(sequence) + SessionFormat.PAYLOAD_OFFSET;
+		for (int i = 0; i < SessionFormat.MAX_FLOAT_VALUES; i++) {
+			buffer.putFloat(offset + i * 4, i < count ? values[i] : 0);
+		}
+		ring.publish(sequence);
+	}
+
+	/**
+	 * Appends a record with double values. Can be called from any thread.
+	 *
+	 * @param eventType The type of the recorded event
+	 * @param timestampNanos Time in nanoseconds since the recording was started
+	 * @param aux Auxiliary value of the record
+	 * @param values The values to store, may be null if count is 0
+	 * @param count Number of values to store, at most {@link SessionFormat#MAX_DOUBLE_VALUES}
+	 * @throws IOException If the session was closed or writing the file failed
+	 */
+	public void writeDoubles(EventType eventType, long timestampNanos, int aux, double[] values, int count)
+			throws IOException {
+		count = Math.min(count, SessionFormat.MAX_DOUBLE_VALUES);
+		long sequence = beginRecord(eventType, SessionFormat.PAYLOAD_DOUBLE, count, aux, timestampNanos);
+		if (sequence < 0) {
+			return;
+		}
+		ByteBuffer buffer = ring.buffer();
+		int offset = ring.offset(sequence) + SessionFormat.PAYLOAD_OFFSET;
+		for (int i = 0; i < SessionFormat.MAX_DOUBLE_VALUES; i++) {
+			buffer.putDouble(offset + i * 8, i < count ? values[i] : 0);
+		}
+		ring.publish(sequence);
+	}
+
+	/**
+	 * Returns the number of records that were taken from the queue to be written to the file so far.
+	 */
+	public long getRecordCount() {
+		return writtenCount;
+	}
+
+	/**
+	 * Returns the number of records that were dropped, because the queue was full or because they were not written
+	 * before the session was closed.
+	 */
+	public long getDroppedCount() {
+		return ring.getDroppedCount();
+	}
+
+	/**
+	 * Returns the number of records that are queued and not yet written.
+	 */
+	public long getQueuedCount() {
+		return ring.getQueuedCount();
+	}
+
+	/**
+	 * Writes all queued records to the file, stops the I/O thread and closes the file.
+	 *
+	 * @throws IOException If writing the file failed at any time during the session
+	 */
+	@Override
+	public void close() throws IOException {
+		running = false;
+		LockSupport.unpark(ioThread);
+		boolean interrupted = false;
+		while (ioThread.isAlive()) {
+			try {
+				ioThread.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * Claims a slot in the ring buffer and writes the record header into it.
+	 *
+	 * @return The sequence number of the slot or -1, if the record was dropped
+	 */
+	private long beginRecord(EventType eventType, byte payloadType, int count, int aux, long timestampNanos)
+			throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+		if (!running) {
+			throw new ClosedChannelException();
+		}
+		long sequence = ring.claim();
+		if (sequence < 0) {
+			if (failure != null) {
+				throw failure;
+			}
+			return -1;
+		}
+		ByteBuffer buffer = ring.buffer();
+		int offset = ring.offset(sequence);
+		buffer.put(offset, (byte) SessionFormat.sensorId(eventType));
+		buffer.put(offset + 1, payloadType);
+		buffer.put(offset + 2, (byte) count);
+		buffer.put(offset + 3, (byte) 0);
+		buffer.putInt(offset + 4, aux);
+		buffer.putLong(offset + 8, timestampNanos);
+		return sequence;
+	}
+
+	/**
+	 * The loop of the I/O thread that drains the ring buffer into the file.
+	 */
+	private class IoLoop implements Runnable {
+
+		@Override
+		public void run() {
+			try {
+				long lastWrite = System.currentTimeMillis();
+				while (running) {
+					int drained = drain();
+					if (isBatchFull()
+							|| (batchBuffer.position() > 0 && System.currentTimeMillis() - lastWrite > FLUSH_INTERVAL_MS)) {
+						writeBatch();
+						lastWrite = System.currentTimeMillis();
+					} else if (drained == 0) {
+						LockSupport.parkNanos(IDLE_PARK_NANOS);
+					}
+				}
+
+				// Write everything that was published before the session was closed
+				long deadline = System.currentTimeMillis() + CLOSE_TIMEOUT_MS;
+				while (ring.getQueuedCount() > 0 && System.currentTimeMillis() < deadline) {
+					if (drain() == 0) {
+						Thread.yield();
+					}
+					if (isBatchFull()) {
+						writeBatch();
+					}
+				}
+				writeBatch();
+			} catch (IOException e) {
+				failure = e;
+			} finally {
+				running = false;
+				// Nobody drains the ring anymore: count what is left and release producers that wait for a slot
+				ring.close();
+				try {
+					channel.close();
+				} catch (IOException e) {
+					if (failure == null) {
+						failure = e;
+					}
+				}
+			}
+		}
+
+		private int drain() {
+			int drained = ring.drainTo(batchBuffer, BATCH_RECORDS);
+			writtenCount += drained;
+			return drained;
+		}
+
+		private boolean isBatchFull() {
+			return batchBuffer.remaining() < SessionFormat.RECORD_SIZE;
+		}
+
+		private void writeBatch() throws IOException {
+			batchBuffer.flip();
+			while (batchBuffer.hasRemaining()) {
+				channel.write(batchBuffer);
+			}
+			batchBuffer.clear();
+		}
+	}
+}
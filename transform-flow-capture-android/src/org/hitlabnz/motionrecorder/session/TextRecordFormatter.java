@@ -0,0 +1,477 @@
+package org.hitlabnz.motionrecorder.session;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.DecimalFormatSymbols;
+import java.util.Locale;
+import java.util.TimeZone;
+
+/**
+ * Builds the lines of the text files in a reusable character buffer, without allocating objects per line.
+ *
+ * The output is identical to the formatting that was used before: the elapsed time is formatted like
+ * <code>new SimpleDateFormat("mm:ss.SSS;").format(new Date(elapsedTime))</code>, floats like
+ * {@link String#valueOf(float)} (shortest representation that reads back as the same float) and fixed-point values
+ * like <code>String.format("%.3f", value)</code>. Values outside the range that can be converted exactly with integer
+ * arithmetic are passed to the JDK instead, which allocates, but does not occur for sensor data.
+ *
+ * An instance is not thread-safe, every recorder uses its own.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class TextRecordFormatter {
+
+	private static final int MILLIS_PER_MINUTE = 60000;
+
+	private static final int MILLIS_PER_HOUR = 60 * MILLIS_PER_MINUTE;
+
+	/**
+	 * Powers of ten that fit into a long
+	 */
+	private static final long[] POW10 = new long[19];
+
+	/**
+	 * Powers of five that fit into a long
+	 */
+	private static final long[] POW5 = new long[28];
+
+	static {
+		POW10[0] = 1;
+		for (int i = 1; i < POW10.length; i++) {
+			POW10[i] = POW10[i - 1] * 10;
+		}
+		POW5[0] = 1;
+		for (int i = 1; i < POW5.length; i++) {
+			POW5[i] = POW5[i - 1] * 5;
+		}
+	}
+
+	/**
+	 * Range of decimal exponents of floats that are converted without the JDK. Within this range all intermediate
+	 * values of the conversion fit into a long.
+	 */
+	private static final int MIN_EXACT_EXPONENT = -7;
+
+	private static final int MAX_EXACT_EXPONENT = 14;
+
+	/**
+	 * Number of trailing digits that Float.toString drops from integer values, indexed by the number of bits beyond
+	 * the precision of a float (taken from the JDK's FloatingDecimal)
+	 */
+	private static final int[] INSIGNIFICANT_DIGITS = { 0, 0, 0, 0, 1, 1, 1, 2, 2, 2, 3, 3, 3, 3, 4, 4, 4, 5, 5, 5, 6,
+			6, 6, 6, 7, 7, 7, 8, 8, 8, 9, 9, 9, 9, 10, 10, 10, 11, 11, 11, 12, 12, 12, 12, 13, 13, 13, 14, 14, 14, 15,
+			15, 15, 15, 16, 16, 16, 17, 17, 17, 18, 18, 18, 19 };
+
+	/**
+	 * Maximum number of significant digits of a float
+	 */
+	private static final int MAX_FLOAT_DIGITS = 9;
+
+	/**
+	 * Largest absolute value that is formatted as fixed-point without the JDK
+	 */
+	private static final double MAX_FIXED_VALUE = 1e9;
+
+	/**
+	 * Offset of the default time zone at the epoch, that SimpleDateFormat applies to the elapsed time
+	 */
+	private final int timeZoneOffset;
+
+	/**
+	 * Decimal separator and zero digit that String.format uses for the default locale
+	 */
+	private final char decimalSeparator;
+
+	private final char zeroDigit;
+
+	private char[] buffer = new char[128];
+
+	private int length = 0;
+
+	/**
+	 * Digits of the last converted number, in reverse order
+	 */
+	private final char[] digits = new char[20];
+
+	public TextRecordFormatter() {
+		timeZoneOffset = TimeZone.getDefault().getOffset(0L);
+		DecimalFormatSymbols symbols = new DecimalFormatSymbols(Locale.getDefault());
+		decimalSeparator = symbols.getDecimalSeparator();
+		zeroDigit = symbols.getZeroDigit();
+	}
+
+	/**
+	 * Clears the buffer to start a new line.
+	 */
+	public TextRecordFormatter reset() {
+		length = 0;
+		return this;
+	}
+
+	/**
+	 * Returns the number of characters in the buffer.
+	 */
+	public int length() {
+		return length;
+	}
+
+	/**
+	 * Writes the content of the buffer to the given writer.
+	 */
+	public void writeTo(Writer writer) throws IOException {
+		writer.write(buffer, 0, length);
+	}
+
+	@Override
+	public String toString() {
+		return new String(buffer, 0, length);
+	}
+
+	public TextRecordFormatter append(char c) {
+		ensureCapacity(1);
+		buffer[length++] = c;
+		return this;
+	}
+
+	public TextRecordFormatter append(String s) {
+		int count = s.length();
+		ensureCapacity(count);
+		s.getChars(0, count, buffer, length);
+		length += count;
+		return this;
+	}
+
+	/**
+	 * Appends the value like {@link String#valueOf(long)}.
+	 */
+	public TextRecordFormatter append(long value) {
+		if (value == Long.MIN_VALUE) {
+			return append(Long.toString(value));
+		}
+		if (value < 0) {
+			append('-');
+			value = -value;
+		}
+		int count = 0;
+		do {
+			digits[count++] = (char) ('0' + value % 10);
+			value /= 10;
+		} while (value != 0);
+		appendDigits(count, '0');
+		return this;
+	}
+
+	/**
+	 * Appends the elapsed time like SimpleDateFormat with the pattern "mm:ss.SSS;" applied to a Date of that time.
+	 *
+	 * @param elapsedTime Time in milliseconds since the recording was started
+	 */
+	public TextRecordFormatter appendTimestamp(long elapsedTime) {
+		long local = elapsedTime + timeZoneOffset;
+		int withinHour = (int) (local % MILLIS_PER_HOUR);
+		if (withinHour < 0) {
+			withinHour += MILLIS_PER_HOUR;
+		}
+		int minutes = withinHour / MILLIS_PER_MINUTE;
+		int seconds = (withinHour / 1000) % 60;
+		int millis = withinHour % 1000;
+		ensureCapacity(10);
+		buffer[length++] = (char) ('0' + minutes / 10);
+		buffer[length++] = (char) ('0' + minutes % 10);
+		buffer[length++] = ':';
+		buffer[length++] = (char) ('0' + seconds / 10);
+		buffer[length++] = (char) ('0' + seconds % 10);
+		buffer[length++] = '.';
+		buffer[length++] = (char) ('0' + millis / 100);
+		buffer[length++] = (char) ('0' + (millis / 10) % 10);
+		buffer[length++] = (char) ('0' + millis % 10);
+		buffer[length++] = ';';
+		return this;
+	}
+
+	/**
+	 * Appends the value like {@link String#valueOf(float)}.
+	 */
+	public TextRecordFormatter append(float value) {
+		if (Float.isNaN(value) || Float.isInfinite(value)) {
+			return append(Float.toString(value));
+		}
+		int bits = Float.floatToRawIntBits(value);
+		if ((bits & 0x7fffffff) == 0) {
+			return append(bits < 0 ? "-0.0" : "0.0");
+		}
+
+		// The value is mantissa * 2^binaryExponent
+		int biasedExponent = (bits >>> 23) & 0xff;
+		long mantissa = bits & 0x7fffff;
+		int binaryExponent;
+		if (biasedExponent == 0) {
+			binaryExponent = -149;
+		} else {
+			mantissa |= 0x800000;
+			binaryExponent = biasedExponent - 150;
+		}
+
+		int exponent = (int) Math.floor(Math.log10(Math.abs((double) value)));
+		if (exponent < MIN_EXACT_EXPONENT || exponent > MAX_EXACT_EXPONENT) {
+			return append(Float.toString(value));
+		}
+
+		// The value is printed as decimal * 10^scale
+		long decimal;
+		int scale;
+		if (binaryExponent >= 0 || Long.numberOfTrailingZeros(mantissa) >= -binaryExponent) {
+			// Float.toString prints integer values with all their digits instead of the shortest representation
+			decimal = binaryExponent >= 0 ? mantissa << binaryExponent : mantissa >> -binaryExponent;
+			int excessBits = binaryExponent - 2;
+			scale = excessBits > 1 && excessBits < INSIGNIFICANT_DIGITS.length ? INSIGNIFICANT_DIGITS[excessBits] : 0;
+			if (scale > 0) {
+				long divisor = POW10[scale];
+				long residue = decimal % divisor;
+				decimal /= divisor;
+				if (residue >= divisor / 2) {
+					decimal++;
+				}
+			}
+		} else {
+			// Correct the estimated exponent, so that the value rounded to the maximum precision has all digits
+			while (true) {
+				if (exponent < MIN_EXACT_EXPONENT || exponent > MAX_EXACT_EXPONENT) {
+					return append(Float.toString(value));
+				}
+				decimal = roundScaled(mantissa, binaryExponent, exponent - MAX_FLOAT_DIGITS + 1);
+				if (decimal >= POW10[MAX_FLOAT_DIGITS]) {
+					exponent++;
+				} else if (decimal < POW10[MAX_FLOAT_DIGITS - 1]) {
+					exponent--;
+				} else {
+					break;
+				}
+			}
+
+			// Find the shortest number of significant digits that reads back as the same float. If a precision reads
+			// back, all higher ones do as well, except at a power of two, where the lower neighbour is closer.
+			int shortest = MAX_FLOAT_DIGITS;
+			if (mantissa == 0x800000) {
+				for (int precision = 1; precision < MAX_FLOAT_DIGITS; precision++) {
+					if (readsBack(mantissa, binaryExponent, exponent - precision + 1)) {
+						shortest = precision;
+						break;
+					}
+				}
+			} else {
+				int low = 1;
+				while (low < shortest) {
+					int precision = (low + shortest) >>> 1;
+					if (readsBack(mantissa, binaryExponent, exponent - precision + 1)) {
+						shortest = precision;
+					} else {
+						low = precision + 1;
+					}
+				}
+			}
+			scale = exponent - shortest + 1;
+			decimal = roundScaled(mantissa, binaryExponent, scale);
+		}
+
+		while (decimal % 10 == 0) {
+			decimal /= 10;
+			scale++;
+		}
+		int count = 0;
+		while (decimal != 0) {
+			digits[count++] = (char) ('0' + decimal % 10);
+			decimal /= 10;
+		}
+		exponent = scale + count - 1;
+
+		if (value < 0) {
+			append('-');
+		}
+		ensureCapacity(count + 8);
+		if (exponent >= -3 && exponent < 7) {
+			// Plain notation with at least one digit after the decimal point
+			if (exponent < 0) {
+				buffer[length++] = '0';
+				buffer[length++] = '.';
+				for (int i = -1; i > exponent; i--) {
+					buffer[length++] = '0';
+				}
+				appendDigits(count, '0');
+			} else {
+				int integerDigits = exponent + 1;
+				for (int i = 0; i < integerDigits; i++) {
+					buffer[length++] = i < count ? digits[count - 1 - i] : '0';
+				}
+				buffer[length++] = '.';
+				if (count > integerDigits) {
+					for (int i = integerDigits; i < count; i++) {
+						buffer[length++] = digits[count - 1 - i];
+					}
+				} else {
+					buffer[length++] = '0';
+				}
+			}
+		} else {
+			// Computerized scientific notation, e.g. 1.0E-4
+			buffer[length++] = digits[count - 1];
+			buffer[length++] = '.';
+			if (count > 1) {
+				for (int i = count - 2; i >= 0; i--) {
+					buffer[length++] = digits[i];
+				}
+			} else {
+				buffer[length++] = '0';
+			}
+			buffer[length++] = 'E';
+			append((long) exponent);
+		}
+		return this;
+	}
+
+	/**
+	 * Appends the value like <code>String.format("%." + decimals + "f", value)</code> with the default locale.
+	 *
+	 * @param value The value to format
+	 * @param decimals Number of digits after the decimal separator (0 to 9)
+	 */
+	public TextRecordFormatter appendFixed(float value, int decimals) {
+		double magnitude = Math.abs((double) value);
+		if (Float.isNaN(value) || !(magnitude < MAX_FIXED_VALUE) || decimals < 0 || decimals > 9) {
+			return append(String.format("%." + decimals + "f", value));
+		}
+		// The float has 24 significant bits, so the scaled value is exact and rounding it is the same as rounding
+		// the decimal digits of the value half-up, like Formatter does
+		long scaled = (long) Math.floor(magnitude * POW10[decimals] + 0.5);
+		if (Float.floatToRawIntBits(value) < 0) {
+			append('-');
+		}
+		int count = 0;
+		do {
+			digits[count++] = (char) ('0' + scaled % 10);
+			scaled /= 10;
+		} while (scaled != 0 || count <= decimals);
+		ensureCapacity(count + 1);
+		for (int i = count - 1; i >= 0; i--) {
+			if (i == decimals - 1) {
+				buffer[length++] = decimalSeparator;
+			}
+			buffer[length++] = (char) (digits[i] - '0' + zeroDigit);
+		}
+		return this;
+	}
+
+	/**
+	 * Appends the value like {@link Double#toString(double)}. This allocates a string and should only be used for
+	 * rare events, like GPS fixes.
+	 */
+	public TextRecordFormatter append(double value) {
+		return append(Double.toString(value));
+	}
+
+	/**
+	 * Rounds mantissa * 2^binaryExponent / 10^scale half-even to an integer.
+	 */
+	private static long roundScaled(long mantissa, int binaryExponent, int scale) {
+		// Write the quotient as numerator / 2^shift with numerator = mantissa * 5^-scale (or / 5^scale)
+		long numerator = mantissa;
+		long denominator = 1;
+		int shift = binaryExponent - scale;
+		if (scale < 0) {
+			numerator *= POW5[-scale];
+		} else {
+			denominator = POW5[scale];
+		}
+		if (shift >= 0) {
+			numerator <<= shift;
+		} else if (-shift < 62 - bitLength(denominator)) {
+			denominator <<= -shift;
+		} else {
+			return 0;
+		}
+		long quotient = numerator / denominator;
+		long twiceRemainder = 2 * (numerator - quotient * denominator);
+		if (twiceRemainder > denominator || (twiceRemainder == denominator && (quotient & 1) != 0)) {
+			quotient++;
+		}
+		return quotient;
+	}
+
+	/**
+	 * Returns true, if the float mantissa * 2^binaryExponent rounded to a multiple of 10^scale reads back as the same
+	 * float.
+	 */
+	private static boolean readsBack(long mantissa, int binaryExponent, int scale) {
+		return roundsTo(roundScaled(mantissa, binaryExponent, scale), scale, mantissa, binaryExponent);
+	}
+
+	/**
+	 * Returns true, if decimal * 10^scale is rounded to the float mantissa * 2^binaryExponent.
+	 */
+	private static boolean roundsTo(long decimal, int scale, long mantissa, int binaryExponent) {
+		// The float is selected by all values between the midpoints to its neighbours, written as
+		// (4 * mantissa +- 2) * 2^(binaryExponent - 2). At a power of two, the lower neighbour is closer.
+		long lower = 4 * mantissa - (mantissa == 0x800000 && binaryExponent > -149 ? 1 : 2);
+		long upper = 4 * mantissa + 2;
+		boolean inclusive = (mantissa & 1) == 0;
+		// decimal * 10^scale = decimal * 5^scale * 2^scale, compare decimal * 5^scale * 2^(scale - exp + 2) with
+		// the bounds
+		long value = decimal;
+		long factor = 1;
+		if (scale >= 0) {
+			value *= POW5[scale];
+		} else {
+			factor = POW5[-scale];
+		}
+		int shift = scale - binaryExponent + 2;
+		// Compare value * 2^shift with bound * factor
+		int lowerCompare = compareScaled(value, shift, lower, factor);
+		int upperCompare = compareScaled(value, shift, upper, factor);
+		if (inclusive) {
+			return lowerCompare >= 0 && upperCompare <= 0;
+		}
+		return lowerCompare > 0 && upperCompare < 0;
+	}
+
+	/**
+	 * Compares value * 2^shift with bound * factor.
+	 */
+	private static int compareScaled(long value, int shift, long bound, long factor) {
+		long right = bound * factor;
+		if (shift >= 0) {
+			if (shift >= 63 - bitLength(value)) {
+				return 1;
+			}
+			value <<= shift;
+		} else {
+			if (-shift >= 63 - bitLength(right)) {
+				return -1;
+			}
+			right <<= -shift;
+		}
+		return value < right ? -1 : (value == right ? 0 : 1);
+	}
+
+	private static int bitLength(long value) {
+		return 64 - Long.numberOfLeadingZeros(value);
+	}
+
+	/**
+	 * Appends the digits of the digit buffer in reverse order, mapping '0' to the given zero digit.
+	 */
+	private void appendDigits(int count, char zero) {
+		ensureCapacity(count);
+		for (int i = count - 1; i >= 0; i--) {
+			buffer[length++] = (char) (digits[i] - '0' + zero);
+		}
+	}
+
+	private void ensureCapacity(int additional) {
+		if (length + additional > buffer.length) {
+			char[] grown = new char[Math.max(buffer.length * 2, length + additional)];
+			System.arraycopy(buffer, 0, grown, 0, length);
+			buffer = grown;
+		}
+	}
+}
@@ -0,0 +1,94 @@
+package org.hitlabnz.motionrecorder.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hitlabnz.motionrecorder.fusion.ConstantWeighting;
+import org.hitlabnz.motionrecorder.fusion.OrientationFusionEngine;
+import org.hitlabnz.motionrecorder.fusion.VelocityWeighting;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the batch API of the {@link OrientationFusionEngine}, as used for reprocessing recorded sessions: a
+ * stream of gyroscope samples at 200 Hz with a rotation vector after every fourth sample. The score is in samples per
+ * second.
+ *
+ * @author Alexander Pacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FusionEngineBenchmark {
+
+	private static final int SAMPLES = 4096;
+
+	private final int[] sensors = new int[SAMPLES];
+
+	private final long[] timestampsNs = new long[SAMPLES];
+
+	private final float[] values = new float[SAMPLES * OrientationFusionEngine.VALUES_PER_SAMPLE];
+
+	private final float[] orientations = new float[SAMPLES * 4];
+
+	private final OrientationFusionEngine constantEngine = new OrientationFusionEngine(new ConstantWeighting(
+			ConstantWeighting.DEFAULT_WEIGHT));
+
+	private final OrientationFusionEngine velocityEngine = new OrientationFusionEngine(new VelocityWeighting(
+			VelocityWeighting.DEFAULT_FACTOR));
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		long timestamp = 1000000000L;
+		for (int i = 0; i < SAMPLES; i++) {
+			int v = i * OrientationFusionEngine.VALUES_PER_SAMPLE;
+			if (i % 5 == 0) {
+				sensors[i] = OrientationFusionEngine.ROTATION_VECTOR;
+				float x = 0.1f + (float) random.nextGaussian() * 0.01f;
+				float y = 0.2f + (float) random.nextGaussian() * 0.01f;
+				float z = 0.3f + (float) random.nextGaussian() * 0.01f;
+				values[v] = x;
+				values[v + 1] = y;
+				values[v + 2] = z;
+				values[v + 3] = (float) Math.sqrt(1 - x * x - y * y - z * z);
+			} else {
+				sensors[i] = OrientationFusionEngine.GYROSCOPE;
+				timestamp += 5000000L;
+				for (int j = 0; j < 3; j++) {
+					values[v + j] = (float) random.nextGaussian() * 0.05f;
+				}
+			}
+			timestampsNs[i] = timestamp;
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public int constantWeighting() {
+		constantEngine.reset();
+		return constantEngine.process(0, SAMPLES, sensors, timestampsNs, values, orientations, null);
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(SAMPLES)
+	public int twoStrategiesSideBySide() {
+		constantEngine.reset();
+		velocityEngine.reset();
+		int written = constantEngine.process(0, SAMPLES, sensors, timestampsNs, values, orientations, null);
+		return written + velocityEngine.process(0, SAMPLES, sensors, timestampsNs, values, orientations, null);
+	}
+}
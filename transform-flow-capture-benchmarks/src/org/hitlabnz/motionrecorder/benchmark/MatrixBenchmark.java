@@ -0,0 +1,79 @@
+package org.hitlabnz.motionrecorder.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hitlabnz.glassCubeSample.representation.Matrix;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the 4x4 matrix operations. The parallel benchmarks call rotateM from four threads at once, which
+ * would contend on a shared scratch buffer.
+ *
+ * @author Alexander Pacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MatrixBenchmark {
+
+	private final float[] lhs = new float[16];
+
+	private final float[] rhs = new float[16];
+
+	private final float[] output = new float[16];
+
+	private final float[] scratch = new float[Matrix.ROTATE_SCRATCH_SIZE];
+
+	@Setup
+	public void setup() {
+		Matrix.setRotateM(lhs, 0, 30, 0.2f, 0.5f, 0.8f);
+		Matrix.translateM(lhs, 0, 1, 2, 3);
+		Matrix.setRotateM(rhs, 0, -45, 0.7f, 0.1f, 0.3f);
+		Matrix.scaleM(rhs, 0, 2, 2, 2);
+	}
+
+	@Benchmark
+	public float[] multiplyMM() {
+		Matrix.multiplyMM(output, 0, lhs, 0, rhs, 0);
+		return output;
+	}
+
+	@Benchmark
+	public float[] invertM() {
+		Matrix.invertM(output, 0, lhs, 0);
+		return output;
+	}
+
+	@Benchmark
+	public float[] rotateM() {
+		Matrix.rotateM(output, 0, lhs, 0, 0.5f, 0.2f, 0.5f, 0.8f);
+		return output;
+	}
+
+	@Benchmark
+	public float[] rotateMWithScratch() {
+		Matrix.rotateM(output, 0, lhs, 0, 0.5f, 0.2f, 0.5f, 0.8f, scratch, 0);
+		return output;
+	}
+
+	@Benchmark
+	@Threads(4)
+	public float[] rotateMParallel() {
+		Matrix.rotateM(output, 0, lhs, 0, 0.5f, 0.2f, 0.5f, 0.8f);
+		return output;
+	}
+}
@@ -0,0 +1,176 @@
+package org.hitlabnz.motionrecorder.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hitlabnz.glassCubeSample.representation.Quaternion;
+import org.hitlabnz.motionrecorder.math.QuatArray;
+import org.hitlabnz.motionrecorder.math.QuatBatch;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the batch quaternion operations of {@link QuatBatch} on structure-of-arrays buffers, against the same
+ * operations on one Quaternion object after the other. The score is in quaternions per second.
+ *
+ * @author Alexander Pacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuaternionBatchBenchmark {
+
+	static final int COUNT = 1024;
+
+	private final Quaternion[] a = new Quaternion[COUNT];
+
+	private final Quaternion[] aConjugate = new Quaternion[COUNT];
+
+	private final Quaternion[] b = new Quaternion[COUNT];
+
+	private final Quaternion[] output = new Quaternion[COUNT];
+
+	private final Quaternion vector = new Quaternion();
+
+	private final Quaternion temp = new Quaternion();
+
+	private final QuatArray aArray = new QuatArray(COUNT);
+
+	private final QuatArray bArray = new QuatArray(COUNT);
+
+	private final QuatArray outputArray = new QuatArray(COUNT);
+
+	private final float[] vx = new float[COUNT];
+
+	private final float[] vy = new float[COUNT];
+
+	private final float[] vz = new float[COUNT];
+
+	private final float[] matrices = new float[COUNT * 16];
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		for (int i = 0; i < COUNT; i++) {
+			a[i] = randomQuaternion(random);
+			b[i] = randomQuaternion(random);
+			output[i] = new Quaternion();
+			aConjugate[i] = new Quaternion();
+			aConjugate[i].setXYZW(-a[i].getX(), -a[i].getY(), -a[i].getZ(), a[i].getW());
+			aArray.set(i, a[i].getX(), a[i].getY(), a[i].getZ(), a[i].getW());
+			bArray.set(i, b[i].getX(), b[i].getY(), b[i].getZ(), b[i].getW());
+			vx[i] = (float) random.nextGaussian();
+			vy[i] = (float) random.nextGaussian();
+			vz[i] = (float) random.nextGaussian();
+		}
+	}
+
+	static Quaternion randomQuaternion(Random random) {
+		Quaternion q = new Quaternion();
+		q.setXYZW((float) random.nextGaussian(), (float) random.nextGaussian(), (float) random.nextGaussian(),
+				(float) random.nextGaussian());
+		q.normalise();
+		return q;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public Quaternion[] multiplyPerObject() {
+		for (int i = 0; i < COUNT; i++) {
+			a[i].multiplyByQuat(b[i], output[i]);
+		}
+		return output;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public QuatArray multiplyBatch() {
+		QuatBatch.multiply(outputArray, aArray, bArray, 0, COUNT);
+		return outputArray;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public Quaternion[] normalizePerObject() {
+		for (int i = 0; i < COUNT; i++) {
+			a[i].normalise();
+		}
+		return a;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public QuatArray normalizeBatch() {
+		QuatBatch.normalize(aArray, aArray, 0, COUNT);
+		return aArray;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public Quaternion[] slerpPerObject() {
+		for (int i = 0; i < COUNT; i++) {
+			a[i].slerp(b[i], output[i], 0.005f);
+		}
+		return output;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public QuatArray slerpBatch() {
+		QuatBatch.slerp(outputArray, aArray, bArray, 0.005f, 0, COUNT);
+		return outputArray;
+	}
+
+	/**
+	 * Rotates the vector v by q * (v, 0) * q^-1 with the object API
+	 */
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public Quaternion rotatePerObject() {
+		for (int i = 0; i < COUNT; i++) {
+			vector.setXYZW(vx[i], vy[i], vz[i], 0);
+			a[i].multiplyByQuat(vector, temp);
+			temp.multiplyByQuat(aConjugate[i], vector);
+		}
+		return vector;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public float[] rotateBatch() {
+		QuatBatch.rotate(aArray, vx, vy, vz, 0, COUNT);
+		return vx;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public float[] toMatrixPerObject() {
+		float[] matrix = null;
+		for (int i = 0; i < COUNT; i++) {
+			// Mark the matrix dirty, as it is only recalculated after the quaternion changed
+			a[i].setW(a[i].getW());
+			matrix = a[i].getMatrix4x4().matrix;
+		}
+		return matrix;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public float[] toMatrixBatch() {
+		QuatBatch.toRotationMatrix(matrices, 0, aArray, 0, COUNT);
+		return matrices;
+	}
+}
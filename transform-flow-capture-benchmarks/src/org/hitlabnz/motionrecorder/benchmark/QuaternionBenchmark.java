@@ -0,0 +1,93 @@
+package org.hitlabnz.motionrecorder.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hitlabnz.glassCubeSample.representation.Quaternion;
+import org.hitlabnz.motionrecorder.math.Quat;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the quaternion operations of the sensor fusion, on the Quaternion of the scene graph and on the
+ * flat math kernel Quat, which works on a packed float array. The negated input of the "opposite" benchmarks takes the branch of slerp along the shorter arc.
+ *
+ * @author Alexander Pacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuaternionBenchmark {
+
+	private final Quaternion a = new Quaternion();
+
+	private final Quaternion b = new Quaternion();
+
+	private final Quaternion opposite = new Quaternion();
+
+	private final Quaternion output = new Quaternion();
+
+	/**
+	 * a, b, opposite and output packed into one array for the kernel
+	 */
+	private final float[] quaternions = new float[16];
+
+	@Setup
+	public void setup() {
+		a.setXYZW(0.1f, 0.2f, 0.3f, 0.927f);
+		a.normalize();
+		b.setXYZW(0.12f, 0.18f, 0.31f, 0.925f);
+		b.normalize();
+		opposite.setXYZW(-b.getX(), -b.getY(), -b.getZ(), -b.getW());
+		System.arraycopy(a.points, 0, quaternions, 0, 4);
+		System.arraycopy(b.points, 0, quaternions, 4, 4);
+		System.arraycopy(opposite.points, 0, quaternions, 8, 4);
+	}
+
+	@Benchmark
+	public Quaternion multiplyByQuat() {
+		a.multiplyByQuat(b, output);
+		return output;
+	}
+
+	@Benchmark
+	public Quaternion slerp() {
+		a.slerp(b, output, 0.005f);
+		return output;
+	}
+
+	@Benchmark
+	public Quaternion slerpOpposite() {
+		a.slerp(opposite, output, 0.005f);
+		return output;
+	}
+
+	@Benchmark
+	public float[] kernelMultiply() {
+		Quat.multiply(quaternions, 12, quaternions, 0, quaternions, 4);
+		return quaternions;
+	}
+
+	@Benchmark
+	public float[] kernelSlerp() {
+		Quat.slerp(quaternions, 12, quaternions, 0, quaternions, 4, 0.005f);
+		return quaternions;
+	}
+
+	@Benchmark
+	public float[] kernelSlerpOpposite() {
+		Quat.slerp(quaternions, 12, quaternions, 0, quaternions, 8, 0.005f);
+		return quaternions;
+	}
+}
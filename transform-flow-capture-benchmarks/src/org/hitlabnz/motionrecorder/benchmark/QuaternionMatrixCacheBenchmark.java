@@ -0,0 +1,154 @@
+package org.hitlabnz.motionrecorder.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hitlabnz.glassCubeSample.representation.Quaternion;
+import org.hitlabnz.motionrecorder.fusion.ConstantWeighting;
+import org.hitlabnz.motionrecorder.fusion.OrientationFusionEngine;
+import org.hitlabnz.motionrecorder.math.Quat;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of the rotation matrix cache of the Quaternion, while replaying a session: the fused orientations of a
+ * recorded 200 Hz gyroscope stream are rendered at 60 frames per second as a trail of the last {@link #TRAIL}
+ * orientations. Each frame replaces the oldest orientation by the current one and fetches the matrices of the whole
+ * trail. One operation is one frame. The counters report how many matrices were requested and how many of them had to
+ * be recalculated.
+ *
+ * @author Alexander Pacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class QuaternionMatrixCacheBenchmark {
+
+	private static final int TRAIL = 64;
+
+	private static final int SAMPLES = 4096;
+
+	private static final int SENSOR_RATE_HZ = 200;
+
+	private static final int FRAME_RATE_HZ = 60;
+
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Counters {
+
+		public long matrixRequests;
+
+		public long matrixUpdates;
+
+		@Setup(Level.Iteration)
+		public void reset() {
+			matrixRequests = 0;
+			matrixUpdates = 0;
+		}
+	}
+
+	/**
+	 * Interleaved x, y, z, w of the fused orientations of the session
+	 */
+	private final float[] session = new float[SAMPLES * 4];
+
+	private int sessionLength;
+
+	private final Quaternion[] trail = new Quaternion[TRAIL];
+
+	private final float[] uncachedMatrix = new float[16];
+
+	private int frame;
+
+	@Setup
+	public void setup() {
+		// Fuse a synthetic session, as in the FusionEngineBenchmark
+		int[] sensors = new int[SAMPLES];
+		long[] timestampsNs = new long[SAMPLES];
+		float[] values = new float[SAMPLES * OrientationFusionEngine.VALUES_PER_SAMPLE];
+		Random random = new Random(42);
+		long timestamp = 1000000000L;
+		for (int i = 0; i < SAMPLES; i++) {
+			int v = i * OrientationFusionEngine.VALUES_PER_SAMPLE;
+			if (i % 5 == 0) {
+				sensors[i] = OrientationFusionEngine.ROTATION_VECTOR;
+				values[v] = 0.1f;
+				values[v + 1] = 0.2f;
+				values[v + 2] = 0.3f;
+				values[v + 3] = (float) Math.sqrt(1 - 0.14f);
+			} else {
+				sensors[i] = OrientationFusionEngine.GYROSCOPE;
+				timestamp += 1000000000L / SENSOR_RATE_HZ;
+				for (int j = 0; j < 3; j++) {
+					values[v + j] = (float) random.nextGaussian() * 0.05f;
+				}
+			}
+			timestampsNs[i] = timestamp;
+		}
+		OrientationFusionEngine engine = new OrientationFusionEngine(new ConstantWeighting(
+				ConstantWeighting.DEFAULT_WEIGHT));
+		sessionLength = engine.process(0, SAMPLES, sensors, timestampsNs, values, session, null);
+
+		for (int i = 0; i < TRAIL; i++) {
+			trail[i] = new Quaternion();
+			replay(i);
+		}
+	}
+
+	/**
+	 * Replaces the oldest orientation of the trail by the orientation of the session at the time of the frame
+	 *
+	 * @return true, if the orientation changed
+	 */
+	private boolean replay(int frame) {
+		int sample = (int) ((long) frame * SENSOR_RATE_HZ / FRAME_RATE_HZ % sessionLength) * 4;
+		Quaternion oldest = trail[frame % TRAIL];
+		boolean changed = oldest.getX() != session[sample] || oldest.getY() != session[sample + 1]
+				|| oldest.getZ() != session[sample + 2] || oldest.getW() != session[sample + 3];
+		oldest.setXYZW(session[sample], session[sample + 1], session[sample + 2], session[sample + 3]);
+		return changed;
+	}
+
+	@Benchmark
+	public float cachedFrame(Counters counters) {
+		if (replay(frame++)) {
+			counters.matrixUpdates++;
+		}
+		float sum = 0;
+		for (int i = 0; i < TRAIL; i++) {
+			sum += trail[i].getMatrix4x4().matrix[0];
+		}
+		counters.matrixRequests += TRAIL;
+		return sum;
+	}
+
+	/**
+	 * The same frame, but every matrix is recalculated as if there was no cache
+	 */
+	@Benchmark
+	public float uncachedFrame(Counters counters) {
+		replay(frame++);
+		float sum = 0;
+		for (int i = 0; i < TRAIL; i++) {
+			Quat.toRotationMatrix(uncachedMatrix, 0, trail[i].points, 0);
+			sum += uncachedMatrix[0];
+		}
+		counters.matrixRequests += TRAIL;
+		counters.matrixUpdates += TRAIL;
+		return sum;
+	}
+}
@@ -0,0 +1,106 @@
+package org.hitlabnz.motionrecorder.benchmark;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
+import org.hitlabnz.motionrecorder.recorders.SensorRecorder;
+import org.hitlabnz.motionrecorder.recorders.SessionClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import android.content.Context;
+import android.hardware.Sensor;
+import android.hardware.SensorEvent;
+
+/**
+ * Benchmark of {@link SensorRecorder#writeToSDCard(SensorEvent, EventType)} in the text mode, i.e. formatting an IMU
+ * sample and writing it into the buffered writer of the recorder. The characters are discarded by the underlying
+ * writer, so the storage is not measured.
+ *
+ * @author Alexander Pacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RecorderWriteBenchmark {
+
+	/**
+	 * Time between two samples in nanoseconds (200 Hz)
+	 */
+	private static final long SAMPLE_INTERVAL_NS = 5000000L;
+
+	private TextRecorder recorder;
+
+	private SensorEvent event;
+
+	@Setup
+	public void setup() {
+		recorder = new TextRecorder();
+		recorder.initialize(new Context());
+		recorder.start(new SessionClock());
+
+		event = new SensorEvent(3);
+		event.sensor = new Sensor();
+		event.values[0] = 0.12345678f;
+		event.values[1] = -9.80665f;
+		event.values[2] = 1.5e-3f;
+		event.timestamp = System.nanoTime();
+	}
+
+	@Benchmark
+	public void writeImuSample() {
+		event.timestamp += SAMPLE_INTERVAL_NS;
+		recorder.write(event);
+	}
+
+	/**
+	 * Recorder that writes its text output into a writer, that discards all characters
+	 */
+	private static class TextRecorder extends SensorRecorder {
+
+		void start(SessionClock clock) {
+			this.clock = clock;
+			recording = true;
+			recordingToFile = true;
+			writer = new BufferedWriter(new NullWriter());
+		}
+
+		void write(SensorEvent event) {
+			writeToSDCard(event, EventType.Accelerometer);
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	private static class NullWriter extends Writer {
+
+		@Override
+		public void write(char[] cbuf, int off, int len) throws IOException {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
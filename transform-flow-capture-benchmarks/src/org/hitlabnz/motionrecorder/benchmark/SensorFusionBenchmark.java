@@ -0,0 +1,88 @@
+package org.hitlabnz.motionrecorder.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.hitlabnz.motionrecorder.events.ImuEvent;
+import org.hitlabnz.motionrecorder.events.ImuEventPool;
+import org.hitlabnz.motionrecorder.events.MotionEvent;
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
+import org.hitlabnz.motionrecorder.events.MotionEventListener;
+import org.hitlabnz.motionrecorder.recorders.SensorFusion1Recorder;
+import org.hitlabnz.motionrecorder.recorders.SessionClock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import android.content.Context;
+
+/**
+ * Benchmark of one fusion step of {@link SensorFusion1Recorder#onMotionEventUpdate(MotionEvent)}: integrating a
+ * gyroscope sample and correcting it with the rotation vector by slerp. The fused events are reported to a listener
+ * that consumes them.
+ *
+ * @author Alexander Pacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SensorFusionBenchmark {
+
+	/**
+	 * Time between two gyroscope samples in nanoseconds (200 Hz)
+	 */
+	private static final long SAMPLE_INTERVAL_NS = 5000000L;
+
+	private SensorFusion1Recorder recorder;
+
+	private ImuEventPool gyroscopeEvents;
+
+	private final float[] gyroscopeValues = { 0.02f, -0.01f, 0.015f };
+
+	private long timestamp;
+
+	private Blackhole blackhole;
+
+	@Setup
+	public void setup(Blackhole blackhole) {
+		this.blackhole = blackhole;
+		recorder = new SensorFusion1Recorder();
+		recorder.initialize(new Context());
+		recorder.startRecording(new SessionClock(), new MotionEventListener() {
+			@Override
+			public void onMotionEventUpdate(MotionEvent event) {
+				SensorFusionBenchmark.this.blackhole.consume(event);
+			}
+		});
+
+		// The first rotation vector initialises the orientation
+		ImuEventPool rotationVectorEvents = new ImuEventPool(EventType.RotationVector, 1);
+		ImuEvent rotationVector = rotationVectorEvents.obtain(new float[] { 0.1f, 0.2f, 0.3f, 0.927f }, 0, 0, 0);
+		recorder.onMotionEventUpdate(rotationVector);
+		rotationVector.release();
+
+		gyroscopeEvents = new ImuEventPool(EventType.Gyroscope, 1);
+		timestamp = 1000000000L;
+	}
+
+	@Benchmark
+	public void gyroscopeStep() {
+		timestamp += SAMPLE_INTERVAL_NS;
+		// Alternate the direction of the rotation, so the orientation stays close to the rotation vector
+		gyroscopeValues[0] = -gyroscopeValues[0];
+		ImuEvent event = gyroscopeEvents.obtain(gyroscopeValues, timestamp, 0, timestamp);
+		recorder.onMotionEventUpdate(event);
+		event.release();
+	}
+}
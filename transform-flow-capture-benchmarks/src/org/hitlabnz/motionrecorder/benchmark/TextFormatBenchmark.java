@@ -0,0 +1,128 @@
+package org.hitlabnz.motionrecorder.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hitlabnz.motionrecorder.session.TextRecordFormatter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Microbenchmark of the text output of an IMU sample: the previous path with SimpleDateFormat and string
+ * concatenation against the {@link TextRecordFormatter}. Both variants write into a writer that discards the
+ * characters, so only the formatting is measured.
+ *
+ * @author Alexander Pacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TextFormatBenchmark {
+
+	private static final int SAMPLES = 4096;
+
+	private final long[] times = new long[SAMPLES];
+
+	private final float[][] values = new float[SAMPLES][3];
+
+	private final SimpleDateFormat dateFormat = new SimpleDateFormat("mm:ss.SSS;", Locale.US);
+
+	private final TextRecordFormatter formatter = new TextRecordFormatter();
+
+	private final NullWriter writer = new NullWriter();
+
+	private int index = 0;
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		for (int i = 0; i < SAMPLES; i++) {
+			// Sensor samples at about 200 Hz
+			times[i] = i * 5L + random.nextInt(3);
+			for (int j = 0; j < 3; j++) {
+				values[i][j] = (float) (random.nextGaussian() * 9.81);
+			}
+		}
+
+		// Both variants must produce the same output
+		for (int i = 0; i < SAMPLES; i++) {
+			float[] v = values[i];
+			String expected = dateFormat.format(new Date(times[i])) + String.valueOf(v[0]) + ","
+					+ String.valueOf(v[1]) + "," + String.valueOf(v[2]) + "\n";
+			String actual = formatter.reset().appendTimestamp(times[i]).append(v[0]).append(',').append(v[1])
+					.append(',').append(v[2]).append('\n').toString();
+			if (!expected.equals(actual)) {
+				throw new IllegalStateException("Output differs: " + expected + " != " + actual);
+			}
+		}
+	}
+
+	@Benchmark
+	public long simpleDateFormat() throws IOException {
+		int i = nextIndex();
+		float[] v = values[i];
+		CharSequence currentTimeStamp = dateFormat.format(new Date(times[i]));
+		String msg = currentTimeStamp + String.valueOf(v[0]) + "," + String.valueOf(v[1]) + ","
+				+ String.valueOf(v[2]) + "\n";
+		writer.write(msg);
+		return writer.count;
+	}
+
+	@Benchmark
+	public long textRecordFormatter() throws IOException {
+		int i = nextIndex();
+		float[] v = values[i];
+		formatter.reset().appendTimestamp(times[i]).append(v[0]).append(',').append(v[1]).append(',').append(v[2])
+				.append('\n');
+		formatter.writeTo(writer);
+		return writer.count;
+	}
+
+	private int nextIndex() {
+		index = (index + 1) & (SAMPLES - 1);
+		return index;
+	}
+
+	/**
+	 * Writer that only counts the characters
+	 */
+	private static class NullWriter extends Writer {
+
+		long count;
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+			count += len;
+		}
+
+		@Override
+		public void write(String str) {
+			count += str.length();
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
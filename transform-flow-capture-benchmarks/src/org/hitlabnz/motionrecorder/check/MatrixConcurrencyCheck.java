@@ -0,0 +1,106 @@
+package org.hitlabnz.motionrecorder.check;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.hitlabnz.glassCubeSample.representation.Matrix;
+
+/**
+ * Stress check of the per-thread scratch memory of {@link Matrix}: several threads call all rotateM overloads at the
+ * same time with different angles and axes, and every result is compared with a reference that was computed on a
+ * single thread before. With a shared scratch buffer the threads would overwrite each other's rotation matrices.
+ *
+ * Exits with status 1 if any result differs: <code>java MatrixConcurrencyCheck [threads] [iterations]</code>
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class MatrixConcurrencyCheck {
+
+	private static final int CASES = 64;
+
+	/**
+	 * Angle and axis of each case
+	 */
+	private static final float[][] ROTATIONS = new float[CASES][];
+
+	/**
+	 * The input matrix that is rotated
+	 */
+	private static final float[] INPUT = new float[16];
+
+	/**
+	 * Reference results of each case, computed on a single thread
+	 */
+	private static final float[][] REFERENCE = new float[CASES][16];
+
+	public static void main(String[] args) throws InterruptedException {
+		final int threadCount = args.length > 0 ? Integer.parseInt(args[0]) : 8;
+		final int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+
+		Matrix.setRotateM(INPUT, 0, 30, 0.2f, 0.5f, 0.8f);
+		Matrix.translateM(INPUT, 0, 1, 2, 3);
+		for (int i = 0; i < CASES; i++) {
+			ROTATIONS[i] = new float[] { i * 5.5f, 0.1f + i % 3, 0.2f + i % 5, 0.3f + i % 7 };
+			float[] rotation = new float[16];
+			Matrix.setRotateM(rotation, 0, ROTATIONS[i][0], ROTATIONS[i][1], ROTATIONS[i][2], ROTATIONS[i][3]);
+			Matrix.multiplyMM(REFERENCE[i], 0, INPUT, 0, rotation, 0);
+		}
+
+		final AtomicLong checked = new AtomicLong();
+		final AtomicLong mismatches = new AtomicLong();
+		final CountDownLatch start = new CountDownLatch(1);
+		Thread[] threads = new Thread[threadCount];
+		for (int t = 0; t < threadCount; t++) {
+			final int threadIndex = t;
+			threads[t] = new Thread(new Runnable() {
+				@Override
+				public void run() {
+					float[] result = new float[16];
+					float[] scratch = new float[Matrix.ROTATE_SCRATCH_SIZE + 3];
+					try {
+						start.await();
+					} catch (InterruptedException e) {
+						return;
+					}
+					for (int i = 0; i < iterations; i++) {
+						int c = (threadIndex * 7 + i) % CASES;
+						float[] r = ROTATIONS[c];
+						switch (i & 3) {
+						case 0:
+							Matrix.rotateM(result, 0, INPUT, 0, r[0], r[1], r[2], r[3]);
+							break;
+						case 1:
+							Matrix.rotateM(result, 0, INPUT, 0, r[0], r[1], r[2], r[3], scratch, 3);
+							break;
+						case 2:
+							System.arraycopy(INPUT, 0, result, 0, 16);
+							Matrix.rotateM(result, 0, r[0], r[1], r[2], r[3]);
+							break;
+						default:
+							System.arraycopy(INPUT, 0, result, 0, 16);
+							Matrix.rotateM(result, 0, r[0], r[1], r[2], r[3], scratch, 3);
+							break;
+						}
+						if (!Arrays.equals(result, REFERENCE[c])) {
+							mismatches.incrementAndGet();
+						}
+						checked.incrementAndGet();
+					}
+				}
+			}, "MatrixConcurrencyCheck-" + t);
+			threads[t].start();
+		}
+		start.countDown();
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		System.out.println(threadCount + " threads, " + checked.get() + " results checked, " + mismatches.get()
+				+ " differ from the reference");
+		if (mismatches.get() > 0) {
+			System.exit(1);
+		}
+	}
+}
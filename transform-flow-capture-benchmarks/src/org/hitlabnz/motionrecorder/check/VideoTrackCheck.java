@@ -0,0 +1,243 @@
+package org.hitlabnz.motionrecorder.check;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.hitlabnz.motionrecorder.camera.VideoEncoder;
+import org.hitlabnz.motionrecorder.camera.VideoTrack;
+import org.hitlabnz.motionrecorder.events.MotionEvent.EventType;
+import org.hitlabnz.motionrecorder.session.SessionReader;
+import org.hitlabnz.motionrecorder.session.SessionRecord;
+import org.hitlabnz.motionrecorder.session.SessionWriter;
+
+/**
+ * Check of the video path on a plain JVM: a {@link VideoTrack} drives a stub {@link VideoEncoder} that only records
+ * what it is given. Verifies that the presentation timestamps reach the encoder in increasing order, that frames
+ * without a later timestamp are skipped, that a change of the frame size is refused, and that the picture records of
+ * the session, written as the encoder thread writes them in video mode, point at frames of the video, also if frames
+ * are skipped or fail to encode.
+ *
+ * Exits with status 1 if a check fails: <code>java VideoTrackCheck</code>
+ *
+ * @author Alexander Pacha
+ *
+ */
+public class VideoTrackCheck {
+
+	private static final int WIDTH = 64;
+
+	private static final int HEIGHT = 48;
+
+	private static final int FRAME_BYTES = WIDTH * HEIGHT * 3 / 2;
+
+	private static int failures;
+
+	/**
+	 * Encoder that records its calls instead of encoding
+	 */
+	private static class StubEncoder implements VideoEncoder {
+
+		int startCount;
+
+		int startWidth;
+
+		int startHeight;
+
+		final List<Long> presentationTimesUs = new ArrayList<Long>();
+
+		long bytes;
+
+		boolean closed;
+
+		/**
+		 * Presentation timestamp of a frame that fails to encode, or -1
+		 */
+		long failAtUs = -1;
+
+		@Override
+		public String getFileExtension() {
+			return ".stub";
+		}
+
+		@Override
+		public void start(File file, int width, int height, int frameRate, int keyFrameIntervalSeconds) {
+			startCount++;
+			startWidth = width;
+			startHeight = height;
+		}
+
+		@Override
+		public int encode(byte[] i420, int length, long presentationTimeUs) throws IOException {
+			if (presentationTimeUs == failAtUs) {
+				throw new IOException("Encoding failed");
+			}
+			presentationTimesUs.add(presentationTimeUs);
+			bytes += length;
+			return length;
+		}
+
+		@Override
+		public long close() {
+			closed = true;
+			return 0;
+		}
+	}
+
+	public static void main(String[] args) throws IOException {
+		checkTimestampsAndSkips();
+		checkSizeChange();
+		checkSessionAlignment();
+
+		if (failures > 0) {
+			System.out.println(failures + " checks failed");
+			System.exit(1);
+		}
+		System.out.println("All checks passed");
+	}
+
+	/**
+	 * Frames at 30 Hz with jitter, a second frame within the same microsecond and a frame with an earlier timestamp
+	 */
+	private static void checkTimestampsAndSkips() throws IOException {
+		StubEncoder encoder = new StubEncoder();
+		VideoTrack track = new VideoTrack(encoder, new File("."), VideoTrack.DEFAULT_KEY_FRAME_INTERVAL_SECONDS);
+		byte[] frame = new byte[FRAME_BYTES];
+
+		check(track.close() == 0 && !encoder.closed, "closing a track without frames does not touch the encoder");
+
+		long[] sessionTimesNanos = { 33333333L, 66700000L, 66700400L, 100050000L, 90000000L, 133400000L };
+		boolean[] expectedSkipped = { false, false, true, false, true, false };
+		for (int i = 0; i < sessionTimesNanos.length; i++) {
+			int written = track.write(frame, frame.length, WIDTH, HEIGHT, sessionTimesNanos[i]);
+			check((written < 0) == expectedSkipped[i], "frame " + i + (expectedSkipped[i] ? " is" : " is not")
+					+ " skipped");
+		}
+
+		check(encoder.startCount == 1 && encoder.startWidth == WIDTH && encoder.startHeight == HEIGHT,
+				"the encoder is started once with the size of the first frame");
+		check(track.getFrameCount() == 4 && encoder.presentationTimesUs.size() == 4,
+				"only frames that are not skipped reach the encoder");
+		for (int i = 1; i < encoder.presentationTimesUs.size(); i++) {
+			check(encoder.presentationTimesUs.get(i) > encoder.presentationTimesUs.get(i - 1),
+					"presentation timestamp " + i + " increases");
+		}
+		check(encoder.presentationTimesUs.get(0) == VideoTrack.presentationTimeUs(sessionTimesNanos[0]),
+				"the presentation timestamp is the session timestamp in microseconds");
+
+		track.close();
+		check(encoder.closed, "closing the track closes the encoder");
+	}
+
+	private static void checkSizeChange() throws IOException {
+		StubEncoder encoder = new StubEncoder();
+		VideoTrack track = new VideoTrack(encoder, new File("."), VideoTrack.DEFAULT_KEY_FRAME_INTERVAL_SECONDS);
+		byte[] frame = new byte[FRAME_BYTES * 4];
+		track.write(frame, FRAME_BYTES, WIDTH, HEIGHT, 33333333L);
+		boolean refused = false;
+		try {
+			track.write(frame, FRAME_BYTES * 4, WIDTH * 2, HEIGHT * 2, 66666666L);
+		} catch (IOException e) {
+			refused = true;
+		}
+		check(refused, "a frame with a different size is refused");
+		check(encoder.presentationTimesUs.size() == 1 && encoder.startCount == 1,
+				"a refused frame does not reach the encoder");
+		check(track.write(frame, FRAME_BYTES, WIDTH, HEIGHT, 99999999L) > 0,
+				"frames of the original size are encoded after a refused frame");
+
+		encoder.failAtUs = VideoTrack.presentationTimeUs(133333333L);
+		boolean failed = false;
+		try {
+			track.write(frame, FRAME_BYTES, WIDTH, HEIGHT, 133333333L);
+		} catch (IOException e) {
+			failed = true;
+		}
+		check(failed && track.getFrameCount() == 2, "a frame that fails to encode is not counted");
+		track.close();
+	}
+
+	/**
+	 * Writes the records of the frames as the FrameEncoder and PictureRecorder do in video mode: a picture record with
+	 * the presentation timestamp once a frame is in the video, otherwise a frame drop. Checks that each picture record
+	 * points at a different frame of the video, each frame of the video has a record and each other frame a drop.
+	 */
+	private static void checkSessionAlignment() throws IOException {
+		StubEncoder encoder = new StubEncoder();
+		VideoTrack track = new VideoTrack(encoder, new File("."), VideoTrack.DEFAULT_KEY_FRAME_INTERVAL_SECONDS);
+		byte[] frame = new byte[FRAME_BYTES];
+		File sessionFile = File.createTempFile("VideoTrackCheck", ".bin");
+		sessionFile.deleteOnExit();
+		SessionWriter sessionWriter = new SessionWriter(sessionFile, System.currentTimeMillis(), 0);
+		double[] presentationTime = new double[1];
+		float[] dropReason = new float[1];
+
+		long sessionTimeNanos = 0;
+		int skipped = 0;
+		for (int picture = 0; picture < 300; picture++) {
+			// 30 Hz with up to 2 ms of jitter, and every 50th frame twice with the same timestamp
+			sessionTimeNanos += picture % 50 == 49 ? 0 : 33333333L + (picture * 7919 % 4000000) - 2000000;
+			if (picture == 120) {
+				encoder.failAtUs = VideoTrack.presentationTimeUs(sessionTimeNanos);
+			}
+			int written;
+			try {
+				written = track.write(frame, frame.length, WIDTH, HEIGHT, sessionTimeNanos);
+			} catch (IOException e) {
+				written = -1;
+			}
+			if (written >= 0) {
+				presentationTime[0] = VideoTrack.presentationTimeUs(sessionTimeNanos);
+				sessionWriter.writeDoubles(EventType.Picture, sessionTimeNanos, picture, presentationTime, 1);
+			} else {
+				skipped++;
+				sessionWriter.writeFloats(EventType.FrameDrop, sessionTimeNanos, picture, dropReason, 1);
+			}
+		}
+		track.close();
+		sessionWriter.close();
+
+		Set<Long> videoTimes = new HashSet<Long>(encoder.presentationTimesUs);
+		Set<Long> recordTimes = new HashSet<Long>();
+		SessionReader reader = new SessionReader(sessionFile);
+		SessionRecord record = new SessionRecord();
+		int records = 0;
+		int drops = 0;
+		int unmatched = 0;
+		try {
+			while (reader.next(record)) {
+				if (record.eventType == EventType.FrameDrop) {
+					drops++;
+				}
+				if (record.eventType != EventType.Picture) {
+					continue;
+				}
+				records++;
+				long presentationTimeUs = (long) record.doubleValues[0];
+				if (!recordTimes.add(presentationTimeUs)) {
+					unmatched++;
+				}
+				if (presentationTimeUs != VideoTrack.presentationTimeUs(record.timestampNanos)
+						|| !videoTimes.contains(presentationTimeUs)) {
+					unmatched++;
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		check(skipped == 7, "6 frames with a repeated timestamp and 1 failed frame were skipped (" + skipped + ")");
+		check(records == 300 - skipped && drops == skipped, "each frame has a picture record or a frame drop");
+		check(unmatched == 0, "every picture record points at a frame of the video (" + unmatched + " do not)");
+		check(recordTimes.containsAll(videoTimes), "every frame of the video has a picture record");
+	}
+
+	private static void check(boolean condition, String description) {
+		if (!condition) {
+			failures++;
+			System.out.println("FAILED: " + description);
+		}
+	}
+}
@@ -0,0 +1,16 @@
+package android.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM.
+ */
+@Target({ ElementType.TYPE, ElementType.FIELD, ElementType.METHOD, ElementType.PARAMETER, ElementType.CONSTRUCTOR,
+		ElementType.LOCAL_VARIABLE })
+@Retention(RetentionPolicy.CLASS)
+public @interface SuppressLint {
+	String[] value();
+}
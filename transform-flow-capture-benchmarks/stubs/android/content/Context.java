@@ -0,0 +1,13 @@
+package android.content;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM. No system services are available.
+ */
+public class Context {
+
+	public static final String SENSOR_SERVICE = "sensor";
+
+	public Object getSystemService(String name) {
+		return null;
+	}
+}
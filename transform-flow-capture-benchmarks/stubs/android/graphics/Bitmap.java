@@ -0,0 +1,7 @@
+package android.graphics;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM.
+ */
+public final class Bitmap {
+}
@@ -0,0 +1,15 @@
+package android.hardware;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM.
+ */
+public class Sensor {
+
+	public String getName() {
+		return "Stub";
+	}
+
+	public int getMinDelay() {
+		return 0;
+	}
+}
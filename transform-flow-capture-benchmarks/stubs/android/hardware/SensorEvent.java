@@ -0,0 +1,20 @@
+package android.hardware;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM. Unlike on Android, events can be created by
+ * the benchmarks.
+ */
+public class SensorEvent {
+
+	public final float[] values;
+
+	public Sensor sensor;
+
+	public int accuracy;
+
+	public long timestamp;
+
+	public SensorEvent(int valueSize) {
+		values = new float[valueSize];
+	}
+}
@@ -0,0 +1,11 @@
+package android.hardware;
+
+/**
+ * Stub of the Android interface for running the benchmarks on a desktop JVM.
+ */
+public interface SensorEventListener {
+
+	void onSensorChanged(SensorEvent event);
+
+	void onAccuracyChanged(Sensor sensor, int accuracy);
+}
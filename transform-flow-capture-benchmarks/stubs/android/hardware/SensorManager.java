@@ -0,0 +1,28 @@
+package android.hardware;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM.
+ */
+public class SensorManager {
+
+	public static final int SENSOR_DELAY_FASTEST = 0;
+
+	public static final int SENSOR_DELAY_GAME = 1;
+
+	public static final int SENSOR_DELAY_UI = 2;
+
+	public static final int SENSOR_DELAY_NORMAL = 3;
+
+	public boolean registerListener(SensorEventListener listener, Sensor sensor, int samplingPeriodUs) {
+		throw new RuntimeException("Stub!");
+	}
+
+	public boolean registerListener(SensorEventListener listener, Sensor sensor, int samplingPeriodUs,
+			android.os.Handler handler) {
+		throw new RuntimeException("Stub!");
+	}
+
+	public static float[] getOrientation(float[] R, float[] values) {
+		throw new RuntimeException("Stub!");
+	}
+}
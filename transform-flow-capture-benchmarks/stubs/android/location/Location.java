@@ -0,0 +1,15 @@
+package android.location;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM.
+ */
+public class Location {
+
+	public double getLatitude() {
+		throw new RuntimeException("Stub!");
+	}
+
+	public double getLongitude() {
+		throw new RuntimeException("Stub!");
+	}
+}
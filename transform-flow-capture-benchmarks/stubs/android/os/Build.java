@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM. Reports the target API level of the
+ * application.
+ */
+public class Build {
+
+	public static class VERSION {
+		public static final int SDK_INT = 18;
+	}
+
+	public static class VERSION_CODES {
+		public static final int JELLY_BEAN_MR1 = 17;
+		public static final int JELLY_BEAN_MR2 = 18;
+		public static final int KITKAT = 19;
+	}
+}
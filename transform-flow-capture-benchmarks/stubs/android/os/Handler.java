@@ -0,0 +1,28 @@
+package android.os;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM.
+ */
+public class Handler {
+
+	public interface Callback {
+
+		boolean handleMessage(Message msg);
+	}
+
+	public Handler(Looper looper, Callback callback) {
+		throw new RuntimeException("Stub!");
+	}
+
+	public final Looper getLooper() {
+		throw new RuntimeException("Stub!");
+	}
+
+	public final Message obtainMessage(int what, Object obj) {
+		throw new RuntimeException("Stub!");
+	}
+
+	public final boolean post(Runnable r) {
+		throw new RuntimeException("Stub!");
+	}
+}
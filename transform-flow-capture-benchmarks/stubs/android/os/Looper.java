@@ -0,0 +1,11 @@
+package android.os;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM.
+ */
+public final class Looper {
+
+	public static Looper myLooper() {
+		return null;
+	}
+}
@@ -0,0 +1,13 @@
+package android.os;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM.
+ */
+public final class Message {
+
+	public Object obj;
+
+	public void sendToTarget() {
+		throw new RuntimeException("Stub!");
+	}
+}
@@ -0,0 +1,18 @@
+package android.os;
+
+/**
+ * Stub of the Android class for running the benchmarks on a desktop JVM, based on System.nanoTime().
+ */
+public final class SystemClock {
+
+	private SystemClock() {
+	}
+
+	public static long elapsedRealtime() {
+		return System.nanoTime() / 1000000L;
+	}
+
+	public static long elapsedRealtimeNanos() {
+		return System.nanoTime();
+	}
+}
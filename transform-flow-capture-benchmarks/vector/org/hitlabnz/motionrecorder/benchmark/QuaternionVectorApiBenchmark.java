@@ -0,0 +1,83 @@
+package org.hitlabnz.motionrecorder.benchmark;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.hitlabnz.glassCubeSample.representation.Quaternion;
+import org.hitlabnz.motionrecorder.math.QuatArray;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmark of {@link VectorQuatBatch}, to be compared with the auto-vectorised batch benchmarks of
+ * {@link QuaternionBatchBenchmark}. The score is in quaternions per second.
+ *
+ * @author Alexander Pacha
+ *
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class QuaternionVectorApiBenchmark {
+
+	private static final int COUNT = QuaternionBatchBenchmark.COUNT;
+
+	private final QuatArray aArray = new QuatArray(COUNT);
+
+	private final QuatArray bArray = new QuatArray(COUNT);
+
+	private final QuatArray outputArray = new QuatArray(COUNT);
+
+	private final float[] vx = new float[COUNT];
+
+	private final float[] vy = new float[COUNT];
+
+	private final float[] vz = new float[COUNT];
+
+	@Setup
+	public void setup() {
+		Random random = new Random(42);
+		for (int i = 0; i < COUNT; i++) {
+			Quaternion a = QuaternionBatchBenchmark.randomQuaternion(random);
+			Quaternion b = QuaternionBatchBenchmark.randomQuaternion(random);
+			aArray.set(i, a.getX(), a.getY(), a.getZ(), a.getW());
+			bArray.set(i, b.getX(), b.getY(), b.getZ(), b.getW());
+			vx[i] = (float) random.nextGaussian();
+			vy[i] = (float) random.nextGaussian();
+			vz[i] = (float) random.nextGaussian();
+		}
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public QuatArray multiplyVectorApi() {
+		VectorQuatBatch.multiply(outputArray, aArray, bArray, 0, COUNT);
+		return outputArray;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public QuatArray normalizeVectorApi() {
+		VectorQuatBatch.normalize(aArray, aArray, 0, COUNT);
+		return aArray;
+	}
+
+	@Benchmark
+	@OperationsPerInvocation(COUNT)
+	public float[] rotateVectorApi() {
+		VectorQuatBatch.rotate(aArray, vx, vy, vz, 0, COUNT);
+		return vx;
+	}
+}
@@ -0,0 +1,88 @@
+package org.hitlabnz.motionrecorder.benchmark;
+
+import jdk.incubator.vector.FloatVector;
+import jdk.incubator.vector.VectorSpecies;
+
+import org.hitlabnz.motionrecorder.math.QuatArray;
+import org.hitlabnz.motionrecorder.math.QuatBatch;
+
+/**
+ * The vectorisable operations of {@link QuatBatch}, written explicitly with the incubating Vector API of the JDK
+ * (jdk.incubator.vector) instead of relying on the auto-vectorisation of the JIT compiler. Android has no Vector API,
+ * so this only exists for reprocessing on a desktop JVM and is compiled only if the module is added, see README.md.
+ * The elements that do not fill a whole vector are processed by {@link QuatBatch}.
+ *
+ * @author Alexander Pacha
+ *
+ */
+public final class VectorQuatBatch {
+
+	private static final VectorSpecies<Float> SPECIES = FloatVector.SPECIES_PREFERRED;
+
+	private VectorQuatBatch() {
+	}
+
+	/**
+	 * See {@link QuatBatch#multiply(QuatArray, QuatArray, QuatArray, int, int)}
+	 */
+	public static void multiply(QuatArray output, QuatArray lhs, QuatArray rhs, int offset, int count) {
+		int vectorCount = SPECIES.loopBound(count);
+		for (int i = offset; i < offset + vectorCount; i += SPECIES.length()) {
+			FloatVector x1 = FloatVector.fromArray(SPECIES, lhs.x, i);
+			FloatVector y1 = FloatVector.fromArray(SPECIES, lhs.y, i);
+			FloatVector z1 = FloatVector.fromArray(SPECIES, lhs.z, i);
+			FloatVector w1 = FloatVector.fromArray(SPECIES, lhs.w, i);
+			FloatVector x2 = FloatVector.fromArray(SPECIES, rhs.x, i);
+			FloatVector y2 = FloatVector.fromArray(SPECIES, rhs.y, i);
+			FloatVector z2 = FloatVector.fromArray(SPECIES, rhs.z, i);
+			FloatVector w2 = FloatVector.fromArray(SPECIES, rhs.w, i);
+			w1.mul(w2).sub(x1.mul(x2)).sub(y1.mul(y2)).sub(z1.mul(z2)).intoArray(output.w, i);
+			w1.mul(x2).add(x1.mul(w2)).add(y1.mul(z2)).sub(z1.mul(y2)).intoArray(output.x, i);
+			w1.mul(y2).add(y1.mul(w2)).add(z1.mul(x2)).sub(x1.mul(z2)).intoArray(output.y, i);
+			w1.mul(z2).add(z1.mul(w2)).add(x1.mul(y2)).sub(y1.mul(x2)).intoArray(output.z, i);
+		}
+		QuatBatch.multiply(output, lhs, rhs, offset + vectorCount, count - vectorCount);
+	}
+
+	/**
+	 * See {@link QuatBatch#normalize(QuatArray, QuatArray, int, int)}
+	 */
+	public static void normalize(QuatArray output, QuatArray q, int offset, int count) {
+		int vectorCount = SPECIES.loopBound(count);
+		for (int i = offset; i < offset + vectorCount; i += SPECIES.length()) {
+			FloatVector x = FloatVector.fromArray(SPECIES, q.x, i);
+			FloatVector y = FloatVector.fromArray(SPECIES, q.y, i);
+			FloatVector z = FloatVector.fromArray(SPECIES, q.z, i);
+			FloatVector w = FloatVector.fromArray(SPECIES, q.w, i);
+			FloatVector length = x.mul(x).add(y.mul(y)).add(z.mul(z)).add(w.mul(w)).sqrt();
+			x.div(length).intoArray(output.x, i);
+			y.div(length).intoArray(output.y, i);
+			z.div(length).intoArray(output.z, i);
+			w.div(length).intoArray(output.w, i);
+		}
+		QuatBatch.normalize(output, q, offset + vectorCount, count - vectorCount);
+	}
+
+	/**
+	 * See {@link QuatBatch#rotate(QuatArray, float[], float[], float[], int, int)}
+	 */
+	public static void rotate(QuatArray q, float[] vx, float[] vy, float[] vz, int offset, int count) {
+		int vectorCount = SPECIES.loopBound(count);
+		for (int i = offset; i < offset + vectorCount; i += SPECIES.length()) {
+			FloatVector x = FloatVector.fromArray(SPECIES, q.x, i);
+			FloatVector y = FloatVector.fromArray(SPECIES, q.y, i);
+			FloatVector z = FloatVector.fromArray(SPECIES, q.z, i);
+			FloatVector w = FloatVector.fromArray(SPECIES, q.w, i);
+			FloatVector px = FloatVector.fromArray(SPECIES, vx, i);
+			FloatVector py = FloatVector.fromArray(SPECIES, vy, i);
+			FloatVector pz = FloatVector.fromArray(SPECIES, vz, i);
+			FloatVector tx = y.mul(pz).sub(z.mul(py)).mul(2);
+			FloatVector ty = z.mul(px).sub(x.mul(pz)).mul(2);
+			FloatVector tz = x.mul(py).sub(y.mul(px)).mul(2);
+			px.add(w.mul(tx)).add(y.mul(tz).sub(z.mul(ty))).intoArray(vx, i);
+			py.add(w.mul(ty)).add(z.mul(tx).sub(x.mul(tz))).intoArray(vy, i);
+			pz.add(w.mul(tz)).add(x.mul(ty).sub(y.mul(tx))).intoArray(vz, i);
+		}
+		QuatBatch.rotate(q, vx, vy, vz, offset + vectorCount, count - vectorCount);
+	}
+}